@@ -0,0 +1,38 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.entity.UserIdentity;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DIDDocumentBenchmark {
+
+    private DIDDocumentService didDocumentService;
+    private UserIdentity userIdentity;
+
+    @Setup
+    public void setUp() {
+        didDocumentService = new DIDDocumentService(new ObjectMapper());
+        userIdentity = UserIdentity.builder()
+                .did("did:key:z6MkhaXgBZDvotDkL5257faiztiGiC2QtKLGpbnnEGta2doK")
+                .publicKey("6MkhaXgBZDvotDkL5257faiztiGiC2QtKLGpbnnEGta2doK")
+                .build();
+    }
+
+    @Benchmark
+    public String generateDIDDocument() {
+        return didDocumentService.generateDIDDocument(userIdentity, "identity.example.com", "users:alice");
+    }
+
+    @Benchmark
+    public String generateDeactivatedDIDDocument() {
+        return didDocumentService.generateDeactivatedDIDDocument("did:web:identity.example.com:users:alice");
+    }
+}
@@ -0,0 +1,77 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.util.CryptoPrimitives;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.security.Signature;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProofOfControlBenchmark {
+
+    private static final String ALPHABET = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz";
+
+    private ProofOfControlService proofOfControlService;
+    private String publicKeyBase58;
+    private String nonce;
+    private String signatureBase64;
+
+    @Setup
+    public void setUp() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        // Only the verification helpers are exercised, so Redis and the repository are not needed
+        proofOfControlService = new ProofOfControlService(null, null, null, new CryptoPrimitives());
+
+        KeyPair keyPair = KeyPairGenerator.getInstance("Ed25519", "BC").generateKeyPair();
+        byte[] encoded = keyPair.getPublic().getEncoded();
+        publicKeyBase58 = encodeBase58(Arrays.copyOfRange(encoded, encoded.length - 32, encoded.length));
+
+        nonce = Base64.getEncoder().encodeToString(new byte[32]);
+        Signature signer = Signature.getInstance("Ed25519", "BC");
+        signer.initSign(keyPair.getPrivate());
+        signer.update(nonce.getBytes(StandardCharsets.UTF_8));
+        signatureBase64 = Base64.getEncoder().encodeToString(signer.sign());
+    }
+
+    @Benchmark
+    public byte[] decodeBase58() {
+        return proofOfControlService.decodeBase58(publicKeyBase58);
+    }
+
+    @Benchmark
+    public boolean verifySignature() {
+        return proofOfControlService.verifySignature(publicKeyBase58, nonce, signatureBase64);
+    }
+
+    /**
+     * Little-endian counterpart of the service's decoder, which accumulates bytes least significant first
+     */
+    private static String encodeBase58(byte[] littleEndian) {
+        byte[] bigEndian = new byte[littleEndian.length];
+        for (int i = 0; i < littleEndian.length; i++) {
+            bigEndian[i] = littleEndian[littleEndian.length - 1 - i];
+        }
+        BigInteger value = new BigInteger(1, bigEndian);
+        BigInteger base = BigInteger.valueOf(58);
+        StringBuilder encoded = new StringBuilder();
+        while (value.signum() > 0) {
+            BigInteger[] divRem = value.divideAndRemainder(base);
+            encoded.append(ALPHABET.charAt(divRem[1].intValue()));
+            value = divRem[0];
+        }
+        return encoded.reverse().toString();
+    }
+}
@@ -0,0 +1,40 @@
+package com.digitalecosystem.identityservice.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DIDUtilBenchmark {
+
+    private DIDUtil didUtil;
+    private String validDid;
+    private String invalidDid;
+
+    @Setup
+    public void setUp() {
+        didUtil = new DIDUtil();
+        validDid = "did:key:z6MkhaXgBZDvotDkL5257faiztiGiC2QtKLGpbnnEGta2doK";
+        invalidDid = "did:key:z6MkhaXgBZDvotDkL5257faiztiGiC2QtKLGpbnnEGta2doK/with spaces";
+    }
+
+    @Benchmark
+    public boolean validateValid() {
+        return didUtil.isValidDID(validDid);
+    }
+
+    @Benchmark
+    public boolean validateInvalid() {
+        return didUtil.isValidDID(invalidDid);
+    }
+
+    @Benchmark
+    public String extractIdentifier() {
+        return didUtil.extractIdentifier(validDid);
+    }
+}
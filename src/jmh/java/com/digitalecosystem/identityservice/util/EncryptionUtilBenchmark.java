@@ -0,0 +1,40 @@
+package com.digitalecosystem.identityservice.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dominated by PBKDF2 key derivation (65,536 iterations) on every call
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EncryptionUtilBenchmark {
+
+    private static final String PASSPHRASE = "correct horse battery staple";
+
+    private EncryptionUtil encryptionUtil;
+    private String payload;
+    private String encrypted;
+
+    @Setup
+    public void setUp() {
+        encryptionUtil = new EncryptionUtil(new CryptoPrimitives());
+        payload = "{\"did\":\"did:key:z6MkhaXgBZDvotDkL5257faiztiGiC2QtKLGpbnnEGta2doK\",\"keys\":[\"" + "a".repeat(512) + "\"]}";
+        encrypted = encryptionUtil.encrypt(payload, PASSPHRASE);
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return encryptionUtil.encrypt(payload, PASSPHRASE);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return encryptionUtil.decrypt(encrypted, PASSPHRASE);
+    }
+}
@@ -0,0 +1,33 @@
+package com.digitalecosystem.identityservice.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HashUtilBenchmark {
+
+    private HashUtil hashUtil;
+    private String identifier;
+
+    @Setup
+    public void setUp() {
+        hashUtil = new HashUtil(new CryptoPrimitives());
+        identifier = "benchmark.user+otp@example.com";
+    }
+
+    @Benchmark
+    public String sha256Hex() {
+        return hashUtil.sha256(identifier);
+    }
+
+    @Benchmark
+    public byte[] sha256Bytes() {
+        return hashUtil.sha256Bytes(identifier);
+    }
+}
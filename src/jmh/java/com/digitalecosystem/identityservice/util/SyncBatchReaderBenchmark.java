@@ -0,0 +1,85 @@
+package com.digitalecosystem.identityservice.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation of reading a sync batch: streamed into typed operations one at a time, against
+ * binding the whole batch with a map per operation's data as the endpoint used to. Compare
+ * gc.alloc.rate.norm (bytes per batch) from the GC profiler across batch sizes:
+ * mvn -Pbenchmark -DskipTests verify -Djmh.includes=SyncBatchReaderBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SyncBatchReaderBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int operations;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private byte[] body;
+
+    @Setup
+    public void setUp() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("operations");
+            for (int i = 0; i < operations; i++) {
+                json.writeStartObject();
+                json.writeStringField("opId", "op-" + i);
+                json.writeStringField("operation", i % 2 == 0 ? "create" : "update");
+                json.writeNumberField("timestamp", 1_700_000_000_000L + i);
+                json.writeObjectFieldStart("data");
+                json.writeStringField("did", "did:key:z6Mkbench" + i);
+                json.writeStringField("publicKey", "6MkhaXgBZDvotDkL5257faiztiGiC2QtKLGpbnnEGta2doK");
+                json.writeStringField("deviceInfo", "Pixel 8 / Android 15");
+                json.writeEndObject();
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+        body = out.toByteArray();
+    }
+
+    @Benchmark
+    public int streamTypedOperations(Blackhole blackhole) throws IOException {
+        try (SyncBatchReader reader = new SyncBatchReader(objectMapper.getFactory(), new ByteArrayInputStream(body))) {
+            reader.forEachRemaining(blackhole::consume);
+            return reader.operationsRead();
+        }
+    }
+
+    @Benchmark
+    public int bindWholeBatch() throws IOException {
+        return objectMapper.readValue(body, MapBatch.class).operations.size();
+    }
+
+    /**
+     * The request shape before streaming: the whole list, with data as a generic map
+     */
+    public static class MapBatch {
+        public List<MapOperation> operations;
+    }
+
+    public static class MapOperation {
+        public String opId;
+        public String operation;
+        public Map<String, Object> data;
+        public Long timestamp;
+    }
+}
@@ -0,0 +1,25 @@
+package com.digitalecosystem.identityservice.config;
+
+import com.digitalecosystem.identityservice.service.HeavyHitterService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Exposes this node's current heavy hitters and blocks at /actuator/heavyhitters
+ */
+@Component
+@Endpoint(id = "heavyhitters")
+@RequiredArgsConstructor
+public class HeavyHitterEndpoint {
+
+    private final HeavyHitterService heavyHitterService;
+
+    @ReadOperation
+    public Map<String, Object> heavyHitters() {
+        return heavyHitterService.snapshot();
+    }
+}
@@ -0,0 +1,108 @@
+package com.digitalecosystem.identityservice.config;
+
+import com.digitalecosystem.identityservice.service.HeavyHitterService;
+import com.digitalecosystem.identityservice.util.CachedBodyHttpServletRequest;
+import com.digitalecosystem.identityservice.util.HashUtil;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Sheds heavy hitters on the auth paths from local memory, ahead of the Redis-backed
+ * rate limiter, so an abusive client stops costing Redis round trips once detected.
+ */
+@Slf4j
+public class HeavyHitterFilter extends OncePerRequestFilter {
+
+    private static final int MAX_INSPECTED_BODY = 16 * 1024;
+
+    private final HeavyHitterService heavyHitterService;
+    private final RateLimitProperties rateLimitProperties;
+    private final HashUtil hashUtil;
+    private final ObjectMapper objectMapper;
+    private final Counter rejected;
+
+    public HeavyHitterFilter(HeavyHitterService heavyHitterService,
+                             RateLimitProperties rateLimitProperties,
+                             HashUtil hashUtil,
+                             ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry) {
+        this.heavyHitterService = heavyHitterService;
+        this.rateLimitProperties = rateLimitProperties;
+        this.hashUtil = hashUtil;
+        this.objectMapper = objectMapper;
+        this.rejected = meterRegistry.counter("heavy_hitter.rejected");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !heavyHitterService.isEnabled() || !"POST".equalsIgnoreCase(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (heavyHitterService.recordAndCheck("ip:" + clientIp(request))) {
+            reject(response);
+            return;
+        }
+
+        // Read regardless of Content-Length, which chunked requests omit
+        CachedBodyHttpServletRequest cached = new CachedBodyHttpServletRequest(request, MAX_INSPECTED_BODY);
+        if (!cached.isComplete()) {
+            // Auth bodies are small; padding one past the bound would hide its identifier
+            rejected.increment();
+            RateLimitFilter.writePayloadTooLarge(response, objectMapper);
+            return;
+        }
+
+        String identifier = identifier(cached.getBody());
+        if (identifier != null && heavyHitterService.recordAndCheck("id:" + identifier)) {
+            reject(response);
+            return;
+        }
+
+        chain.doFilter(cached, response);
+    }
+
+    private String identifier(byte[] body) {
+        if (body.length == 0) {
+            return null;
+        }
+        try {
+            JsonNode node = objectMapper.readTree(body);
+            if (node == null || !node.hasNonNull("identifier")) {
+                return null;
+            }
+            String value = node.get("identifier").asText();
+            // Tracked by digest, never the raw identifier
+            return value.isBlank() ? null : hashUtil.sha256(value.trim().toLowerCase());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private String clientIp(HttpServletRequest request) {
+        if (rateLimitProperties.isTrustForwardedFor()) {
+            String forwarded = request.getHeader("X-Forwarded-For");
+            if (forwarded != null && !forwarded.isBlank()) {
+                return forwarded.split(",")[0].trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        rejected.increment();
+        RateLimitFilter.writeTooManyRequests(response, objectMapper, heavyHitterService.retryAfterSeconds());
+    }
+}
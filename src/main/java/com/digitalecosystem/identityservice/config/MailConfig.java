@@ -0,0 +1,14 @@
+package com.digitalecosystem.identityservice.config;
+
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Binds spring.mail.* even when Boot's own mail sender is not auto-configured,
+ * so the SMTP pool always has its connection settings.
+ */
+@Configuration
+@EnableConfigurationProperties(MailProperties.class)
+public class MailConfig {
+}
@@ -0,0 +1,49 @@
+package com.digitalecosystem.identityservice.config;
+
+import com.digitalecosystem.identityservice.service.HeavyHitterService;
+import com.digitalecosystem.identityservice.service.RateLimiterService;
+import com.digitalecosystem.identityservice.util.HashUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class RateLimitConfig {
+
+    /**
+     * Registered ahead of the Spring Security filter chain
+     */
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(RateLimitProperties properties,
+                                                                   RateLimiterService rateLimiterService,
+                                                                   HashUtil hashUtil,
+                                                                   ObjectMapper objectMapper,
+                                                                   MeterRegistry meterRegistry) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(
+                new RateLimitFilter(properties, rateLimiterService, hashUtil, objectMapper, meterRegistry));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+
+    /**
+     * Runs before the rate limiter so locally blocked clients cost no Redis calls
+     */
+    @Bean
+    public FilterRegistrationBean<HeavyHitterFilter> heavyHitterFilter(HeavyHitterService heavyHitterService,
+                                                                       RateLimitProperties properties,
+                                                                       HashUtil hashUtil,
+                                                                       ObjectMapper objectMapper,
+                                                                       MeterRegistry meterRegistry) {
+        FilterRegistrationBean<HeavyHitterFilter> registration = new FilterRegistrationBean<>(
+                new HeavyHitterFilter(heavyHitterService, properties, hashUtil, objectMapper, meterRegistry));
+        registration.addUrlPatterns("/api/v1/auth/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 5);
+        return registration;
+    }
+}
@@ -0,0 +1,212 @@
+package com.digitalecosystem.identityservice.config;
+
+import com.digitalecosystem.identityservice.exception.ErrorResponse;
+import com.digitalecosystem.identityservice.service.RateLimiterService;
+import com.digitalecosystem.identityservice.util.CachedBodyHttpServletRequest;
+import com.digitalecosystem.identityservice.util.HashUtil;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Applies the configured token-bucket rules before security and controllers run,
+ * so rejected requests never reach Postgres.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final int MAX_INSPECTED_BODY = 16 * 1024;
+    // Rules charged by body size must see the whole body; a full identity check batch fits
+    private static final int MAX_COSTED_BODY = 2 * 1024 * 1024;
+
+    private final RateLimitProperties properties;
+    private final RateLimiterService rateLimiterService;
+    private final HashUtil hashUtil;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled() || properties.getRules().isEmpty();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        List<RateLimitProperties.Rule> rules = matchingRules(request);
+        if (rules.isEmpty()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        HttpServletRequest effectiveRequest = request;
+        JsonNode body = null;
+        boolean inspectable = true;
+        if (needsBody(rules)) {
+            // Read regardless of Content-Length, which chunked requests omit; the heavy-hitter
+            // filter may already have buffered the body
+            int maxBody = isCosted(rules) ? MAX_COSTED_BODY : MAX_INSPECTED_BODY;
+            CachedBodyHttpServletRequest cached = request instanceof CachedBodyHttpServletRequest buffered
+                    ? buffered : new CachedBodyHttpServletRequest(request, maxBody);
+            effectiveRequest = cached;
+            inspectable = cached.isComplete();
+            body = inspectable ? parseBody(cached.getBody()) : null;
+        }
+
+        for (RateLimitProperties.Rule rule : rules) {
+            String key = resolveKey(rule, request, body);
+            if (!inspectable && (key == null || !rule.getCostFields().isEmpty())) {
+                // A body too large to inspect would otherwise skip the per-identifier limit or its cost
+                count(rule, "uninspectable");
+                log.warn("Rate limit '{}' cannot inspect {} {}: body too large",
+                        rule.getName(), request.getMethod(), request.getRequestURI());
+                writePayloadTooLarge(response, objectMapper);
+                return;
+            }
+            if (key == null) {
+                continue;
+            }
+
+            long retryAfterMillis = rateLimiterService.tryConsume(rule, key, cost(rule, body));
+            if (retryAfterMillis > 0) {
+                count(rule, "rejected");
+                log.warn("Rate limit '{}' exceeded for {} {}", rule.getName(), request.getMethod(), request.getRequestURI());
+                writeTooManyRequests(response, objectMapper, (retryAfterMillis + 999) / 1000);
+                return;
+            }
+            count(rule, "allowed");
+        }
+
+        chain.doFilter(effectiveRequest, response);
+    }
+
+    private List<RateLimitProperties.Rule> matchingRules(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return properties.getRules().stream()
+                .filter(rule -> rule.getMethod() == null || rule.getMethod().equalsIgnoreCase(request.getMethod()))
+                .filter(rule -> pathMatcher.match(rule.getPath(), path))
+                .toList();
+    }
+
+    private boolean needsBody(List<RateLimitProperties.Rule> rules) {
+        return isCosted(rules) || rules.stream().anyMatch(rule -> rule.getKey() != RateLimitProperties.KeyType.IP);
+    }
+
+    private boolean isCosted(List<RateLimitProperties.Rule> rules) {
+        return rules.stream().anyMatch(rule -> !rule.getCostFields().isEmpty());
+    }
+
+    /**
+     * Tokens a request takes: the combined length of the rule's cost fields, at least one
+     */
+    private long cost(RateLimitProperties.Rule rule, JsonNode body) {
+        long cost = 0;
+        if (body != null) {
+            for (String field : rule.getCostFields()) {
+                JsonNode value = body.get(field);
+                if (value != null && value.isArray()) {
+                    cost += value.size();
+                }
+            }
+        }
+        return Math.max(1, cost);
+    }
+
+    private JsonNode parseBody(byte[] body) {
+        if (body.length == 0) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(body);
+        } catch (IOException e) {
+            // Malformed JSON is left to request validation
+            return null;
+        }
+    }
+
+    private String resolveKey(RateLimitProperties.Rule rule, HttpServletRequest request, JsonNode body) {
+        return switch (rule.getKey()) {
+            case IP -> clientIp(request);
+            case IDENTIFIER -> hashed(textField(body, "identifier"));
+            case DID -> {
+                String did = request.getParameter("did");
+                yield hashed(did != null ? did : textField(body, "did"));
+            }
+        };
+    }
+
+    private String clientIp(HttpServletRequest request) {
+        if (properties.isTrustForwardedFor()) {
+            String forwarded = request.getHeader("X-Forwarded-For");
+            if (forwarded != null && !forwarded.isBlank()) {
+                return forwarded.split(",")[0].trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private String textField(JsonNode body, String field) {
+        if (body == null || !body.hasNonNull(field)) {
+            return null;
+        }
+        String value = body.get(field).asText();
+        return value.isBlank() ? null : value;
+    }
+
+    private String hashed(String value) {
+        // Keys hold a digest, never the raw identifier
+        return value != null ? hashUtil.sha256(value.trim().toLowerCase()) : null;
+    }
+
+    private void count(RateLimitProperties.Rule rule, String outcome) {
+        meterRegistry.counter("rate_limit.requests", "rule", rule.getName(), "outcome", outcome).increment();
+    }
+
+    /**
+     * Write the 429 body and Retry-After header shared by the abuse filters
+     */
+    static void writeTooManyRequests(HttpServletResponse response, ObjectMapper objectMapper, long retryAfterSeconds)
+            throws IOException {
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        writeError(response, objectMapper, HttpStatus.TOO_MANY_REQUESTS, "Rate limit exceeded. Please try again later.");
+    }
+
+    /**
+     * Write the 413 sent when a body is too large for the abuse filters to inspect
+     */
+    static void writePayloadTooLarge(HttpServletResponse response, ObjectMapper objectMapper) throws IOException {
+        writeError(response, objectMapper, HttpStatus.PAYLOAD_TOO_LARGE, "Request body is too large.");
+    }
+
+    private static void writeError(HttpServletResponse response, ObjectMapper objectMapper, HttpStatus status,
+                                   String message) throws IOException {
+        ErrorResponse error = ErrorResponse.builder()
+                .timestamp(LocalDateTime.now())
+                .status(status.value())
+                .error(status.getReasonPhrase())
+                .message(message)
+                .build();
+
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), error);
+    }
+}
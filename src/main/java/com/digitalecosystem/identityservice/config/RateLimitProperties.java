@@ -0,0 +1,55 @@
+package com.digitalecosystem.identityservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Declarative per-endpoint rate limits (app.rate-limit.*)
+ */
+@Data
+@ConfigurationProperties(prefix = "app.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Use the first X-Forwarded-For address as the client IP (only behind a trusted proxy)
+     */
+    private boolean trustForwardedFor = false;
+
+    private List<Rule> rules = new ArrayList<>();
+
+    @Data
+    public static class Rule {
+        private String name;
+        private String method;
+        private String path;
+        private KeyType key = KeyType.IP;
+        private long capacity;
+        private long refillTokens;
+        private Duration refillPeriod = Duration.ofMinutes(1);
+
+        /**
+         * JSON array fields of the body whose combined length is charged instead of one token
+         * per request; capacity must cover the largest request allowed
+         */
+        private List<String> costFields = new ArrayList<>();
+
+        /**
+         * Refill rate in tokens per millisecond
+         */
+        public double refillRatePerMilli() {
+            return (double) refillTokens / refillPeriod.toMillis();
+        }
+    }
+
+    public enum KeyType {
+        IP,
+        IDENTIFIER,
+        DID
+    }
+}
@@ -1,9 +1,12 @@
 package com.digitalecosystem.identityservice.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
@@ -20,4 +23,37 @@ public class RedisConfig {
         template.afterPropertiesSet();
         return template;
     }
-}
\ No newline at end of file
+
+    /**
+     * Binary-keyed template for per-identifier session hashes (digest keys, string fields)
+     */
+    @Bean
+    public RedisTemplate<byte[], String> sessionRedisTemplate(RedisConnectionFactory connectionFactory) {
+        RedisTemplate<byte[], String> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(RedisSerializer.byteArray());
+        template.setValueSerializer(new StringRedisSerializer());
+        template.setHashKeySerializer(new StringRedisSerializer());
+        template.setHashValueSerializer(new StringRedisSerializer());
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    /**
+     * Pub/sub listeners, e.g. cross-node cache invalidation. Started only when pub/sub is enabled,
+     * so a node without it (tests, single-node runs) starts without Redis and its listeners stay idle.
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(
+            RedisConnectionFactory connectionFactory,
+            @Value("${app.identity-cache.pubsub.enabled:true}") boolean pubsubEnabled) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer() {
+            @Override
+            public boolean isAutoStartup() {
+                return pubsubEnabled;
+            }
+        };
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+}
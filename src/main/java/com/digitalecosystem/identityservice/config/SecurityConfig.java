@@ -43,6 +43,8 @@ public class SecurityConfig {
                                 "/api/v1/auth/verify-otp",    // OTP verification
                                 "/api/v1/auth/resend-otp",    // Resend OTP
                                 "/api/v1/identity/check",     // Check if identity exists
+                                "/api/v1/identity/check-batch", // Batch identity check (contact discovery)
+                                "/api/v1/identity/range/*",   // Hash-prefix range query (contact discovery)
                                 "/api/v1/identity/register",  // Register DID (FIXED: now public)
                                 "/api/v1/identity/restore",   // Restore identity from backup
                                 "/api/v1/identity/test-link",
@@ -64,7 +66,9 @@ public class SecurityConfig {
                         // Protected endpoints - Require authentication after registration
                         .requestMatchers(
                                 "/api/v1/identity/backup",     // Create backup
-                                "/api/v1/sync/batch"           // Sync operations
+                                "/api/v1/sync/batch",          // Sync operations
+                                "/api/v1/sync/batch/*",        // Queued sync batch status
+                                "/api/v1/sync/changes"         // Delta pull
                         ).authenticated()
 
                         // Everything else requires authentication
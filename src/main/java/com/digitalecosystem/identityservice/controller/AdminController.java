@@ -0,0 +1,55 @@
+package com.digitalecosystem.identityservice.controller;
+
+import com.digitalecosystem.identityservice.dto.IdentityImportResponse;
+import com.digitalecosystem.identityservice.service.IdentityExportService;
+import com.digitalecosystem.identityservice.service.IdentityImportService;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/v1/admin")
+@RequiredArgsConstructor
+@Slf4j
+public class AdminController {
+
+    private final IdentityImportService identityImportService;
+    private final IdentityExportService identityExportService;
+
+    /**
+     * Bulk identity import, one JSON object per line
+     * POST /api/v1/admin/identities/import
+     */
+    @PostMapping(value = "/identities/import", consumes = {"application/x-ndjson", "application/jsonl"})
+    public ResponseEntity<IdentityImportResponse> importIdentities(InputStream body) throws IOException {
+        log.info("Bulk identity import started");
+        return ResponseEntity.ok(identityImportService.importNdjson(body));
+    }
+
+    /**
+     * Gzip-compressed export of identities with contacts, devices and did:web status
+     * GET /api/v1/admin/identities/export?format=ndjson|csv
+     */
+    @GetMapping("/identities/export")
+    public void exportIdentities(@RequestParam(defaultValue = "ndjson") String format,
+                                 HttpServletResponse response) throws IOException {
+        IdentityExportService.Format exportFormat = IdentityExportService.Format.of(format);
+        log.info("Identity export started ({})", exportFormat);
+
+        // Written synchronously to the response, so a long export is not cut off by the async request timeout
+        response.setContentType("application/gzip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("identities-" + LocalDate.now() + "." + exportFormat.extension())
+                .build()
+                .toString());
+        identityExportService.export(response.getOutputStream(), exportFormat);
+    }
+}
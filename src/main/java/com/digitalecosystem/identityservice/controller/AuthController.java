@@ -27,9 +27,8 @@ public class AuthController {
     public ResponseEntity<OTPGenerateResponse> register(@Valid @RequestBody OTPGenerateRequest request) {
         log.info("Registration request for: {}", request.getIdentifier());
 
-        // Check if identity already exists
-        IdentityCheckResponse check = identityService.checkIdentity(request.getIdentifier());
-        if (check.getExists()) {
+        // Check if identity already exists; authoritative, so no OTP goes to a registered identifier
+        if (identityService.isRegistered(request.getIdentifier())) {
             return ResponseEntity.badRequest().body(
                     OTPGenerateResponse.builder()
                             .message("Identity already exists. Please use restore flow.")
@@ -55,15 +54,13 @@ public class AuthController {
     public ResponseEntity<OTPValidateResponse> verifyOTP(@Valid @RequestBody OTPValidateRequest request) {
         log.info("OTP verification request for: {}", request.getIdentifier());
 
-        boolean isValid = otpService.validateOTP(request.getIdentifier(), request.getOtp());
+        // Validates and marks the identifier as verified for 30 minutes in one call
+        boolean isValid = otpService.verifyOTP(request.getIdentifier(), request.getOtp());
 
         if (!isValid) {
             throw new OTPException("Invalid or expired OTP");
         }
 
-        // Mark identifier as verified for 30 minutes
-        otpService.markIdentifierAsVerified(request.getIdentifier());
-
         return ResponseEntity.ok(OTPValidateResponse.builder()
                 .status("VALID")
                 .message("OTP verified successfully")
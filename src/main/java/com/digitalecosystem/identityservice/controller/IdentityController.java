@@ -1,17 +1,26 @@
 package com.digitalecosystem.identityservice.controller;
 
 import com.digitalecosystem.identityservice.dto.*;
-import com.digitalecosystem.identityservice.exception.IdentityException;
 import com.digitalecosystem.identityservice.service.BackupService;
+import com.digitalecosystem.identityservice.service.IdentifierRangeIndex;
 import com.digitalecosystem.identityservice.service.IdentityService;
-import com.digitalecosystem.identityservice.service.OTPService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/v1/identity")
@@ -21,7 +30,11 @@ public class IdentityController {
 
     private final IdentityService identityService;
     private final BackupService backupService;
-    private final OTPService otpService;
+    private final IdentifierRangeIndex identifierRangeIndex;
+    private final ObjectMapper objectMapper;
+
+    // Results written between flushes, so large batches reach the client as they are serialised
+    private static final int BATCH_FLUSH_INTERVAL = 500;
 
     /**
      * Check if identity exists
@@ -35,6 +48,53 @@ public class IdentityController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Check many identifiers at once (address book sync), results in request order
+     * POST /api/v1/identity/check-batch
+     */
+    @PostMapping("/check-batch")
+    public ResponseEntity<StreamingResponseBody> checkIdentities(@RequestBody IdentityCheckBatchRequest request) {
+        List<IdentityCheckResponse> results = identityService.checkIdentities(request);
+        log.info("Batch identity check for {} identifiers", results.size());
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("results");
+                for (int i = 0; i < results.size(); i++) {
+                    generator.writeObject(results.get(i));
+                    if ((i + 1) % BATCH_FLUSH_INTERVAL == 0) {
+                        generator.flush();
+                    }
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Identifier hash suffixes sharing a prefix (k-anonymity range query), matched by the client
+     * GET /api/v1/identity/range/{prefix}
+     */
+    @GetMapping("/range/{prefix}")
+    public ResponseEntity<String> identityRange(@PathVariable String prefix) {
+        Optional<IdentifierRangeIndex.Range> range = identifierRangeIndex.lookup(prefix);
+        if (range.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .build();
+        }
+
+        // Spring answers a matching If-None-Match with 304 from this ETag
+        return ResponseEntity.ok()
+                .eTag(range.get().etag())
+                .cacheControl(CacheControl.maxAge(identifierRangeIndex.maxAgeSeconds(), TimeUnit.SECONDS).cachePublic())
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(range.get().body());
+    }
+
     /**
      * Register DID with verified identifier linking
      * POST /api/v1/identity/register
@@ -43,20 +103,8 @@ public class IdentityController {
     public ResponseEntity<DIDCreateResponse> registerDID(@Valid @RequestBody DIDCreateRequest request) {
         log.info("DID registration request: {}", request.getDid());
 
-        // Check if identifier was verified via OTP
-        if (request.getVerifiedIdentifier() != null && !otpService.isIdentifierVerified(request.getVerifiedIdentifier())) {
-            throw new IdentityException("Identifier not verified. Please complete OTP verification first.");
-        }
-
-        DIDCreateResponse response = identityService.createDID(request);
-
-        // Link contact if identifier was provided and verified
-        if (request.getVerifiedIdentifier() != null && otpService.isIdentifierVerified(request.getVerifiedIdentifier())) {
-            boolean isEmail = request.getVerifiedIdentifier().contains("@");
-            identityService.linkContact(request.getDid(), request.getVerifiedIdentifier(), isEmail);
-            otpService.invalidateVerifiedIdentifier(request.getVerifiedIdentifier()); // Clean up
-            log.info("Auto-linked verified identifier: {} to DID: {}", request.getVerifiedIdentifier(), request.getDid());
-        }
+        // Verification check, identity insert and contact link in one transaction
+        DIDCreateResponse response = identityService.registerDID(request);
 
         return ResponseEntity.ok(response);
     }
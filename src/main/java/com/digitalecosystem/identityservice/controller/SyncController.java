@@ -1,16 +1,31 @@
 package com.digitalecosystem.identityservice.controller;
 
+import com.digitalecosystem.identityservice.dto.SyncBatchAcceptedResponse;
 import com.digitalecosystem.identityservice.dto.SyncBatchRequest;
 import com.digitalecosystem.identityservice.dto.SyncBatchResponse;
+import com.digitalecosystem.identityservice.dto.SyncBatchStatusResponse;
+import com.digitalecosystem.identityservice.dto.SyncChangesResponse;
+import com.digitalecosystem.identityservice.exception.IdentityException;
+import com.digitalecosystem.identityservice.service.ProofOfControlService;
+import com.digitalecosystem.identityservice.service.SyncChangeFeed;
+import com.digitalecosystem.identityservice.service.SyncQueueService;
 import com.digitalecosystem.identityservice.service.SyncService;
-import jakarta.validation.Valid;
+import com.digitalecosystem.identityservice.util.SpooledBody;
+import com.digitalecosystem.identityservice.util.SyncBatchReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/v1/sync")
@@ -18,7 +33,13 @@ import java.util.Map;
 @Slf4j
 public class SyncController {
 
+    private static final int REPLAY_LOOKAHEAD = 1000;
+
     private final SyncService syncService;
+    private final SyncQueueService syncQueueService;
+    private final SyncChangeFeed syncChangeFeed;
+    private final ProofOfControlService proofOfControlService;
+    private final ObjectMapper objectMapper;
 
     /**
      * Check sync availability
@@ -33,14 +54,64 @@ public class SyncController {
     }
 
     /**
-     * Batch sync operations
+     * Batch sync operations; queued and answered with 202 when async ingestion is on.
+     * The body is received in full first (spooled to disk when large), so no connection is
+     * held while a slow client uploads; it is then parsed and handed on an operation at a time.
      * POST /api/v1/sync/batch
      */
-    @PostMapping("/batch")
-    public ResponseEntity<SyncBatchResponse> batchSync(@Valid @RequestBody SyncBatchRequest request) {
-        log.info("Batch sync request with {} operations", request.getOperations().size());
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> batchSync(InputStream body) throws IOException {
+        try (SpooledBody spooled = syncQueueService.spool(body);
+             SyncBatchReader operations = new SyncBatchReader(objectMapper.getFactory(), spooled.open())) {
+            if (!syncQueueService.isAsync()) {
+                SyncBatchResponse response = syncService.processBatchSync(operations);
+                log.info("Batch sync applied {} operations", operations.operationsRead());
+                return ResponseEntity.ok(response);
+            }
+
+            // A resend after a timeout is usually small: when the whole batch fits in the
+            // look-ahead and every operation has a recorded outcome, it is answered from the record
+            List<SyncBatchRequest.SyncOperation> head = operations.peek(REPLAY_LOOKAHEAD);
+            if (head.size() < REPLAY_LOOKAHEAD) {
+                Optional<SyncBatchResponse> replayed = syncService.replayRecorded(head);
+                if (replayed.isPresent()) {
+                    return ResponseEntity.ok(replayed.get());
+                }
+            }
+
+            SyncBatchAcceptedResponse accepted = syncQueueService.enqueue(operations);
+            return ResponseEntity.accepted()
+                    .location(URI.create(accepted.getStatusUrl()))
+                    .body(accepted);
+        }
+    }
+
+    /**
+     * Result of a queued batch
+     * GET /api/v1/sync/batch/{batchId}
+     */
+    @GetMapping("/batch/{batchId}")
+    public ResponseEntity<SyncBatchStatusResponse> batchStatus(@PathVariable String batchId) {
+        return syncQueueService.status(batchId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
 
-        SyncBatchResponse response = syncService.processBatchSync(request);
-        return ResponseEntity.ok(response);
+    /**
+     * Changes to an identity, its contacts and devices after a change sequence number. The feed
+     * carries the identity's email and phone, so each page requires proof of control of the DID:
+     * the nonce from GET /api/v1/did/challenge signed with the DID's key.
+     * GET /api/v1/sync/changes?did=...&since=...&nonceId=...&signature=...
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<SyncChangesResponse> changes(@RequestParam String did,
+                                                       @RequestParam(defaultValue = "0") long since,
+                                                       @RequestParam(required = false) Integer limit,
+                                                       @RequestParam String nonceId,
+                                                       @RequestParam String signature) {
+        if (!proofOfControlService.verifyProof(did, signature, nonceId)) {
+            throw new IdentityException("Proof of control verification failed");
+        }
+        return ResponseEntity.ok(syncChangeFeed.changesSince(did, since, limit));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,13 @@
+package com.digitalecosystem.identityservice.dto;
+
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class IdentityCheckBatchRequest {
+    // Raw emails / phone numbers, hashed server-side
+    private List<String> identifiers;
+
+    // Or SHA-256 hex of each identifier, hashed client-side
+    private List<String> identifierHashes;
+}
@@ -0,0 +1,25 @@
+package com.digitalecosystem.identityservice.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import java.util.List;
+
+@Data
+@Builder
+public class IdentityImportResponse {
+    private Long rowsRead;
+    private Long identitiesImported;
+    private Long contactsLinked;
+    private Long rowsRejected;
+    private Long elapsedMs;
+    private Double rowsPerSecond;
+    private List<RejectedRow> rejects;
+
+    @Data
+    @Builder
+    public static class RejectedRow {
+        private Long line;
+        private String did;
+        private String reason;
+    }
+}
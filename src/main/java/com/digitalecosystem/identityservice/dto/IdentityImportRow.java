@@ -0,0 +1,15 @@
+package com.digitalecosystem.identityservice.dto;
+
+import lombok.Data;
+
+/**
+ * One NDJSON line of a bulk identity import
+ */
+@Data
+public class IdentityImportRow {
+    private String did;
+    private String publicKey;
+
+    // Optional verified email or phone number to link to the DID
+    private String identifier;
+}
@@ -0,0 +1,14 @@
+package com.digitalecosystem.identityservice.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class SyncBatchAcceptedResponse {
+    private String batchId;
+    private String status;
+    private Integer operations;
+    private String statusUrl;
+    private Long serverTime;
+}
@@ -1,8 +1,10 @@
 package com.digitalecosystem.identityservice.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import java.util.List;
-import java.util.Map;
 
 @Data
 public class SyncBatchRequest {
@@ -10,8 +12,21 @@ public class SyncBatchRequest {
 
     @Data
     public static class SyncOperation {
+        private String opId; // client-generated id; a resend with the same id gets the recorded outcome
         private String operation; // create, update, delete
-        private Map<String, Object> data;
+        private OperationData data;
         private Long timestamp;
     }
-}
\ No newline at end of file
+
+    /**
+     * The fields of an operation's data the server reads; anything else the client sends is skipped
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class OperationData {
+        private String did;
+        private String publicKey;
+    }
+}
@@ -16,6 +16,7 @@ public class SyncBatchResponse {
     public static class ConflictInfo {
         private String operation;
         private String reason;
+        private Boolean retryable; // true when the operation was not applied and can be resent as is
         private Object serverData;
         private Object clientData;
     }
@@ -0,0 +1,20 @@
+package com.digitalecosystem.identityservice.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+public class SyncBatchStatusResponse {
+    private String batchId;
+    private String status; // queued, processing, completed, failed
+    private Integer operations;
+    private Integer processed;
+    private Integer synced;
+    private List<SyncBatchResponse.ConflictInfo> conflicts;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime completedAt;
+}
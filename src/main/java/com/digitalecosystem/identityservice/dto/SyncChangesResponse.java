@@ -0,0 +1,27 @@
+package com.digitalecosystem.identityservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.Builder;
+import lombok.Data;
+import java.util.List;
+
+@Data
+@Builder
+public class SyncChangesResponse {
+    private List<Change> changes;
+    private Long nextSince;       // pass as ?since= for the next page
+    private Boolean hasMore;
+    private Boolean resyncRequired; // the cursor is older than the retained tombstones; pull again from 0
+    private Long serverTime;
+
+    @Data
+    @Builder
+    public static class Change {
+        private Long seq;
+        private String entity; // identity, contact, device
+        private Long id;
+        private String action; // upsert, delete
+        @JsonRawValue
+        private String data;   // current row for upserts, null for deletes
+    }
+}
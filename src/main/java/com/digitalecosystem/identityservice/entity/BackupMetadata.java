@@ -16,7 +16,8 @@ import java.time.LocalDateTime;
 public class BackupMetadata {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "backup_metadata_seq")
+    @SequenceGenerator(name = "backup_metadata_seq", sequenceName = "backup_metadata_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
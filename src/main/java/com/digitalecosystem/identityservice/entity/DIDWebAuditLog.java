@@ -20,7 +20,8 @@ import java.util.Map;
 public class DIDWebAuditLog {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "did_web_audit_log_seq")
+    @SequenceGenerator(name = "did_web_audit_log_seq", sequenceName = "did_web_audit_log_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
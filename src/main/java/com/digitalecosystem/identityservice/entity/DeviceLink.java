@@ -20,7 +20,8 @@ import java.util.UUID;
 public class DeviceLink {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "device_link_seq")
+    @SequenceGenerator(name = "device_link_seq", sequenceName = "device_link_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,83 @@
+package com.digitalecosystem.identityservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "sync_batch")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncBatch implements Persistable<String> {
+
+    public static final String STATUS_QUEUED = "queued";
+    public static final String STATUS_PROCESSING = "processing";
+    public static final String STATUS_COMPLETED = "completed";
+    public static final String STATUS_FAILED = "failed";
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(nullable = false, length = 20)
+    private String status;
+
+    @Column(name = "operation_count", nullable = false)
+    private Integer operationCount;
+
+    @Column(name = "processed_count", nullable = false)
+    private Integer processedCount;
+
+    @Column(name = "synced_count", nullable = false)
+    private Integer syncedCount;
+
+    @Column(nullable = false)
+    private Integer attempts;
+
+    @Column(columnDefinition = "TEXT")
+    private String error;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    // The id is assigned up front, so save() must be told the row is new to skip a merge SELECT
+    @Transient
+    private boolean persisted;
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    protected void markPersisted() {
+        persisted = true;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (status == null) {
+            status = STATUS_QUEUED;
+        }
+        if (processedCount == null) {
+            processedCount = 0;
+        }
+        if (syncedCount == null) {
+            syncedCount = 0;
+        }
+        if (attempts == null) {
+            attempts = 0;
+        }
+    }
+}
@@ -19,16 +19,26 @@ import java.util.Map;
 public class SyncQueue {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sync_queue_seq")
+    @SequenceGenerator(name = "sync_queue_seq", sequenceName = "sync_queue_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private UserIdentity userIdentity;
 
+    @Column(name = "batch_id", length = 36)
+    private String batchId;
+
     @Column(nullable = false, length = 50)
     private String operation;
 
+    @Column(name = "op_id", length = 128)
+    private String opId;
+
+    @Column(name = "did")
+    private String did;
+
     @JdbcTypeCode(SqlTypes.JSON)
     @Column(name = "payload", nullable = false)
     private Map<String, Object> payload;
@@ -45,6 +55,9 @@ public class SyncQueue {
     @Column(name = "synced_at")
     private LocalDateTime syncedAt;
 
+    @Column(name = "conflict_reason", columnDefinition = "TEXT")
+    private String conflictReason;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -16,7 +16,8 @@ import java.time.LocalDateTime;
 public class UserContact {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_contact_seq")
+    @SequenceGenerator(name = "user_contact_seq", sequenceName = "user_contact_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
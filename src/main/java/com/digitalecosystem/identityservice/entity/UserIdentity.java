@@ -20,7 +20,8 @@ import java.util.Map;
 public class UserIdentity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_identity_seq")
+    @SequenceGenerator(name = "user_identity_seq", sequenceName = "user_identity_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(unique = true, nullable = false)
@@ -0,0 +1,11 @@
+package com.digitalecosystem.identityservice.exception;
+
+public class OTPDeliveryException extends RuntimeException {
+    public OTPDeliveryException(String message) {
+        super(message);
+    }
+
+    public OTPDeliveryException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,187 @@
+package com.digitalecosystem.identityservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Hand-written SQL where JPA's row-at-a-time queries cost extra round trips: inserts that let
+ * the unique constraints decide races, and set-based lookups.
+ */
+@Repository
+@RequiredArgsConstructor
+public class IdentityJdbcRepository {
+
+    // The unique did constraint decides the winner; a conflict returns no row instead of failing
+    private static final String INSERT_IDENTITY = """
+            INSERT INTO user_identity (did, public_key, sync_status, last_verified, created_at, updated_at,
+                                       local_version, server_version)
+            VALUES (?, ?, ?, ?, ?, ?, 1, 0)
+            ON CONFLICT (did) DO NOTHING
+            RETURNING id
+            """;
+
+    // Same, with the contact linked to the returned id in the same statement
+    private static final String INSERT_IDENTITY_WITH_CONTACT = """
+            WITH identity AS (
+                INSERT INTO user_identity (did, public_key, sync_status, last_verified, created_at, updated_at,
+                                           local_version, server_version)
+                VALUES (?, ?, ?, ?, ?, ?, 1, 0)
+                ON CONFLICT (did) DO NOTHING
+                RETURNING id
+            ), contact AS (
+                INSERT INTO user_contact (user_id, email, phone_number, identifier_hash, is_verified,
+                                          created_at, updated_at)
+                SELECT id, ?, ?, ?, TRUE, ?, ? FROM identity
+            )
+            SELECT id FROM identity
+            """;
+
+    // One array parameter instead of an IN list, so every batch size shares one prepared statement
+    private static final String FIND_DIDS_BY_HASH = """
+            SELECT c.identifier_hash, u.did
+            FROM user_contact c
+            JOIN user_identity u ON u.id = c.user_id
+            WHERE c.identifier_hash = ANY(?)
+            """;
+
+    private static final String FIND_DIDS_BY_RAW_IDENTIFIER = """
+            SELECT c.email, c.phone_number, u.did
+            FROM user_contact c
+            JOIN user_identity u ON u.id = c.user_id
+            WHERE c.email = ANY(?) OR c.phone_number = ANY(?)
+            """;
+
+    private static final String MARK_SYNCED =
+            "UPDATE user_identity SET sync_status = 'synced', updated_at = ? WHERE did = ?";
+
+    // The SELECT sees the contacts as they were before the cascade, so their hashes come back with the delete
+    private static final String DELETE_IDENTITY = """
+            WITH doomed AS (
+                DELETE FROM user_identity WHERE did = ? RETURNING id
+            )
+            SELECT d.id, c.identifier_hash
+            FROM doomed d
+            LEFT JOIN user_contact c ON c.user_id = d.id AND c.identifier_hash IS NOT NULL
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Insert identity; empty when the DID is already taken
+     */
+    public Optional<Long> insertIdentity(String did, String publicKey, String syncStatus, LocalDateTime now) {
+        Timestamp timestamp = Timestamp.valueOf(now);
+        List<Long> ids = jdbcTemplate.queryForList(INSERT_IDENTITY, Long.class,
+                did, publicKey, syncStatus, timestamp, timestamp, timestamp);
+        return ids.stream().findFirst();
+    }
+
+    /**
+     * Insert identity and its verified contact in one statement; empty (and nothing written)
+     * when the DID is already taken
+     */
+    public Optional<Long> insertIdentityWithContact(String did, String publicKey, String syncStatus,
+                                                    String email, String phoneNumber, String identifierHash,
+                                                    LocalDateTime now) {
+        Timestamp timestamp = Timestamp.valueOf(now);
+        List<Long> ids = jdbcTemplate.queryForList(INSERT_IDENTITY_WITH_CONTACT, Long.class,
+                did, publicKey, syncStatus, timestamp, timestamp, timestamp,
+                email, phoneNumber, identifierHash, timestamp, timestamp);
+        return ids.stream().findFirst();
+    }
+
+    /**
+     * Mark an identity synced; false when the DID does not exist
+     */
+    public boolean markSynced(String did, LocalDateTime now) {
+        return jdbcTemplate.update(MARK_SYNCED, Timestamp.valueOf(now), did) > 0;
+    }
+
+    /**
+     * Delete an identity, returning the identifier hashes of the contacts that went with it;
+     * empty when the DID does not exist
+     */
+    public Optional<List<String>> deleteIdentity(String did) {
+        List<String> identifierHashes = new ArrayList<>();
+        boolean[] deleted = {false};
+        jdbcTemplate.query(DELETE_IDENTITY, (RowCallbackHandler) rs -> {
+            deleted[0] = true;
+            if (rs.getString(2) != null) {
+                identifierHashes.add(rs.getString(2));
+            }
+        }, did);
+        return deleted[0] ? Optional.of(identifierHashes) : Optional.empty();
+    }
+
+    /**
+     * Savepoint on the connection bound to the current transaction
+     */
+    public Savepoint setSavepoint() {
+        return jdbcTemplate.execute((ConnectionCallback<Savepoint>) Connection::setSavepoint);
+    }
+
+    public void rollbackToSavepoint(Savepoint savepoint) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            connection.rollback(savepoint);
+            return null;
+        });
+    }
+
+    public void releaseSavepoint(Savepoint savepoint) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            connection.releaseSavepoint(savepoint);
+            return null;
+        });
+    }
+
+    /**
+     * DIDs keyed by identifier hash; hashes without a contact are absent
+     */
+    public Map<String, String> findDidsByIdentifierHashes(Collection<String> identifierHashes) {
+        Map<String, String> dids = new HashMap<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(FIND_DIDS_BY_HASH);
+            statement.setArray(1, connection.createArrayOf("varchar", identifierHashes.toArray()));
+            return statement;
+        }, (RowCallbackHandler) rs -> dids.putIfAbsent(rs.getString(1), rs.getString(2)));
+        return dids;
+    }
+
+    /**
+     * DIDs keyed by raw email or phone number, for legacy rows without an identifier hash
+     */
+    public Map<String, String> findDidsByRawIdentifiers(Collection<String> identifiers) {
+        Map<String, String> dids = new HashMap<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(FIND_DIDS_BY_RAW_IDENTIFIER);
+            Object[] values = identifiers.toArray();
+            statement.setArray(1, connection.createArrayOf("varchar", values));
+            statement.setArray(2, connection.createArrayOf("varchar", values));
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            String did = rs.getString(3);
+            if (rs.getString(1) != null) {
+                dids.putIfAbsent(rs.getString(1), did);
+            }
+            if (rs.getString(2) != null) {
+                dids.putIfAbsent(rs.getString(2), did);
+            }
+        });
+        return dids;
+    }
+}
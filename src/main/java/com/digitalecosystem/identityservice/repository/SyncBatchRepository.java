@@ -0,0 +1,51 @@
+package com.digitalecosystem.identityservice.repository;
+
+import com.digitalecosystem.identityservice.entity.SyncBatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Optional;
+
+@Repository
+public interface SyncBatchRepository extends JpaRepository<SyncBatch, String> {
+    long countByStatusIn(Collection<String> statuses);
+
+    /**
+     * Lock the oldest unfinished batch, skipping batches other workers hold and batches with
+     * pending operations on a DID that an older unfinished batch has not applied yet, so
+     * operations on one DID apply in the order their batches arrived
+     */
+    @Query(value = "SELECT b.* FROM sync_batch b WHERE b.status IN ('queued', 'processing') " +
+            "AND NOT EXISTS (SELECT 1 FROM sync_queue q " +
+            "JOIN sync_queue o ON o.did = q.did AND o.synced = FALSE AND o.batch_id <> q.batch_id " +
+            "JOIN sync_batch ob ON ob.id = o.batch_id " +
+            "WHERE q.batch_id = b.id AND q.synced = FALSE AND ob.status IN ('queued', 'processing') " +
+            "AND (ob.created_at < b.created_at OR (ob.created_at = b.created_at AND ob.id < b.id))) " +
+            "ORDER BY b.created_at LIMIT 1 FOR UPDATE OF b SKIP LOCKED", nativeQuery = true)
+    Optional<SyncBatch> claimNext();
+
+    /**
+     * Set once a streamed batch has been read to the end
+     */
+    @Modifying
+    @Query("update SyncBatch b set b.operationCount = :operationCount where b.id = :id")
+    int updateOperationCount(String id, int operationCount);
+
+    @Modifying
+    @Query("update SyncBatch b set b.attempts = b.attempts + 1, b.error = :error where b.id = :id")
+    int recordFailure(String id, String error);
+
+    @Modifying
+    @Query("update SyncBatch b set b.status = 'failed', b.completedAt = :now where b.id = :id and b.attempts >= :maxAttempts")
+    int failIfExhausted(String id, int maxAttempts, LocalDateTime now);
+
+    /**
+     * Drop finished batches; their queued operations go with them through ON DELETE CASCADE
+     */
+    @Modifying
+    @Query("delete from SyncBatch b where b.completedAt < :cutoff")
+    int deleteCompletedBefore(LocalDateTime cutoff);
+}
@@ -2,6 +2,7 @@ package com.digitalecosystem.identityservice.repository;
 
 import com.digitalecosystem.identityservice.entity.SyncQueue;
 import com.digitalecosystem.identityservice.entity.UserIdentity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import java.util.List;
@@ -10,4 +11,6 @@ import java.util.List;
 public interface SyncQueueRepository extends JpaRepository<SyncQueue, Long> {
     List<SyncQueue> findByUserIdentityAndSyncedFalse(UserIdentity userIdentity);
     List<SyncQueue> findBySyncedFalseOrderByClientTimestampAsc();
-}
\ No newline at end of file
+    List<SyncQueue> findByBatchIdAndSyncedFalseOrderByIdAsc(String batchId, Pageable pageable);
+    List<SyncQueue> findByBatchIdAndConflictReasonNotNullOrderByIdAsc(String batchId);
+}
@@ -1,9 +1,17 @@
 package com.digitalecosystem.identityservice.repository;
 
 import com.digitalecosystem.identityservice.entity.UserContact;
+import com.digitalecosystem.identityservice.entity.UserIdentity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserContactRepository extends JpaRepository<UserContact, Long> {
@@ -11,5 +19,33 @@ public interface UserContactRepository extends JpaRepository<UserContact, Long>
     Optional<UserContact> findByPhoneNumber(String phoneNumber);
     Optional<UserContact> findByEmailOrPhoneNumber(String email, String phoneNumber);
     Optional<UserContact> findByIdentifierHash(String identifierHash);
+    List<UserContact> findByUserIdentity(UserIdentity userIdentity);
+
+    /**
+     * Hash, email and phone of every contact, read through a server-side cursor
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select c.identifierHash, c.email, c.phoneNumber from UserContact c")
+    Stream<Object[]> streamIdentifiers();
+
+    /**
+     * Hash, email, phone and owning DID of every contact, read through a server-side cursor
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select c.identifierHash, c.email, c.phoneNumber, u.did from UserContact c join c.userIdentity u")
+    Stream<Object[]> streamIdentifiersWithDid();
+
+    /**
+     * Owning DID and identifier hash of every hashed contact of the given identities
+     */
+    @Query("select u.did, c.identifierHash from UserContact c join c.userIdentity u " +
+            "where u.did in :dids and c.identifierHash is not null")
+    List<Object[]> findIdentifierHashesByDidIn(Collection<String> dids);
 
 }
\ No newline at end of file
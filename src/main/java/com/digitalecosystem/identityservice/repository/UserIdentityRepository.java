@@ -2,11 +2,33 @@ package com.digitalecosystem.identityservice.repository;
 
 import com.digitalecosystem.identityservice.entity.UserIdentity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserIdentityRepository extends JpaRepository<UserIdentity, Long> {
     Optional<UserIdentity> findByDid(String did);
     boolean existsByDid(String did);
+
+    /**
+     * Which of the given DIDs exist, in one query
+     */
+    @Query("select u.did from UserIdentity u where u.did in :dids")
+    List<String> findExistingDids(Collection<String> dids);
+
+    @Modifying
+    @Query("update UserIdentity u set u.syncStatus = :syncStatus, u.updatedAt = :updatedAt where u.did in :dids")
+    int markSyncedByDidIn(Collection<String> dids, String syncStatus, LocalDateTime updatedAt);
+
+    /**
+     * Bulk delete; contacts, devices, backups and queued sync rows go with it through ON DELETE CASCADE
+     */
+    @Modifying
+    @Query("delete from UserIdentity u where u.did in :dids")
+    int deleteByDidIn(Collection<String> dids);
 }
\ No newline at end of file
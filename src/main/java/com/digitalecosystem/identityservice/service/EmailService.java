@@ -1,22 +1,132 @@
 package com.digitalecosystem.identityservice.service;
 
+import com.digitalecosystem.identityservice.exception.OTPDeliveryException;
+import com.digitalecosystem.identityservice.util.TextTemplate;
+import jakarta.annotation.PostConstruct;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class EmailService {
 
+    private static final String TEMPLATE_PATH = "templates/email/";
+
+    private final SmtpTransportPool transportPool;
+
+    @Value("${app.mail.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.mail.from:no-reply@digitalecosystem.com}")
+    private String from;
+
+    @Value("${app.otp.expiry-seconds}")
+    private Integer otpExpirySeconds;
+
+    private TextTemplate subjectTemplate;
+    private TextTemplate textTemplate;
+    private TextTemplate htmlTemplate;
+    private InternetAddress fromAddress;
+
+    /**
+     * Parse the OTP templates once at startup
+     */
+    @PostConstruct
+    void compileTemplates() throws IOException, MessagingException {
+        subjectTemplate = TextTemplate.compile(loadTemplate("otp-subject.txt").strip());
+        textTemplate = TextTemplate.compile(loadTemplate("otp-body.txt"));
+        htmlTemplate = TextTemplate.compile(loadTemplate("otp-body.html"));
+        fromAddress = new InternetAddress(from);
+    }
+
     public void sendOTP(String email, String otp) {
-        // TODO: Implement actual email sending (e.g., using JavaMailSender)
-        // For now, just log
-        log.info("Sending OTP {} to email: {}", otp, email);
-
-        // Example implementation:
-        // SimpleMailMessage message = new SimpleMailMessage();
-        // message.setTo(email);
-        // message.setSubject("Your OTP Code");
-        // message.setText("Your OTP code is: " + otp);
-        // mailSender.send(message);
+        if (!enabled) {
+            log.info("Sending OTP {} to email: {}", otp, email);
+            return;
+        }
+
+        if (!sendOTPBatch(List.of(Map.entry(email, otp))).get(0)) {
+            throw new OTPDeliveryException("Failed to send email to " + email);
+        }
+        log.info("OTP email sent to: {}", email);
+    }
+
+    /**
+     * Send several OTP emails over one pooled SMTP session, returning a success flag per entry
+     */
+    public List<Boolean> sendOTPBatch(List<Map.Entry<String, String>> emailAndOtp) {
+        if (!enabled) {
+            emailAndOtp.forEach(entry -> log.info("Sending OTP {} to email: {}", entry.getValue(), entry.getKey()));
+            return Collections.nCopies(emailAndOtp.size(), true);
+        }
+
+        Boolean[] results = new Boolean[emailAndOtp.size()];
+        Arrays.fill(results, false);
+
+        List<MimeMessage> messages = new ArrayList<>(emailAndOtp.size());
+        List<Integer> positions = new ArrayList<>(emailAndOtp.size());
+        for (int i = 0; i < emailAndOtp.size(); i++) {
+            try {
+                messages.add(buildMessage(emailAndOtp.get(i).getKey(), emailAndOtp.get(i).getValue()));
+                positions.add(i);
+            } catch (MessagingException e) {
+                log.warn("Invalid OTP email for {}: {}", emailAndOtp.get(i).getKey(), e.getMessage());
+            }
+        }
+
+        try {
+            List<Boolean> sent = transportPool.send(messages);
+            for (int i = 0; i < sent.size(); i++) {
+                results[positions.get(i)] = sent.get(i);
+            }
+        } catch (OTPDeliveryException e) {
+            log.warn("OTP email batch failed: {}", e.getMessage());
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private MimeMessage buildMessage(String email, String otp) throws MessagingException {
+        Map<String, String> values = Map.of(
+                "otp", otp,
+                "expiryMinutes", String.valueOf(Math.max(1, otpExpirySeconds / 60)));
+
+        MimeBodyPart text = new MimeBodyPart();
+        text.setText(textTemplate.render(values), StandardCharsets.UTF_8.name());
+
+        MimeBodyPart html = new MimeBodyPart();
+        html.setContent(htmlTemplate.render(values), "text/html; charset=UTF-8");
+
+        MimeMultipart body = new MimeMultipart("alternative");
+        body.addBodyPart(text);
+        body.addBodyPart(html);
+
+        MimeMessage message = new MimeMessage(transportPool.session());
+        message.setFrom(fromAddress);
+        message.setRecipient(MimeMessage.RecipientType.TO, new InternetAddress(email, true));
+        message.setSubject(subjectTemplate.render(values), StandardCharsets.UTF_8.name());
+        message.setContent(body);
+        return message;
+    }
+
+    private String loadTemplate(String name) throws IOException {
+        return new ClassPathResource(TEMPLATE_PATH + name).getContentAsString(StandardCharsets.UTF_8);
     }
-}
\ No newline at end of file
+}
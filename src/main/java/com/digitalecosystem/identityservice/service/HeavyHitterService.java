@@ -0,0 +1,234 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.util.CountMinSketch;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-node heavy-hitter tracking for the auth paths: a count-min sketch per time window
+ * finds hot keys, a small top-K map keeps the current leaders, and keys over the threshold
+ * are blocked locally. Blocks are exchanged with other nodes through a Redis sorted set.
+ * The sketch only overcounts, so it nominates candidates; a key is blocked once an exact
+ * counter, started when it is nominated, reaches the threshold on its own.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HeavyHitterService {
+
+    private static final String SHARED_BLOCKLIST_KEY = "hh:blocked";
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    @Value("${app.heavy-hitter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.heavy-hitter.window-ms:60000}")
+    private long windowMs;
+
+    @Value("${app.heavy-hitter.block-threshold:50}")
+    private int blockThreshold;
+
+    @Value("${app.heavy-hitter.block-duration-ms:600000}")
+    private long blockDurationMs;
+
+    @Value("${app.heavy-hitter.top-k:20}")
+    private int topK;
+
+    @Value("${app.heavy-hitter.sketch-width:2048}")
+    private int sketchWidth;
+
+    @Value("${app.heavy-hitter.sketch-depth:4}")
+    private int sketchDepth;
+
+    @Value("${app.heavy-hitter.max-candidates:4096}")
+    private int maxCandidates;
+
+    private volatile CountMinSketch sketch;
+    private volatile long windowStart;
+
+    private final Map<String, Integer> leaders = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> candidates = new ConcurrentHashMap<>();
+    private volatile int leaderFloor;
+
+    private final Map<String, Long> blocked = new ConcurrentHashMap<>();
+    private final Map<String, Long> unshared = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        sketch = new CountMinSketch(sketchWidth, sketchDepth);
+        windowStart = System.currentTimeMillis();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long retryAfterSeconds() {
+        return blockDurationMs / 1000;
+    }
+
+    /**
+     * Count a request for the key and report whether it should be rejected.
+     * Blocked keys are rejected without being counted.
+     */
+    public boolean recordAndCheck(String key) {
+        long now = System.currentTimeMillis();
+        if (isBlocked(key, now)) {
+            return true;
+        }
+
+        rotateIfDue(now);
+        int estimate = sketch.add(key);
+        updateLeaders(key, estimate);
+
+        int exact = confirm(key, estimate);
+        if (exact >= blockThreshold) {
+            long until = now + blockDurationMs;
+            blocked.put(key, until);
+            unshared.put(key, until);
+            candidates.remove(key);
+            log.warn("Heavy hitter blocked: {} ({} requests counted exactly in window)", key, exact);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Publish local blocks to the shared set and pull in blocks raised by other nodes
+     */
+    @Scheduled(fixedDelayString = "${app.heavy-hitter.sync-interval-ms:5000}")
+    public void syncBlockList() {
+        if (!enabled) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        blocked.values().removeIf(until -> until <= now);
+
+        try {
+            ZSetOperations<String, String> zset = redisTemplate.opsForZSet();
+
+            if (!unshared.isEmpty()) {
+                Map<String, Long> pending = Map.copyOf(unshared);
+                Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+                pending.forEach((key, until) -> tuples.add(new DefaultTypedTuple<>(key, (double) until)));
+                zset.add(SHARED_BLOCKLIST_KEY, tuples);
+                pending.forEach(unshared::remove);
+            }
+
+            zset.removeRangeByScore(SHARED_BLOCKLIST_KEY, 0, now);
+            Set<ZSetOperations.TypedTuple<String>> shared =
+                    zset.rangeByScoreWithScores(SHARED_BLOCKLIST_KEY, now, Double.POSITIVE_INFINITY);
+            if (shared != null) {
+                shared.forEach(tuple -> blocked.merge(tuple.getValue(), tuple.getScore().longValue(), Math::max));
+            }
+        } catch (Exception e) {
+            log.warn("Failed to sync heavy-hitter block list: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Current leaders and blocks, for the heavyhitters actuator endpoint
+     */
+    public Map<String, Object> snapshot() {
+        long now = System.currentTimeMillis();
+
+        Map<String, Integer> top = new LinkedHashMap<>();
+        leaders.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+
+        Map<String, Long> blocks = new LinkedHashMap<>();
+        blocked.entrySet().stream()
+                .filter(entry -> entry.getValue() > now)
+                .sorted(Map.Entry.comparingByValue(Comparator.reverseOrder()))
+                .forEach(entry -> blocks.put(entry.getKey(), (entry.getValue() - now) / 1000));
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("windowStartedAt", windowStart);
+        snapshot.put("windowMs", windowMs);
+        snapshot.put("blockThreshold", blockThreshold);
+        snapshot.put("topKeys", top);
+        snapshot.put("candidates", candidates.size());
+        snapshot.put("blockedKeysSecondsRemaining", blocks);
+        return snapshot;
+    }
+
+    private boolean isBlocked(String key, long now) {
+        Long until = blocked.get(key);
+        if (until == null) {
+            return false;
+        }
+        if (until > now) {
+            return true;
+        }
+        blocked.remove(key, until);
+        return false;
+    }
+
+    private void rotateIfDue(long now) {
+        if (now - windowStart < windowMs) {
+            return;
+        }
+        synchronized (this) {
+            if (now - windowStart >= windowMs) {
+                sketch = new CountMinSketch(sketchWidth, sketchDepth);
+                leaders.clear();
+                candidates.clear();
+                leaderFloor = 0;
+                windowStart = now;
+            }
+        }
+    }
+
+    /**
+     * Exact count of the key since the sketch nominated it, at half the threshold so a real
+     * heavy hitter is still stopped within one and a half thresholds. 0 when not a candidate.
+     */
+    private int confirm(String key, int estimate) {
+        AtomicInteger exact = candidates.get(key);
+        if (exact == null) {
+            if (estimate < Math.max(1, blockThreshold / 2) || candidates.size() >= maxCandidates) {
+                return 0;
+            }
+            exact = candidates.computeIfAbsent(key, k -> new AtomicInteger());
+        }
+        return exact.incrementAndGet();
+    }
+
+    private void updateLeaders(String key, int estimate) {
+        if (leaders.size() < topK || leaders.containsKey(key)) {
+            leaders.put(key, estimate);
+            return;
+        }
+        if (estimate <= leaderFloor) {
+            return;
+        }
+        synchronized (leaders) {
+            Map.Entry<String, Integer> lowest = leaders.entrySet().stream()
+                    .min(Map.Entry.comparingByValue())
+                    .orElse(null);
+            if (lowest != null && estimate > lowest.getValue()) {
+                leaders.remove(lowest.getKey());
+                leaders.put(key, estimate);
+            }
+            leaderFloor = leaders.values().stream().mapToInt(Integer::intValue).min().orElse(0);
+        }
+    }
+}
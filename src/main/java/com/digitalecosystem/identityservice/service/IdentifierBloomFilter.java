@@ -0,0 +1,209 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.repository.UserContactRepository;
+import com.digitalecosystem.identityservice.util.HashUtil;
+import com.digitalecosystem.identityservice.util.ScalableBloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
+
+/**
+ * In-memory membership filter over every stored identifier hash, so checkIdentity can skip the
+ * cache and Postgres for unregistered identifiers. Contacts linked on other nodes arrive over
+ * the identity cache's pub/sub channel after they commit, so a negative can briefly lag another
+ * node (or miss a lost message until the next rebuild); decisions that must not act on a stale
+ * "no", such as sending a registration OTP, go through {@link IdentityService#isRegistered}.
+ * Until the first rebuild finishes every lookup answers "maybe".
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IdentifierBloomFilter {
+
+    // Links this recent may not be visible to the rebuild's snapshot yet, so they are replayed
+    private static final long RECENT_ADD_WINDOW_MS = 60_000;
+
+    private final UserContactRepository userContactRepository;
+    private final HashUtil hashUtil;
+    private final PlatformTransactionManager transactionManager;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.identity-bloom.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.identity-bloom.initial-capacity:1000000}")
+    private long initialCapacity;
+
+    @Value("${app.identity-bloom.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    @Value("${app.identity-bloom.growth-factor:2}")
+    private int growthFactor;
+
+    private volatile ScalableBloomFilter filter;
+    private volatile ScalableBloomFilter rebuilding;
+    private final AtomicBoolean rebuildRunning = new AtomicBoolean();
+    private final Map<String, Long> recentAdds = new ConcurrentHashMap<>();
+
+    private Counter definiteNegatives;
+    private Counter maybePresent;
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("identity.bloom.entries", this, bloom -> bloom.stat(ScalableBloomFilter::size))
+                .description("Identifier hashes added to the Bloom filter")
+                .register(meterRegistry);
+        Gauge.builder("identity.bloom.memory", this, bloom -> bloom.stat(ScalableBloomFilter::memoryBytes))
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("identity.bloom.slices", this, bloom -> bloom.stat(ScalableBloomFilter::sliceCount))
+                .register(meterRegistry);
+        Gauge.builder("identity.bloom.false_positive_rate", this,
+                        bloom -> bloom.stat(ScalableBloomFilter::expectedFalsePositiveRate))
+                .description("Estimated false-positive rate at the current fill")
+                .register(meterRegistry);
+        definiteNegatives = meterRegistry.counter("identity.bloom.checks", "result", "negative");
+        maybePresent = meterRegistry.counter("identity.bloom.checks", "result", "maybe");
+
+        // Every node publishes the hashes of its committed identity changes here; hashes of
+        // removed contacts are added too, which only costs a false positive until the rebuild
+        listenerContainer.addMessageListener((message, pattern) -> onRemoteChange(message),
+                new ChannelTopic(IdentityLookupCache.INVALIDATION_CHANNEL));
+    }
+
+    /**
+     * False only when the identifier hash is certainly not stored
+     */
+    public boolean mightContain(String identifierHash) {
+        ScalableBloomFilter current = filter;
+        if (!enabled || current == null) {
+            return true;
+        }
+        boolean maybe = current.mightContain(identifierHash);
+        (maybe ? maybePresent : definiteNegatives).increment();
+        return maybe;
+    }
+
+    public void add(String identifierHash) {
+        recentAdds.put(identifierHash, System.currentTimeMillis());
+        ScalableBloomFilter current = filter;
+        if (current != null) {
+            current.add(identifierHash);
+        }
+        // Keep a rebuild in progress from missing contacts linked while it streams
+        ScalableBloomFilter next = rebuilding;
+        if (next != null) {
+            next.add(identifierHash);
+        }
+    }
+
+    /**
+     * Runs before the linking transaction commits: a rolled-back link only costs a false positive,
+     * whereas adding after commit would leave a window of false negatives
+     */
+    @EventListener
+    public void onIdentityChange(IdentityChangeEvent event) {
+        if (event.type() == IdentityChangeEvent.Type.CONTACT_LINKED) {
+            event.identifierHashes().forEach(this::add);
+        }
+    }
+
+    private void onRemoteChange(Message message) {
+        if (!enabled) {
+            return;
+        }
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        for (String identifierHash : body.split(",")) {
+            if (!identifierHash.isBlank()) {
+                add(identifierHash);
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (enabled) {
+            Thread.ofVirtual().name("identity-bloom-build").start(this::rebuild);
+        }
+    }
+
+    /**
+     * Bloom filters cannot delete, so the filter is rebuilt periodically to shed removed contacts
+     */
+    @Scheduled(initialDelayString = "${app.identity-bloom.rebuild-interval-ms:21600000}",
+            fixedDelayString = "${app.identity-bloom.rebuild-interval-ms:21600000}")
+    public void rebuild() {
+        if (!enabled || !rebuildRunning.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            ScalableBloomFilter next = new ScalableBloomFilter(initialCapacity, falsePositiveRate, growthFactor);
+            rebuilding = next;
+
+            TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+            readOnly.setReadOnly(true);
+            readOnly.executeWithoutResult(status -> {
+                try (Stream<Object[]> rows = userContactRepository.streamIdentifiers()) {
+                    rows.forEach(row -> addRow(next, row));
+                }
+            });
+
+            long replayFrom = start - RECENT_ADD_WINDOW_MS;
+            recentAdds.values().removeIf(addedAt -> addedAt < replayFrom);
+            recentAdds.keySet().forEach(next::add);
+
+            filter = next;
+            log.info("Identifier Bloom filter built: {} entries, {} KiB, estimated false-positive rate {} in {} ms",
+                    next.size(), next.memoryBytes() / 1024, String.format("%.5f", next.expectedFalsePositiveRate()),
+                    System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            // The previous filter (or "maybe" for everything) stays in place
+            log.error("Failed to build identifier Bloom filter", e);
+        } finally {
+            rebuilding = null;
+            rebuildRunning.set(false);
+        }
+    }
+
+    private void addRow(ScalableBloomFilter target, Object[] row) {
+        String identifierHash = (String) row[0];
+        if (identifierHash != null) {
+            target.add(identifierHash);
+            return;
+        }
+        // Legacy rows without a hash are still found through the raw-identifier fallback
+        for (int column = 1; column <= 2; column++) {
+            String raw = (String) row[column];
+            if (raw != null && !raw.isBlank()) {
+                target.add(hashUtil.sha256(raw));
+            }
+        }
+    }
+
+    private double stat(ToDoubleFunction<ScalableBloomFilter> metric) {
+        ScalableBloomFilter current = filter;
+        return current != null ? metric.applyAsDouble(current) : 0;
+    }
+}
@@ -0,0 +1,224 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.util.HashUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Resumable backfill of user_contact.identifier_hash for legacy rows. Walks the rows still
+ * missing a hash in id order (keyset pagination over a partial index), in throttled batches,
+ * with the cursor kept in Redis so any node can resume after a restart. Once it reports
+ * complete, checkIdentity stops falling back to the raw email/phone query. A row holding both
+ * an email and a phone can carry only one hash: the email is hashed and the row is flagged,
+ * and while any such row exists the fallback stays on so its phone number is still found.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IdentifierHashBackfill {
+
+    static final String CURSOR_KEY = "backfill:identifier_hash:cursor";
+    static final String COMPLETE_KEY = "backfill:identifier_hash:complete";
+    static final String LOCK_KEY = "backfill:identifier_hash:lock";
+    static final String DUAL_KEY = "backfill:identifier_hash:dual";
+
+    static final RedisScript<Long> RELEASE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/lock_release.lua"), Long.class);
+
+    private static final String SELECT_BATCH =
+            "SELECT id, email, phone_number FROM user_contact " +
+            "WHERE identifier_hash IS NULL AND id > ? ORDER BY id LIMIT ?";
+    private static final String UPDATE_HASH =
+            "UPDATE user_contact SET identifier_hash = ? WHERE id = ? AND identifier_hash IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final HashUtil hashUtil;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.identifier-backfill.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.identifier-backfill.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.identifier-backfill.pause-ms:200}")
+    private long pauseMs;
+
+    @Value("${app.identifier-backfill.lock-ttl-ms:60000}")
+    private long lockTtlMs;
+
+    // on | off | auto (on until the backfill reports complete)
+    @Value("${app.identity.legacy-fallback:auto}")
+    private String legacyFallback;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean complete;
+    private volatile boolean dualIdentifiers;
+    private volatile long cursor;
+
+    private Counter rowsHashed;
+    private Counter rowsSkipped;
+    private Counter rowsDual;
+    private Timer batchTimer;
+
+    @PostConstruct
+    void registerMetrics() {
+        rowsHashed = meterRegistry.counter("identifier_hash_backfill.rows", "outcome", "hashed");
+        rowsSkipped = meterRegistry.counter("identifier_hash_backfill.rows", "outcome", "skipped");
+        rowsDual = meterRegistry.counter("identifier_hash_backfill.rows", "outcome", "dual");
+        batchTimer = Timer.builder("identifier_hash_backfill.batch").register(meterRegistry);
+        Gauge.builder("identifier_hash_backfill.cursor", this, backfill -> backfill.cursor)
+                .description("Highest user_contact id processed")
+                .register(meterRegistry);
+        Gauge.builder("identifier_hash_backfill.complete", this, backfill -> backfill.complete ? 1 : 0)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Whether checkIdentity should still try the raw email/phone query after a hash miss
+     */
+    public boolean legacyFallbackEnabled() {
+        return switch (legacyFallback.toLowerCase()) {
+            case "on" -> true;
+            case "off" -> false;
+            default -> !complete || dualIdentifiers;
+        };
+    }
+
+    /**
+     * Refresh completion from Redis and start a run on this node if none is active anywhere
+     */
+    @Scheduled(fixedDelayString = "${app.identifier-backfill.check-interval-ms:60000}")
+    public void tick() {
+        try {
+            complete = "1".equals(redisTemplate.opsForValue().get(COMPLETE_KEY));
+            dualIdentifiers = "1".equals(redisTemplate.opsForValue().get(DUAL_KEY));
+        } catch (Exception e) {
+            log.debug("Could not read backfill state: {}", e.getMessage());
+            return;
+        }
+        if (!enabled || complete || !running.compareAndSet(false, true)) {
+            return;
+        }
+        // Long-running; keep it off the shared scheduler thread
+        Thread.ofVirtual().name("identifier-hash-backfill").start(() -> {
+            try {
+                run();
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    void run() {
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, nodeId, Duration.ofMillis(lockTtlMs));
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+        try {
+            String stored = redisTemplate.opsForValue().get(CURSOR_KEY);
+            cursor = stored != null ? Long.parseLong(stored) : 0L;
+            log.info("Identifier hash backfill resuming after id {}", cursor);
+
+            while (!Thread.currentThread().isInterrupted()) {
+                int processed = batchTimer.record(this::processBatch);
+                if (processed == 0) {
+                    redisTemplate.opsForValue().set(COMPLETE_KEY, "1");
+                    complete = true;
+                    if (dualIdentifiers) {
+                        log.warn("Identifier hash backfill complete, but some contacts hold both an email and a phone "
+                                + "and only the email was hashed; legacy fallback stays on for their phone numbers");
+                    } else {
+                        log.info("Identifier hash backfill complete; legacy fallback can be retired");
+                    }
+                    return;
+                }
+                redisTemplate.opsForValue().set(CURSOR_KEY, String.valueOf(cursor));
+                if (!nodeId.equals(redisTemplate.opsForValue().get(LOCK_KEY))) {
+                    log.warn("Identifier hash backfill lost its lock at id {}; stopping", cursor);
+                    return;
+                }
+                redisTemplate.expire(LOCK_KEY, Duration.ofMillis(lockTtlMs));
+                Thread.sleep(pauseMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Identifier hash backfill failed at id {}; will resume", cursor, e);
+        } finally {
+            releaseLock();
+        }
+    }
+
+    private void releaseLock() {
+        try {
+            // Only while still ours: after losing the lock it may belong to another node's run
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(LOCK_KEY), nodeId);
+        } catch (Exception e) {
+            log.warn("Failed to release backfill lock; it expires in {} ms: {}", lockTtlMs, e.getMessage());
+        }
+    }
+
+    /**
+     * Hash and update one page of legacy rows; returns the number of rows read
+     */
+    private int processBatch() {
+        List<Object[]> updates = new ArrayList<>(batchSize);
+        long[] lastId = {cursor};
+        int[] read = {0};
+        int[] dual = {0};
+        jdbcTemplate.query(SELECT_BATCH, rs -> {
+            read[0]++;
+            long id = rs.getLong("id");
+            lastId[0] = id;
+            String email = rs.getString("email");
+            String phone = rs.getString("phone_number");
+            String raw = email != null ? email : phone;
+            if (raw == null || raw.isBlank()) {
+                // Nothing to hash; the cursor moves past it
+                rowsSkipped.increment();
+                return;
+            }
+            if (email != null && phone != null && !phone.isBlank()) {
+                // Only the email gets the hash; the phone stays reachable through the fallback
+                dual[0]++;
+            }
+            updates.add(new Object[]{hashUtil.sha256(raw), id});
+        }, cursor, batchSize);
+
+        if (dual[0] > 0) {
+            // Recorded before the hashes, so no node sees these rows hashed without the flag
+            redisTemplate.opsForValue().set(DUAL_KEY, "1");
+            dualIdentifiers = true;
+            rowsDual.increment(dual[0]);
+            log.warn("{} contacts up to id {} hold both an email and a phone; only the email was hashed",
+                    dual[0], lastId[0]);
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_HASH, updates);
+            rowsHashed.increment(updates.size());
+        }
+        cursor = lastId[0];
+        return read[0];
+    }
+}
@@ -0,0 +1,355 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.exception.IdentityException;
+import com.digitalecosystem.identityservice.repository.IdentityJdbcRepository;
+import com.digitalecosystem.identityservice.repository.UserContactRepository;
+import com.digitalecosystem.identityservice.util.CryptoPrimitives;
+import com.digitalecosystem.identityservice.util.HashUtil;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * k-anonymity range index: identifier hashes bucketed by their first hex characters. A client
+ * sends only a prefix, gets every stored suffix in that bucket and matches its own hash
+ * locally, so the server never sees which identifier was looked up. Each bucket carries a
+ * strong ETag, which lets proxies and CDNs serve repeat lookups.
+ * Every node keeps its own copy: changes committed anywhere are announced on the identity cache's
+ * pub/sub channel, and each node re-reads the announced hashes from the database, so all nodes
+ * converge on the same bodies and ETags. Until the first build finishes no ranges are served.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IdentifierRangeIndex {
+
+    private static final Pattern HEX = Pattern.compile("[0-9a-fA-F]+");
+    // Hex digits in a SHA-256 identifier hash
+    private static final int HASH_LENGTH = 64;
+    // Bytes of SHA-256(body) kept for the ETag
+    private static final int ETAG_BYTES = 16;
+
+    private final UserContactRepository userContactRepository;
+    private final IdentityJdbcRepository identityJdbcRepository;
+    private final HashUtil hashUtil;
+    private final CryptoPrimitives cryptoPrimitives;
+    private final PlatformTransactionManager transactionManager;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.identity-range.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.identity-range.prefix-length:5}")
+    private int prefixLength;
+
+    @Value("${app.identity-range.include-dids:false}")
+    private boolean includeDids;
+
+    @Value("${app.identity-range.max-age-seconds:300}")
+    private long maxAgeSeconds;
+
+    // Non-empty buckets keyed by prefix value; null until the first build
+    private volatile Map<Integer, Bucket> buckets;
+    private final AtomicBoolean rebuildRunning = new AtomicBoolean();
+    // Changes that arrive while a rebuild streams, replayed onto the new index before the swap
+    private List<Change> journal;
+    private Range emptyRange;
+    // One thread, so announced changes are re-read and applied in the order they arrived
+    private ExecutorService refresher;
+
+    @PostConstruct
+    void init() {
+        if (prefixLength < 1 || prefixLength > 7) {
+            throw new IllegalStateException("app.identity-range.prefix-length must be between 1 and 7");
+        }
+        emptyRange = new Range("", etag(""));
+        Gauge.builder("identity.range.entries", this, index -> index.entryCount())
+                .description("Identifier hashes in the range index")
+                .register(meterRegistry);
+        Gauge.builder("identity.range.buckets", this, index -> index.bucketCount())
+                .description("Non-empty prefix buckets in the range index")
+                .register(meterRegistry);
+
+        if (enabled) {
+            refresher = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("identity-range-refresh").factory());
+            listenerContainer.addMessageListener((message, pattern) -> onRemoteChange(message),
+                    new ChannelTopic(IdentityLookupCache.INVALIDATION_CHANNEL));
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * Suffixes (and DIDs, when enabled) stored under a hash prefix; empty while the index is not built
+     */
+    public Optional<Range> lookup(String prefix) {
+        if (prefix == null || prefix.length() != prefixLength || !HEX.matcher(prefix).matches()) {
+            throw new IdentityException("Prefix must be " + prefixLength + " hex characters");
+        }
+        Map<Integer, Bucket> current = buckets;
+        if (!enabled || current == null) {
+            return Optional.empty();
+        }
+        Bucket bucket = current.get(Integer.parseInt(prefix, 16));
+        return Optional.of(bucket != null ? bucket.range() : emptyRange);
+    }
+
+    public long maxAgeSeconds() {
+        return maxAgeSeconds;
+    }
+
+    /**
+     * Applied after commit: a range response is public, so rolled-back links must never appear
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onIdentityChange(IdentityChangeEvent event) {
+        if (event.type() == IdentityChangeEvent.Type.IDENTITY_CREATED) {
+            return;
+        }
+        boolean linked = event.type() == IdentityChangeEvent.Type.CONTACT_LINKED;
+        for (String identifierHash : event.identifierHashes()) {
+            if (identifierHash.length() == HASH_LENGTH) {
+                apply(new Change(identifierHash.toLowerCase(Locale.ROOT), event.did(), linked));
+            }
+        }
+    }
+
+    /**
+     * Bring the announced hashes in line with the database: linked hashes are (re)added under
+     * their current DID, the rest are removed whoever owned them
+     */
+    void refresh(List<String> identifierHashes) {
+        List<String> hashes = identifierHashes.stream()
+                .filter(hash -> hash.length() == HASH_LENGTH && HEX.matcher(hash).matches())
+                .map(hash -> hash.toLowerCase(Locale.ROOT))
+                .distinct()
+                .toList();
+        if (hashes.isEmpty()) {
+            return;
+        }
+        Map<String, String> dids = identityJdbcRepository.findDidsByIdentifierHashes(hashes);
+        for (String hash : hashes) {
+            String did = dids.get(hash);
+            apply(new Change(hash, did, did != null));
+        }
+    }
+
+    private void onRemoteChange(Message message) {
+        List<String> hashes = Arrays.asList(new String(message.getBody(), StandardCharsets.UTF_8).split(","));
+        refresher.execute(() -> {
+            try {
+                refresh(hashes);
+            } catch (Exception e) {
+                // The periodic rebuild corrects whatever was missed
+                log.warn("Failed to refresh identifier range index: {}", e.getMessage());
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (enabled) {
+            Thread.ofVirtual().name("identity-range-build").start(this::rebuild);
+        }
+    }
+
+    /**
+     * Live updates keep the index current; the periodic rebuild corrects any drift
+     */
+    @Scheduled(initialDelayString = "${app.identity-range.rebuild-interval-ms:3600000}",
+            fixedDelayString = "${app.identity-range.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        if (!enabled || !rebuildRunning.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        synchronized (this) {
+            journal = new ArrayList<>();
+        }
+        try {
+            Map<Integer, TreeMap<String, String>> staging = new HashMap<>();
+            TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+            readOnly.setReadOnly(true);
+            readOnly.executeWithoutResult(status -> {
+                try (Stream<Object[]> rows = userContactRepository.streamIdentifiersWithDid()) {
+                    rows.forEach(row -> stageRow(staging, row));
+                }
+            });
+
+            Map<Integer, Bucket> next = new ConcurrentHashMap<>(staging.size() * 2);
+            staging.forEach((prefix, entries) -> next.put(prefix, bucket(
+                    entries.keySet().toArray(String[]::new), entries.values().toArray(String[]::new))));
+
+            synchronized (this) {
+                journal.forEach(change -> apply(next, change));
+                buckets = next;
+            }
+            log.info("Identifier range index built: {} entries in {} buckets in {} ms",
+                    entryCount(), next.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            // The previous index (or no index) stays in place
+            log.error("Failed to build identifier range index", e);
+        } finally {
+            synchronized (this) {
+                journal = null;
+            }
+            rebuildRunning.set(false);
+        }
+    }
+
+    private synchronized void apply(Change change) {
+        Map<Integer, Bucket> current = buckets;
+        if (current != null) {
+            apply(current, change);
+        }
+        if (journal != null) {
+            journal.add(change);
+        }
+    }
+
+    private void apply(Map<Integer, Bucket> target, Change change) {
+        int prefix = Integer.parseInt(change.identifierHash(), 0, prefixLength, 16);
+        String suffix = change.identifierHash().substring(prefixLength);
+        target.compute(prefix, (key, bucket) -> {
+            String[] suffixes = bucket != null ? bucket.suffixes() : new String[0];
+            String[] dids = bucket != null ? bucket.dids() : new String[0];
+            int index = Arrays.binarySearch(suffixes, suffix);
+            if (change.linked()) {
+                if (index >= 0) {
+                    if (dids[index].equals(change.did())) {
+                        return bucket;
+                    }
+                    String[] relinked = dids.clone();
+                    relinked[index] = change.did();
+                    return bucket(suffixes, relinked);
+                }
+                int insertAt = -index - 1;
+                return bucket(insert(suffixes, insertAt, suffix), insert(dids, insertAt, change.did()));
+            }
+            // Only the identity that owns the entry may remove it; a refresh (no DID) removes any owner
+            if (index < 0 || (change.did() != null && !dids[index].equals(change.did()))) {
+                return bucket;
+            }
+            return suffixes.length == 1 ? null : bucket(remove(suffixes, index), remove(dids, index));
+        });
+    }
+
+    private void stageRow(Map<Integer, TreeMap<String, String>> staging, Object[] row) {
+        String did = (String) row[3];
+        String identifierHash = (String) row[0];
+        if (identifierHash != null) {
+            stage(staging, identifierHash, did);
+            return;
+        }
+        // Legacy rows without a hash are still discoverable through the raw identifier
+        for (int column = 1; column <= 2; column++) {
+            String raw = (String) row[column];
+            if (raw != null && !raw.isBlank()) {
+                stage(staging, hashUtil.sha256(raw), did);
+            }
+        }
+    }
+
+    private void stage(Map<Integer, TreeMap<String, String>> staging, String identifierHash, String did) {
+        if (identifierHash.length() != HASH_LENGTH) {
+            return;
+        }
+        String hash = identifierHash.toLowerCase(Locale.ROOT);
+        staging.computeIfAbsent(Integer.parseInt(hash, 0, prefixLength, 16), prefix -> new TreeMap<>())
+                .putIfAbsent(hash.substring(prefixLength), did);
+    }
+
+    /**
+     * Render the bucket body once, so every lookup serves the same bytes under the same ETag
+     */
+    private Bucket bucket(String[] suffixes, String[] dids) {
+        StringBuilder body = new StringBuilder(suffixes.length * (HASH_LENGTH - prefixLength + 1));
+        for (int i = 0; i < suffixes.length; i++) {
+            body.append(suffixes[i]);
+            if (includeDids) {
+                body.append(':').append(dids[i]);
+            }
+            body.append('\n');
+        }
+        String rendered = body.toString();
+        return new Bucket(suffixes, dids, new Range(rendered, etag(rendered)));
+    }
+
+    private String etag(String body) {
+        byte[] digest = cryptoPrimitives.sha256(body.getBytes(StandardCharsets.UTF_8));
+        return CryptoPrimitives.toHex(Arrays.copyOf(digest, ETAG_BYTES));
+    }
+
+    private long entryCount() {
+        Map<Integer, Bucket> current = buckets;
+        return current == null ? 0 : current.values().stream().mapToLong(bucket -> bucket.suffixes().length).sum();
+    }
+
+    private int bucketCount() {
+        Map<Integer, Bucket> current = buckets;
+        return current == null ? 0 : current.size();
+    }
+
+    private static String[] insert(String[] values, int index, String value) {
+        String[] result = new String[values.length + 1];
+        System.arraycopy(values, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(values, index, result, index + 1, values.length - index);
+        return result;
+    }
+
+    private static String[] remove(String[] values, int index) {
+        String[] result = new String[values.length - 1];
+        System.arraycopy(values, 0, result, 0, index);
+        System.arraycopy(values, index + 1, result, index, values.length - index - 1);
+        return result;
+    }
+
+    /**
+     * A rendered bucket: one suffix per line, followed by ":did" when DIDs are included
+     */
+    public record Range(String body, String etag) {
+    }
+
+    private record Bucket(String[] suffixes, String[] dids, Range range) {
+    }
+
+    private record Change(String identifierHash, String did, boolean linked) {
+    }
+}
@@ -0,0 +1,16 @@
+package com.digitalecosystem.identityservice.service;
+
+import java.util.List;
+
+/**
+ * Published when identities or their linked contacts are created or removed.
+ * Listeners run after the surrounding transaction commits.
+ */
+public record IdentityChangeEvent(Type type, String did, List<String> identifierHashes) {
+
+    public enum Type {
+        IDENTITY_CREATED,
+        IDENTITY_DELETED,
+        CONTACT_LINKED
+    }
+}
@@ -0,0 +1,244 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.exception.IdentityException;
+import com.digitalecosystem.identityservice.util.CsvFormat;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming export of identities with their contacts, devices and did:web status. Rows come
+ * through a server-side cursor and are written straight into a gzip stream, so heap use is
+ * bounded by the fetch size rather than the table size.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdentityExportService {
+
+    // Contacts and devices are aggregated per identity, so each identity is exactly one output row
+    private static final String EXPORT_QUERY = """
+            SELECT u.id, u.did, u.public_key, u.sync_status, u.created_at, u.updated_at,
+                   u.public_did, u.did_web_status, u.did_web_path, u.did_web_published_at,
+                   c.contacts, d.devices
+            FROM user_identity u
+            LEFT JOIN LATERAL (
+                SELECT COALESCE(json_agg(json_build_object(
+                           'email', email, 'phoneNumber', phone_number, 'identifierHash', identifier_hash,
+                           'verified', is_verified, 'createdAt', created_at) ORDER BY id), '[]'::json) AS contacts
+                FROM user_contact WHERE user_id = u.id
+            ) c ON TRUE
+            LEFT JOIN LATERAL (
+                SELECT COALESCE(json_agg(json_build_object(
+                           'deviceId', device_id, 'status', status, 'lastLogin', last_login,
+                           'createdAt', created_at) ORDER BY id), '[]'::json) AS devices
+                FROM device_link WHERE user_id = u.id
+            ) d ON TRUE
+            ORDER BY u.id
+            """;
+
+    private static final String[] COLUMNS = {"id", "did", "publicKey", "syncStatus", "createdAt", "updatedAt",
+            "publicDid", "didWebStatus", "didWebPath", "didWebPublishedAt", "contacts", "devices"};
+
+    // Rows between heap samples
+    private static final int HEAP_SAMPLE_INTERVAL = 10_000;
+    private static final int GZIP_BUFFER_BYTES = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.identity-export.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${app.identity-export.scheduled.enabled:false}")
+    private boolean scheduledEnabled;
+
+    @Value("${app.identity-export.scheduled.directory:exports}")
+    private String scheduledDirectory;
+
+    @Value("${app.identity-export.scheduled.format:ndjson}")
+    private String scheduledFormat;
+
+    public enum Format {
+        NDJSON, CSV;
+
+        public static Format of(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IdentityException("Unsupported export format: " + value);
+            }
+        }
+
+        public String extension() {
+            return name().toLowerCase(Locale.ROOT) + ".gz";
+        }
+    }
+
+    public record ExportStats(long rows, long elapsedMs, double rowsPerSecond, long peakHeapBytes) {
+    }
+
+    /**
+     * Write every identity to the stream as gzip-compressed NDJSON or CSV
+     */
+    public ExportStats export(OutputStream target, Format format) throws IOException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long start = System.nanoTime();
+        long[] rows = {0};
+        long[] peakHeap = {memory.getHeapMemoryUsage().getUsed()};
+
+        GZIPOutputStream gzip = new GZIPOutputStream(target, GZIP_BUFFER_BYTES);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), GZIP_BUFFER_BYTES);
+        JsonGenerator json = format == Format.NDJSON ? objectMapper.getFactory().createGenerator(writer) : null;
+        if (json != null) {
+            // Lines are separated explicitly; the generator must neither close nor flush the shared writer
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            json.setRootValueSeparator(null);
+        } else {
+            writer.write(String.join(",", COLUMNS));
+            writer.write('\n');
+        }
+
+        RowCallbackHandler handler = rs -> {
+            try {
+                if (json != null) {
+                    writeJson(json, rs);
+                    json.flush();
+                    writer.write('\n');
+                } else {
+                    writeCsv(writer, rs);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (++rows[0] % HEAP_SAMPLE_INTERVAL == 0) {
+                peakHeap[0] = Math.max(peakHeap[0], memory.getHeapMemoryUsage().getUsed());
+            }
+        };
+
+        // PostgreSQL only streams with a cursor inside a transaction (autocommit off)
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        try {
+            readOnly.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(EXPORT_QUERY,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(fetchSize);
+                return statement;
+            }, handler));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (json != null) {
+            json.close();
+        }
+        writer.flush();
+        gzip.finish();
+
+        long elapsedMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        peakHeap[0] = Math.max(peakHeap[0], memory.getHeapMemoryUsage().getUsed());
+        ExportStats stats = new ExportStats(rows[0], elapsedMs, rows[0] * 1000.0 / elapsedMs, peakHeap[0]);
+
+        meterRegistry.counter("identity.export.rows", "format", format.name().toLowerCase(Locale.ROOT)).increment(rows[0]);
+        meterRegistry.timer("identity.export.duration").record(elapsedMs, TimeUnit.MILLISECONDS);
+        log.info("Identity export ({}) finished: {} rows in {} ms ({} rows/s), peak heap used {} MiB",
+                format, stats.rows(), stats.elapsedMs(), String.format("%.0f", stats.rowsPerSecond()),
+                stats.peakHeapBytes() / (1024 * 1024));
+        return stats;
+    }
+
+    /**
+     * Nightly export to a local directory, for analytics pickup and disaster recovery
+     */
+    @Scheduled(cron = "${app.identity-export.scheduled.cron:0 0 2 * * *}")
+    public void exportNightly() {
+        if (!scheduledEnabled) {
+            return;
+        }
+        Format format = Format.of(scheduledFormat);
+        try {
+            Path directory = Files.createDirectories(Path.of(scheduledDirectory));
+            Path target = directory.resolve("identities-" + LocalDate.now() + "." + format.extension());
+            Path partial = directory.resolve(target.getFileName() + ".partial");
+            try (OutputStream out = Files.newOutputStream(partial)) {
+                export(out, format);
+            }
+            // Consumers only ever see complete files
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Nightly identity export written to {}", target);
+        } catch (Exception e) {
+            log.error("Nightly identity export failed", e);
+        }
+    }
+
+    private static void writeJson(JsonGenerator json, ResultSet rs) throws IOException, SQLException {
+        json.writeStartObject();
+        json.writeNumberField(COLUMNS[0], rs.getLong(1));
+        for (int column = 2; column <= 10; column++) {
+            String value = value(rs, column);
+            json.writeFieldName(COLUMNS[column - 1]);
+            if (value == null) {
+                json.writeNull();
+            } else {
+                json.writeString(value);
+            }
+        }
+        // Already JSON, built by Postgres
+        json.writeFieldName(COLUMNS[10]);
+        json.writeRawValue(rs.getString(11));
+        json.writeFieldName(COLUMNS[11]);
+        json.writeRawValue(rs.getString(12));
+        json.writeEndObject();
+    }
+
+    private static void writeCsv(Writer writer, ResultSet rs) throws IOException, SQLException {
+        StringBuilder line = new StringBuilder(512);
+        line.append(rs.getLong(1));
+        for (int column = 2; column <= 12; column++) {
+            CsvFormat.appendField(line.append(','), value(rs, column));
+        }
+        writer.append(line).append('\n');
+    }
+
+    private static String value(ResultSet rs, int column) throws SQLException {
+        Object value = rs.getObject(column);
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime().toString();
+        }
+        return value != null ? value.toString() : null;
+    }
+}
@@ -0,0 +1,303 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.dto.IdentityImportResponse;
+import com.digitalecosystem.identityservice.dto.IdentityImportRow;
+import com.digitalecosystem.identityservice.util.CsvFormat;
+import com.digitalecosystem.identityservice.util.DIDUtil;
+import com.digitalecosystem.identityservice.util.HashUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Bulk identity import for institution onboarding. NDJSON is read line by line, validated and
+ * hashed in parallel per chunk, COPYed into a temporary staging table and merged into
+ * user_identity and user_contact with one set-based statement per chunk. Each chunk commits
+ * on its own, so memory stays bounded by the chunk size and a failure only loses that chunk.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdentityImportService {
+
+    private static final String CREATE_STAGING = """
+            CREATE TEMP TABLE import_identity (
+                line_no BIGINT NOT NULL,
+                did VARCHAR(255) NOT NULL,
+                public_key TEXT NOT NULL,
+                email VARCHAR(100),
+                phone_number VARCHAR(50),
+                identifier_hash VARCHAR(64)
+            ) ON COMMIT DROP
+            """;
+
+    private static final String COPY_STAGING =
+            "COPY import_identity (line_no, did, public_key, email, phone_number, identifier_hash) FROM STDIN WITH (FORMAT csv)";
+
+    // Existing DIDs are skipped by the unique constraint; contacts are linked only to identities inserted here
+    private static final String MERGE_STAGING = """
+            WITH inserted AS (
+                INSERT INTO user_identity (did, public_key, sync_status, last_verified, created_at, updated_at,
+                                           local_version, server_version)
+                SELECT did, public_key, 'synced', ?, ?, ?, 1, 0 FROM import_identity
+                ON CONFLICT (did) DO NOTHING
+                RETURNING id, did
+            ), contacts AS (
+                INSERT INTO user_contact (user_id, email, phone_number, identifier_hash, is_verified,
+                                          created_at, updated_at)
+                SELECT i.id, s.email, s.phone_number, s.identifier_hash, TRUE, ?, ?
+                FROM inserted i
+                JOIN import_identity s ON s.did = i.did
+                WHERE s.identifier_hash IS NOT NULL
+            )
+            SELECT did FROM inserted
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final DIDUtil didUtil;
+    private final HashUtil hashUtil;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.identity-import.chunk-size:10000}")
+    private int chunkSize;
+
+    @Value("${app.identity-import.max-reported-rejects:1000}")
+    private int maxReportedRejects;
+
+    /**
+     * Import NDJSON identities; one JSON object per line
+     */
+    public IdentityImportResponse importNdjson(InputStream input) throws IOException {
+        Progress progress = new Progress();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        List<ParsedRow> chunk = new ArrayList<>(chunkSize);
+
+        String line;
+        long lineNo = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            if (line.isBlank()) {
+                continue;
+            }
+            progress.rowsRead++;
+            IdentityImportRow row;
+            try {
+                row = objectMapper.readValue(line, IdentityImportRow.class);
+            } catch (JsonProcessingException e) {
+                row = null;
+            }
+            if (row == null) {
+                progress.reject(lineNo, null, "Malformed JSON");
+                continue;
+            }
+            chunk.add(new ParsedRow(lineNo, row));
+            if (chunk.size() >= chunkSize) {
+                importChunk(chunk, progress);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, progress);
+        }
+
+        long elapsedMs = Math.max(1, (System.nanoTime() - progress.startedAt) / 1_000_000);
+        double rowsPerSecond = progress.rowsRead * 1000.0 / elapsedMs;
+        log.info("Identity import finished: {} rows read, {} identities imported, {} contacts linked, {} rejected in {} ms ({} rows/s)",
+                progress.rowsRead, progress.identitiesImported, progress.contactsLinked, progress.rowsRejected,
+                elapsedMs, String.format("%.0f", rowsPerSecond));
+
+        return IdentityImportResponse.builder()
+                .rowsRead(progress.rowsRead)
+                .identitiesImported(progress.identitiesImported)
+                .contactsLinked(progress.contactsLinked)
+                .rowsRejected(progress.rowsRejected)
+                .elapsedMs(elapsedMs)
+                .rowsPerSecond(rowsPerSecond)
+                .rejects(progress.rejects)
+                .build();
+    }
+
+    private void importChunk(List<ParsedRow> chunk, Progress progress) {
+        // Validation and hashing dominate per-row CPU, so they run across cores
+        List<StagedRow> staged = chunk.parallelStream().map(this::stage).toList();
+
+        List<StagedRow> accepted = new ArrayList<>(staged.size());
+        Set<String> chunkDids = new HashSet<>();
+        for (StagedRow row : staged) {
+            if (row.error() != null) {
+                progress.reject(row.line(), row.did(), row.error());
+            } else if (!chunkDids.add(row.did())) {
+                progress.reject(row.line(), row.did(), "Duplicate DID in import");
+            } else {
+                accepted.add(row);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        Set<String> inserted;
+        try {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            inserted = transaction.execute(status -> {
+                Set<String> dids = jdbcTemplate.execute((ConnectionCallback<Set<String>>) connection -> {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute(CREATE_STAGING);
+                    }
+                    try {
+                        connection.unwrap(PGConnection.class).getCopyAPI()
+                                .copyIn(COPY_STAGING, new StringReader(toCsv(accepted)));
+                    } catch (IOException e) {
+                        throw new SQLException("COPY into staging table failed", e);
+                    }
+                    return merge(connection.prepareStatement(MERGE_STAGING));
+                });
+                publishChanges(accepted, dids);
+                return dids;
+            });
+        } catch (DataAccessException e) {
+            log.error("Identity import chunk of {} rows failed", accepted.size(), e);
+            accepted.forEach(row -> progress.reject(row.line(), row.did(), "Chunk failed: " + e.getMostSpecificCause().getMessage()));
+            return;
+        }
+
+        for (StagedRow row : accepted) {
+            if (!inserted.contains(row.did())) {
+                progress.reject(row.line(), row.did(), "DID already exists");
+            } else {
+                progress.identitiesImported++;
+                if (row.identifierHash() != null) {
+                    progress.contactsLinked++;
+                }
+            }
+        }
+    }
+
+    private Set<String> merge(PreparedStatement statement) throws SQLException {
+        try (statement) {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            for (int parameter = 1; parameter <= 5; parameter++) {
+                statement.setTimestamp(parameter, now);
+            }
+            Set<String> dids = new HashSet<>();
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    dids.add(rs.getString(1));
+                }
+            }
+            return dids;
+        }
+    }
+
+    /**
+     * Same events as single registration, so the DID index, Bloom filter and caches stay current
+     */
+    private void publishChanges(List<StagedRow> accepted, Set<String> inserted) {
+        for (StagedRow row : accepted) {
+            if (!inserted.contains(row.did())) {
+                continue;
+            }
+            eventPublisher.publishEvent(new IdentityChangeEvent(
+                    IdentityChangeEvent.Type.IDENTITY_CREATED, row.did(), List.of()));
+            if (row.identifierHash() != null) {
+                eventPublisher.publishEvent(new IdentityChangeEvent(
+                        IdentityChangeEvent.Type.CONTACT_LINKED, row.did(), List.of(row.identifierHash())));
+            }
+        }
+    }
+
+    private StagedRow stage(ParsedRow parsed) {
+        IdentityImportRow row = parsed.row();
+        String did = row.getDid();
+        if (!didUtil.isValidDID(did) || did.length() > 255) {
+            return StagedRow.rejected(parsed.line(), did, "Invalid DID format");
+        }
+        if (row.getPublicKey() == null || row.getPublicKey().isBlank()) {
+            return StagedRow.rejected(parsed.line(), did, "Public key is required");
+        }
+
+        String identifier = row.getIdentifier();
+        if (identifier == null || identifier.isBlank()) {
+            return new StagedRow(parsed.line(), did, row.getPublicKey(), null, null, null, null);
+        }
+        boolean isEmail = identifier.contains("@");
+        if (identifier.length() > (isEmail ? 100 : 50)) {
+            return StagedRow.rejected(parsed.line(), did, "Identifier too long");
+        }
+        return new StagedRow(parsed.line(), did, row.getPublicKey(), isEmail ? identifier : null,
+                isEmail ? null : identifier, hashUtil.sha256(identifier), null);
+    }
+
+    private static String toCsv(List<StagedRow> rows) {
+        StringBuilder csv = new StringBuilder(rows.size() * 256);
+        for (StagedRow row : rows) {
+            csv.append(row.line()).append(',');
+            CsvFormat.appendField(csv, row.did()).append(',');
+            CsvFormat.appendField(csv, row.publicKey()).append(',');
+            CsvFormat.appendField(csv, row.email()).append(',');
+            CsvFormat.appendField(csv, row.phoneNumber()).append(',');
+            CsvFormat.appendField(csv, row.identifierHash()).append('\n');
+        }
+        return csv.toString();
+    }
+
+    private record ParsedRow(long line, IdentityImportRow row) {
+    }
+
+    private record StagedRow(long line, String did, String publicKey, String email, String phoneNumber,
+                             String identifierHash, String error) {
+
+        static StagedRow rejected(long line, String did, String error) {
+            return new StagedRow(line, did, null, null, null, null, error);
+        }
+    }
+
+    private final class Progress {
+        private final long startedAt = System.nanoTime();
+        private final List<IdentityImportResponse.RejectedRow> rejects = new ArrayList<>();
+        private long rowsRead;
+        private long identitiesImported;
+        private long contactsLinked;
+        private long rowsRejected;
+
+        private void reject(long line, String did, String reason) {
+            rowsRejected++;
+            if (rejects.size() < maxReportedRejects) {
+                rejects.add(IdentityImportResponse.RejectedRow.builder()
+                        .line(line)
+                        .did(did)
+                        .reason(reason)
+                        .build());
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Read-through cache from identifier hash to DID: Caffeine per node (L1) in front of Redis (L2).
+ * "Not registered" is cached too, with a short TTL, since it is the common answer during signup.
+ * Entries are dropped after identity changes commit; other nodes are told over Redis pub/sub.
+ * A dropped shared entry is replaced by a short-lived marker, and loads write back only into an
+ * absent key and only if they finished within the marker's lifetime, so a load that read the
+ * database before a change committed can never put the old answer back.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IdentityLookupCache {
+
+    static final String KEY_PREFIX = "idc:";
+    static final String INVALIDATION_CHANNEL = "identity:changes";
+    private static final String NOT_FOUND = "";
+    // Held in place of an invalidated shared entry; never a DID
+    private static final String INVALIDATED = "!invalidated";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.identity-cache.local-max-size:100000}")
+    private long localMaxSize;
+
+    @Value("${app.identity-cache.positive-ttl-seconds:600}")
+    private long positiveTtlSeconds;
+
+    @Value("${app.identity-cache.negative-ttl-seconds:30}")
+    private long negativeTtlSeconds;
+
+    @Value("${app.identity-cache.redis-ttl-seconds:3600}")
+    private long redisTtlSeconds;
+
+    @Value("${app.identity-cache.invalidation-guard-ms:10000}")
+    private long invalidationGuardMs;
+
+    private Cache<String, String> local;
+    private Timer loadTimer;
+
+    @PostConstruct
+    void init() {
+        local = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfter(new Expiry<String, String>() {
+                    @Override
+                    public long expireAfterCreate(String key, String value, long currentTime) {
+                        return ttl(value).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, String value, long currentTime, long currentDuration) {
+                        return ttl(value).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, String value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, local, "identity.lookup");
+        loadTimer = Timer.builder("identity.lookup.load")
+                .description("Database lookups behind the identity cache")
+                .register(meterRegistry);
+
+        listenerContainer.addMessageListener((message, pattern) -> onRemoteInvalidation(message),
+                new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    /**
+     * DID registered for the identifier hash, loading from the database on a miss in both tiers
+     */
+    public Optional<String> get(String identifierHash, Function<String, Optional<String>> loader) {
+        String did = local.get(identifierHash, hash -> loadThroughRedis(hash, loader));
+        return did == null || NOT_FOUND.equals(did) ? Optional.empty() : Optional.of(did);
+    }
+
+    /**
+     * Drop entries for the given hashes on this node and in Redis, and tell the other nodes
+     */
+    public void invalidate(List<String> identifierHashes) {
+        if (identifierHashes.isEmpty()) {
+            return;
+        }
+        local.invalidateAll(identifierHashes);
+        try {
+            Duration guard = Duration.ofMillis(invalidationGuardMs);
+            for (String identifierHash : identifierHashes) {
+                redisTemplate.opsForValue().set(KEY_PREFIX + identifierHash, INVALIDATED, guard);
+            }
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, String.join(",", identifierHashes));
+        } catch (Exception e) {
+            // Shared entries then age out through their TTL
+            log.warn("Failed to invalidate shared identity cache entries: {}", e.getMessage());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onIdentityChange(IdentityChangeEvent event) {
+        invalidate(event.identifierHashes());
+    }
+
+    private void onRemoteInvalidation(Message message) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        local.invalidateAll(Arrays.asList(body.split(",")));
+    }
+
+    private String loadThroughRedis(String identifierHash, Function<String, Optional<String>> loader) {
+        String key = KEY_PREFIX + identifierHash;
+        long start = System.nanoTime();
+        try {
+            String shared = redisTemplate.opsForValue().get(key);
+            if (shared != null && !INVALIDATED.equals(shared)) {
+                countShared("hit");
+                return shared;
+            }
+            countShared("miss");
+        } catch (Exception e) {
+            countShared("error");
+            log.warn("Identity cache read from Redis failed: {}", e.getMessage());
+        }
+
+        String did = loadTimer.record(() -> loader.apply(identifierHash)).orElse(NOT_FOUND);
+
+        // A change that committed during a longer load may have had its marker expire already
+        if (System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(invalidationGuardMs)) {
+            return did;
+        }
+        try {
+            long ttl = NOT_FOUND.equals(did) ? negativeTtlSeconds : redisTtlSeconds;
+            // Absent only: a marker set since the load began means its answer may be stale
+            redisTemplate.opsForValue().setIfAbsent(key, did, Duration.ofSeconds(ttl));
+        } catch (Exception e) {
+            log.warn("Identity cache write to Redis failed: {}", e.getMessage());
+        }
+        return did;
+    }
+
+    private Duration ttl(String value) {
+        return Duration.ofSeconds(NOT_FOUND.equals(value) ? negativeTtlSeconds : positiveTtlSeconds);
+    }
+
+    private void countShared(String result) {
+        meterRegistry.counter("identity.lookup.l2", "result", result).increment();
+    }
+}
@@ -5,17 +5,31 @@ import com.digitalecosystem.identityservice.entity.UserContact;
 import com.digitalecosystem.identityservice.entity.UserIdentity;
 import com.digitalecosystem.identityservice.exception.IdentityException;
 import com.digitalecosystem.identityservice.exception.IdentityExistsException;
+import com.digitalecosystem.identityservice.repository.IdentityJdbcRepository;
 import com.digitalecosystem.identityservice.repository.UserContactRepository;
 import com.digitalecosystem.identityservice.repository.UserIdentityRepository;
 import com.digitalecosystem.identityservice.util.DIDUtil;
 import com.digitalecosystem.identityservice.util.HashUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -24,8 +38,21 @@ public class IdentityService {
 
     private final UserIdentityRepository userIdentityRepository;
     private final UserContactRepository userContactRepository;
+    private final IdentityJdbcRepository identityJdbcRepository;
+    private final OTPService otpService;
     private final DIDUtil didUtil;
     private final HashUtil hashUtil;
+    private final IdentifierBloomFilter identifierBloomFilter;
+    private final IdentityLookupCache identityLookupCache;
+    private final IdentifierHashBackfill identifierHashBackfill;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.identity.batch-max-size:5000}")
+    private int batchMaxSize;
+
+    // Below this, splitting the hashing across cores costs more than it saves
+    private static final int PARALLEL_HASH_THRESHOLD = 256;
+    private static final Pattern IDENTIFIER_HASH = Pattern.compile("[0-9a-fA-F]{64}");
 
     /**
      * Check if identity exists with identifier hashing (REQUIRED by spec)
@@ -34,26 +61,20 @@ public class IdentityService {
         String identifierHash = hashUtil.sha256(identifier);
         log.debug("Checking identity with hash: {} for identifier: {}", identifierHash, identifier);
 
-        // Check by hash first (REQUIRED by spec)
-        Optional<UserContact> contact = userContactRepository.findByIdentifierHash(identifierHash);
-
-        // Fallback to raw identifier for existing data
-        if (contact.isEmpty()) {
-            contact = userContactRepository.findByEmailOrPhoneNumber(identifier, identifier);
-
-            // If found by raw identifier, update with hash
-            if (contact.isPresent()) {
-                UserContact userContact = contact.get();
-                userContact.setIdentifierHash(identifierHash);
-                userContactRepository.save(userContact);
-                log.info("Updated existing contact with identifier hash: {}", identifierHash);
-            }
+        // Definitely unregistered: no cache or database round trip needed
+        if (!identifierBloomFilter.mightContain(identifierHash)) {
+            return IdentityCheckResponse.builder()
+                    .exists(false)
+                    .build();
         }
 
-        if (contact.isPresent() && contact.get().getUserIdentity() != null) {
+        // Served from the L1/L2 cache; the database is only hit on a miss in both
+        Optional<String> did = identityLookupCache.get(identifierHash, hash -> findDid(identifier, hash));
+
+        if (did.isPresent()) {
             return IdentityCheckResponse.builder()
                     .exists(true)
-                    .did(contact.get().getUserIdentity().getDid())
+                    .did(did.get())
                     .build();
         }
 
@@ -63,36 +84,157 @@ public class IdentityService {
     }
 
     /**
-     * Create DID and register identity with 409 error (REQUIRED by spec)
+     * Whether the identifier is registered, without trusting a Bloom filter negative: the filter
+     * learns of links made on other nodes only after they commit, over pub/sub, so a "no" from it
+     * can be stale. Used where acting on a wrong "no" would link one identifier to two DIDs.
+     */
+    public boolean isRegistered(String identifier) {
+        String identifierHash = hashUtil.sha256(identifier);
+        return identityLookupCache.get(identifierHash, hash -> findDid(identifier, hash)).isPresent();
+    }
+
+    /**
+     * Check many identifiers with one set-based query; results are in request order
+     */
+    public List<IdentityCheckResponse> checkIdentities(IdentityCheckBatchRequest request) {
+        boolean prehashed = request.getIdentifierHashes() != null;
+        List<String> inputs = prehashed ? request.getIdentifierHashes() : request.getIdentifiers();
+        if (inputs == null || (prehashed && request.getIdentifiers() != null)) {
+            throw new IdentityException("Provide either identifiers or identifierHashes");
+        }
+        if (inputs.size() > batchMaxSize) {
+            throw new IdentityException("At most " + batchMaxSize + " identifiers per batch");
+        }
+
+        List<String> hashes = hashAll(inputs, prehashed ? IdentityService::normalizeIdentifierHash : hashUtil::sha256);
+
+        // Only hashes that might be registered go to the database
+        Set<String> candidates = new LinkedHashSet<>();
+        for (String hash : hashes) {
+            if (identifierBloomFilter.mightContain(hash)) {
+                candidates.add(hash);
+            }
+        }
+        Map<String, String> dids = candidates.isEmpty()
+                ? new HashMap<>()
+                : new HashMap<>(identityJdbcRepository.findDidsByIdentifierHashes(candidates));
+
+        // Legacy rows without a hash can only be matched on the raw identifier
+        if (!prehashed && identifierHashBackfill.legacyFallbackEnabled()) {
+            Set<String> misses = new LinkedHashSet<>();
+            for (int i = 0; i < hashes.size(); i++) {
+                if (candidates.contains(hashes.get(i)) && !dids.containsKey(hashes.get(i))) {
+                    misses.add(inputs.get(i));
+                }
+            }
+            if (!misses.isEmpty()) {
+                Map<String, String> legacy = identityJdbcRepository.findDidsByRawIdentifiers(misses);
+                for (int i = 0; i < hashes.size(); i++) {
+                    String did = legacy.get(inputs.get(i));
+                    if (did != null) {
+                        dids.putIfAbsent(hashes.get(i), did);
+                    }
+                }
+            }
+        }
+
+        log.debug("Batch identity check: {} identifiers, {} queried, {} found", hashes.size(), candidates.size(), dids.size());
+
+        return hashes.stream()
+                .map(hash -> IdentityCheckResponse.builder()
+                        .exists(dids.containsKey(hash))
+                        .did(dids.get(hash))
+                        .build())
+                .toList();
+    }
+
+    /**
+     * Hash in request order, spread across cores for large batches
+     */
+    private List<String> hashAll(List<String> inputs, UnaryOperator<String> hasher) {
+        Stream<String> stream = inputs.size() >= PARALLEL_HASH_THRESHOLD ? inputs.parallelStream() : inputs.stream();
+        return stream
+                .map(input -> {
+                    if (input == null || input.isBlank()) {
+                        throw new IdentityException("Identifier is required");
+                    }
+                    return hasher.apply(input);
+                })
+                .toList();
+    }
+
+    private static String normalizeIdentifierHash(String identifierHash) {
+        if (!IDENTIFIER_HASH.matcher(identifierHash).matches()) {
+            throw new IdentityException("Identifier hash must be 64 hex characters");
+        }
+        return identifierHash.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Resolve the DID linked to an identifier from the database
+     */
+    private Optional<String> findDid(String identifier, String identifierHash) {
+        // Check by hash first (REQUIRED by spec)
+        Optional<UserContact> contact = userContactRepository.findByIdentifierHash(identifierHash);
+
+        // Fallback to raw identifier for legacy rows, until the hash backfill completes.
+        // Read-only: the backfill, not this read path, writes the missing hash.
+        if (contact.isEmpty() && identifierHashBackfill.legacyFallbackEnabled()) {
+            contact = userContactRepository.findByEmailOrPhoneNumber(identifier, identifier);
+        }
+
+        return contact.map(UserContact::getUserIdentity).map(UserIdentity::getDid);
+    }
+
+    /**
+     * Register DID and link the OTP-verified identifier in one transaction
      */
     @Transactional
-    public DIDCreateResponse createDID(DIDCreateRequest request) {
-        // Validate DID format
+    public DIDCreateResponse registerDID(DIDCreateRequest request) {
         if (!didUtil.isValidDID(request.getDid())) {
             throw new IdentityException("Invalid DID format");
         }
 
-        // Check if DID already exists - throw 409 (REQUIRED by spec)
-        if (userIdentityRepository.existsByDid(request.getDid())) {
-            throw new IdentityExistsException("DID already exists: " + request.getDid());
+        String identifier = request.getVerifiedIdentifier();
+        String syncStatus = request.getOfflineCreated() ? "pending_sync" : "synced";
+        LocalDateTime now = LocalDateTime.now();
+
+        Optional<Long> identityId;
+        List<String> identifierHashes = List.of();
+        if (identifier == null) {
+            identityId = identityJdbcRepository.insertIdentity(request.getDid(), request.getPublicKey(), syncStatus, now);
+        } else {
+            // Consume the verification up front so two registrations cannot both use it
+            if (!otpService.consumeVerifiedIdentifier(identifier)) {
+                throw new IdentityException("Identifier not verified. Please complete OTP verification first.");
+            }
+            restoreVerificationOnRollback(identifier);
+
+            boolean isEmail = identifier.contains("@");
+            String identifierHash = hashUtil.sha256(identifier);
+            identifierHashes = List.of(identifierHash);
+            identityId = identityJdbcRepository.insertIdentityWithContact(request.getDid(), request.getPublicKey(),
+                    syncStatus, isEmail ? identifier : null, isEmail ? null : identifier, identifierHash, now);
         }
 
-        // Create user identity
-        UserIdentity userIdentity = UserIdentity.builder()
-                .did(request.getDid())
-                .publicKey(request.getPublicKey())
-                .syncStatus(request.getOfflineCreated() ? "pending_sync" : "synced")
-                .lastVerified(LocalDateTime.now())
-                .build();
+        // Conflict on the unique DID - throw 409 (REQUIRED by spec)
+        if (identityId.isEmpty()) {
+            throw new IdentityExistsException("DID already exists: " + request.getDid());
+        }
 
-        userIdentity = userIdentityRepository.save(userIdentity);
+        eventPublisher.publishEvent(new IdentityChangeEvent(
+                IdentityChangeEvent.Type.IDENTITY_CREATED, request.getDid(), List.of()));
+        if (!identifierHashes.isEmpty()) {
+            eventPublisher.publishEvent(new IdentityChangeEvent(
+                    IdentityChangeEvent.Type.CONTACT_LINKED, request.getDid(), identifierHashes));
+        }
 
-        log.info("DID created successfully: {}", request.getDid());
+        log.info("DID registered successfully: {}", request.getDid());
 
         return DIDCreateResponse.builder()
-                .did(userIdentity.getDid())
+                .did(request.getDid())
                 .status("registered")
-                .timestamp(userIdentity.getCreatedAt())
+                .timestamp(now)
                 .build();
     }
 
@@ -115,6 +257,25 @@ public class IdentityService {
                 .build();
 
         userContactRepository.save(contact);
+        eventPublisher.publishEvent(new IdentityChangeEvent(
+                IdentityChangeEvent.Type.CONTACT_LINKED, did, List.of(identifierHash)));
         log.info("Contact linked to DID: {} with identifier hash: {}", did, identifierHash);
     }
+
+    /**
+     * Give the verification back if registration fails, so the user can retry without a new OTP
+     */
+    private void restoreVerificationOnRollback(String identifier) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    otpService.markIdentifierAsVerified(identifier);
+                }
+            }
+        });
+    }
 }
\ No newline at end of file
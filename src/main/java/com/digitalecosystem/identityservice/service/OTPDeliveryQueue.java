@@ -0,0 +1,87 @@
+package com.digitalecosystem.identityservice.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+
+/**
+ * Durable OTP delivery queue backed by a Redis stream.
+ * The request thread only appends a record; {@link OTPDeliveryWorker} drains it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OTPDeliveryQueue {
+
+    static final String STREAM_KEY = "otp:delivery";
+    static final String DEAD_LETTER_KEY = "otp:delivery:dlq";
+    static final String GROUP = "otp-delivery";
+
+    static final String FIELD_CHANNEL = "channel";
+    static final String FIELD_IDENTIFIER = "identifier";
+    static final String FIELD_OTP = "otp";
+    static final String FIELD_ENQUEUED_AT = "enqueuedAt";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final OTPDeliveryWorker deliveryWorker;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.otp.delivery.async:true}")
+    private boolean async;
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("otp.delivery.queue.depth", this, OTPDeliveryQueue::depth)
+                .description("OTP messages waiting for delivery")
+                .register(meterRegistry);
+        Gauge.builder("otp.delivery.dead_letter.depth", this, OTPDeliveryQueue::deadLetterDepth)
+                .description("OTP messages that exhausted their delivery retries")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queue an OTP for delivery, or send it inline when async delivery is disabled
+     */
+    public void submit(String channel, String identifier, String otp) {
+        if (!async) {
+            deliveryWorker.deliver(channel, identifier, otp);
+            return;
+        }
+
+        RecordId recordId = redisTemplate.opsForStream().add(StreamRecords.newRecord()
+                .in(STREAM_KEY)
+                .ofMap(Map.of(
+                        FIELD_CHANNEL, channel,
+                        FIELD_IDENTIFIER, identifier,
+                        FIELD_OTP, otp,
+                        FIELD_ENQUEUED_AT, String.valueOf(System.currentTimeMillis()))));
+
+        log.debug("OTP queued for delivery: {} ({})", identifier, recordId);
+    }
+
+    private double depth() {
+        return streamSize(STREAM_KEY);
+    }
+
+    private double deadLetterDepth() {
+        return streamSize(DEAD_LETTER_KEY);
+    }
+
+    private double streamSize(String key) {
+        try {
+            Long size = redisTemplate.opsForStream().size(key);
+            return size != null ? size : 0;
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+    }
+}
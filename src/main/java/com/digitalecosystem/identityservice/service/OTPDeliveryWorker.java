@@ -0,0 +1,402 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.exception.OTPDeliveryException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the OTP delivery stream with a consumer group, sending each message on its own
+ * virtual thread with bounded retries and a dead-letter stream for exhausted messages.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OTPDeliveryWorker {
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final EmailService emailService;
+    private final SMSService smsService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.otp.delivery.async:true}")
+    private boolean async;
+
+    @Value("${app.otp.delivery.concurrency:64}")
+    private int concurrency;
+
+    @Value("${app.otp.delivery.batch-size:32}")
+    private int batchSize;
+
+    @Value("${app.otp.delivery.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${app.otp.delivery.backoff-ms:500}")
+    private long backoffMs;
+
+    @Value("${app.otp.delivery.claim-idle-ms:60000}")
+    private long claimIdleMs;
+
+    @Value("${app.otp.delivery.dead-letter-max-length:10000}")
+    private long deadLetterMaxLength;
+
+    @Value("${app.otp.expiry-seconds}")
+    private Integer otpExpirySeconds;
+
+    private final String consumerName = "worker-" + UUID.randomUUID();
+
+    private ExecutorService executor;
+    private Semaphore permits;
+    private Thread poller;
+    private volatile boolean running;
+    private volatile boolean groupReady;
+
+    private Counter retries;
+    private Counter deadLettered;
+
+    @PostConstruct
+    void start() {
+        retries = meterRegistry.counter("otp.delivery.retries");
+        deadLettered = meterRegistry.counter("otp.delivery.dead_lettered");
+
+        if (!async) {
+            log.info("Async OTP delivery disabled, sending inline");
+            return;
+        }
+
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        permits = new Semaphore(concurrency);
+        running = true;
+        poller = Thread.ofVirtual().name("otp-delivery-poller").start(this::pollLoop);
+        log.info("OTP delivery worker started: consumer={}, concurrency={}", consumerName, concurrency);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (poller != null) {
+            poller.interrupt();
+            poller.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Send an OTP through the channel's provider, throwing when delivery fails
+     */
+    public void deliver(String channel, String identifier, String otp) {
+        if ("email".equalsIgnoreCase(channel)) {
+            emailService.sendOTP(identifier, otp);
+        } else if ("phone".equalsIgnoreCase(channel)) {
+            smsService.sendOTP(identifier, otp);
+        } else {
+            throw new OTPDeliveryException("Invalid channel: " + channel);
+        }
+    }
+
+    /**
+     * Take over messages left pending by consumers that stopped without acknowledging them
+     */
+    @Scheduled(fixedDelayString = "${app.otp.delivery.claim-interval-ms:30000}")
+    public void reclaimStale() {
+        if (!running || !groupReady) {
+            return;
+        }
+
+        try {
+            StreamOperations<String, String, String> ops = redisTemplate.opsForStream();
+            PendingMessages pending = ops.pending(OTPDeliveryQueue.STREAM_KEY, OTPDeliveryQueue.GROUP,
+                    Range.unbounded(), batchSize);
+
+            Duration minIdle = Duration.ofMillis(claimIdleMs);
+            RecordId[] stale = pending.stream()
+                    .filter(message -> message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) >= 0)
+                    .map(PendingMessage::getId)
+                    .toArray(RecordId[]::new);
+
+            if (stale.length == 0) {
+                return;
+            }
+
+            List<MapRecord<String, String, String>> claimed = ops.claim(OTPDeliveryQueue.STREAM_KEY,
+                    OTPDeliveryQueue.GROUP, consumerName, minIdle, stale);
+            log.info("Reclaimed {} stale OTP deliveries", claimed.size());
+            claimed.forEach(this::dispatch);
+        } catch (Exception e) {
+            log.warn("Failed to reclaim stale OTP deliveries: {}", e.getMessage());
+        }
+    }
+
+    private void pollLoop() {
+        StreamReadOptions options = StreamReadOptions.empty()
+                .count(batchSize)
+                .block(Duration.ofSeconds(2));
+        Consumer consumer = Consumer.from(OTPDeliveryQueue.GROUP, consumerName);
+
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                ensureGroup();
+
+                StreamOperations<String, String, String> ops = redisTemplate.opsForStream();
+                List<MapRecord<String, String, String>> records = ops.read(consumer, options,
+                        StreamOffset.create(OTPDeliveryQueue.STREAM_KEY, ReadOffset.lastConsumed()));
+
+                if (records != null && !records.isEmpty()) {
+                    dispatchAll(records);
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                if (hasRedisError(e, "NOGROUP")) {
+                    // Stream or group lost, e.g. Redis restarted without persistence
+                    groupReady = false;
+                }
+                log.warn("OTP delivery poll failed, retrying: {}", e.getMessage());
+                sleepQuietly(backoffMs);
+            }
+        }
+    }
+
+    /**
+     * Create the consumer group, and the stream with it (MKSTREAM) on a fresh Redis. Only
+     * BUSYGROUP counts as done; any other failure leaves the group unready so the next poll retries.
+     */
+    void ensureGroup() {
+        if (groupReady) {
+            return;
+        }
+        byte[] streamKey = OTPDeliveryQueue.STREAM_KEY.getBytes(StandardCharsets.UTF_8);
+        try {
+            redisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands()
+                    .xGroupCreate(streamKey, OTPDeliveryQueue.GROUP, ReadOffset.from("0"), true));
+        } catch (RedisSystemException e) {
+            if (!hasRedisError(e, "BUSYGROUP")) {
+                throw e;
+            }
+            // Another node already created it
+            log.debug("OTP delivery group already exists");
+        }
+        groupReady = true;
+    }
+
+    boolean isGroupReady() {
+        return groupReady;
+    }
+
+    private static boolean hasRedisError(Throwable e, String code) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains(code)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records from one read are grouped per channel and handed to the provider as one batch
+     * (a single SMTP session for email, a gateway batch for SMS)
+     */
+    private void dispatchAll(List<MapRecord<String, String, String>> records) {
+        Map<String, List<MapRecord<String, String, String>>> byChannel = new HashMap<>();
+        for (MapRecord<String, String, String> record : records) {
+            String channel = record.getValue().get(OTPDeliveryQueue.FIELD_CHANNEL);
+            if (isExpired(record) || !("email".equals(channel) || "phone".equals(channel))) {
+                dispatch(record);
+            } else {
+                byChannel.computeIfAbsent(channel, key -> new ArrayList<>()).add(record);
+            }
+        }
+
+        byChannel.forEach((channel, group) -> {
+            if (group.size() == 1) {
+                dispatch(group.get(0));
+            } else {
+                submit(() -> handleBatch(channel, group));
+            }
+        });
+    }
+
+    private void dispatch(MapRecord<String, String, String> record) {
+        submit(() -> handle(record, 0));
+    }
+
+    private void submit(Runnable task) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        executor.submit(() -> {
+            try {
+                task.run();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    private void handleBatch(String channel, List<MapRecord<String, String, String>> records) {
+        List<Map.Entry<String, String>> batch = records.stream()
+                .map(record -> Map.entry(
+                        record.getValue().get(OTPDeliveryQueue.FIELD_IDENTIFIER),
+                        record.getValue().get(OTPDeliveryQueue.FIELD_OTP)))
+                .toList();
+
+        List<Boolean> delivered;
+        try {
+            delivered = "email".equals(channel)
+                    ? emailService.sendOTPBatch(batch)
+                    : smsService.sendOTPBatch(batch).stream().map(SmsGateway.Result::isSuccess).toList();
+        } catch (Exception e) {
+            log.warn("OTP {} batch of {} failed, retrying individually: {}", channel, records.size(), e.getMessage());
+            records.forEach(record -> handle(record, 1));
+            return;
+        }
+
+        for (int i = 0; i < records.size(); i++) {
+            if (delivered.get(i)) {
+                complete(records.get(i), null);
+            } else {
+                // The batch counted as the first attempt
+                handle(records.get(i), 1);
+            }
+        }
+    }
+
+    private void handle(MapRecord<String, String, String> record, int firstAttempt) {
+        Map<String, String> fields = record.getValue();
+        String channel = fields.get(OTPDeliveryQueue.FIELD_CHANNEL);
+        String identifier = fields.get(OTPDeliveryQueue.FIELD_IDENTIFIER);
+
+        String failure = null;
+        if (isExpired(record)) {
+            // Delivering an already-expired OTP only confuses the user
+            failure = "OTP expired before delivery";
+        } else {
+            if (firstAttempt > 0) {
+                retries.increment();
+                sleepQuietly(backoffMs);
+            }
+            for (int attempt = firstAttempt; ; attempt++) {
+                try {
+                    deliver(channel, identifier, fields.get(OTPDeliveryQueue.FIELD_OTP));
+                    failure = null;
+                    break;
+                } catch (Exception e) {
+                    failure = e.getMessage();
+                    if (attempt >= maxRetries) {
+                        break;
+                    }
+                    retries.increment();
+                    log.warn("OTP delivery to {} failed (attempt {}), retrying: {}", identifier, attempt + 1, failure);
+                    sleepQuietly(backoffMs << attempt);
+                }
+            }
+        }
+
+        complete(record, failure);
+    }
+
+    private void complete(MapRecord<String, String, String> record, String failure) {
+        String channel = record.getValue().get(OTPDeliveryQueue.FIELD_CHANNEL);
+        long enqueuedAt = enqueuedAt(record);
+
+        String outcome = failure == null ? "delivered" : "dead_lettered";
+        if (failure != null) {
+            deadLetter(record, failure);
+        }
+
+        Timer.builder("otp.delivery.latency")
+                .description("Time from enqueue to final delivery outcome")
+                .tag("channel", String.valueOf(channel))
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(Duration.ofMillis(Math.max(0, System.currentTimeMillis() - enqueuedAt)));
+
+        acknowledge(record.getId());
+    }
+
+    private boolean isExpired(MapRecord<String, String, String> record) {
+        return System.currentTimeMillis() - enqueuedAt(record) > TimeUnit.SECONDS.toMillis(otpExpirySeconds);
+    }
+
+    private long enqueuedAt(MapRecord<String, String, String> record) {
+        return Long.parseLong(record.getValue().getOrDefault(OTPDeliveryQueue.FIELD_ENQUEUED_AT, "0"));
+    }
+
+    private void deadLetter(MapRecord<String, String, String> record, String reason) {
+        Map<String, String> fields = record.getValue();
+        try {
+            // The OTP itself is not kept in the dead-letter stream
+            redisTemplate.opsForStream().add(StreamRecords.newRecord()
+                    .in(OTPDeliveryQueue.DEAD_LETTER_KEY)
+                    .ofMap(Map.of(
+                            OTPDeliveryQueue.FIELD_CHANNEL, String.valueOf(fields.get(OTPDeliveryQueue.FIELD_CHANNEL)),
+                            OTPDeliveryQueue.FIELD_IDENTIFIER, String.valueOf(fields.get(OTPDeliveryQueue.FIELD_IDENTIFIER)),
+                            OTPDeliveryQueue.FIELD_ENQUEUED_AT, String.valueOf(fields.get(OTPDeliveryQueue.FIELD_ENQUEUED_AT)),
+                            "sourceId", record.getId().getValue(),
+                            "reason", String.valueOf(reason))));
+            redisTemplate.opsForStream().trim(OTPDeliveryQueue.DEAD_LETTER_KEY, deadLetterMaxLength, true);
+        } catch (Exception e) {
+            log.error("Failed to dead-letter OTP delivery {}", record.getId(), e);
+        }
+        deadLettered.increment();
+        log.error("OTP delivery to {} dead-lettered: {}", fields.get(OTPDeliveryQueue.FIELD_IDENTIFIER), reason);
+    }
+
+    private void acknowledge(RecordId recordId) {
+        try {
+            redisTemplate.opsForStream().acknowledge(OTPDeliveryQueue.STREAM_KEY, OTPDeliveryQueue.GROUP, recordId);
+            redisTemplate.opsForStream().delete(OTPDeliveryQueue.STREAM_KEY, recordId);
+        } catch (Exception e) {
+            log.warn("Failed to acknowledge OTP delivery {}: {}", recordId, e.getMessage());
+        }
+    }
+
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,13 +1,19 @@
 package com.digitalecosystem.identityservice.service;
 
 import com.digitalecosystem.identityservice.exception.OTPException;
+import com.digitalecosystem.identityservice.util.CryptoPrimitives;
 import com.digitalecosystem.identityservice.util.HashUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
-import java.security.SecureRandom;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 @Service
@@ -15,10 +21,10 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class OTPService {
 
-    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisTemplate<byte[], String> sessionRedisTemplate;
     private final HashUtil hashUtil;
-    private final EmailService emailService;
-    private final SMSService smsService;
+    private final CryptoPrimitives cryptoPrimitives;
+    private final OTPDeliveryQueue deliveryQueue;
 
     @Value("${app.otp.expiry-seconds}")
     private Integer otpExpirySeconds;
@@ -26,70 +32,64 @@ public class OTPService {
     @Value("${app.otp.max-attempts}")
     private Integer maxAttempts;
 
-    private static final String OTP_PREFIX = "otp:";
-    private static final String ATTEMPT_PREFIX = "otp_attempt:";
-    private static final String VERIFIED_PREFIX = "verified:";
+    @Value("${app.otp.verified-ttl-seconds:1800}")
+    private Integer verifiedTtlSeconds;
+
+    // One hash per identifier, keyed by a truncated digest instead of the raw email/phone
+    private static final byte[] SESSION_PREFIX = "otps:".getBytes(StandardCharsets.US_ASCII);
+    private static final int SESSION_DIGEST_BYTES = 16;
+
+    static final String FIELD_VERIFIED = "v";
+
+    // Server-side scripts so each OTP operation is a single atomic round trip
+    static final RedisScript<Long> ISSUE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/otp_issue.lua"), Long.class);
+    static final RedisScript<Long> VALIDATE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/otp_validate.lua"), Long.class);
 
     /**
      * Generate and send OTP
      */
     public String generateOTP(String identifier, String channel) {
-        // Check rate limiting
-        String attemptKey = ATTEMPT_PREFIX + identifier;
-        String attempts = redisTemplate.opsForValue().get(attemptKey);
-
-        if (attempts != null && Integer.parseInt(attempts) >= maxAttempts) {
-            throw new OTPException("Maximum OTP attempts exceeded. Please try again later.");
+        if (!"email".equalsIgnoreCase(channel) && !"phone".equalsIgnoreCase(channel)) {
+            throw new OTPException("Invalid channel: " + channel);
         }
 
         // Generate 6-digit OTP
         String otp = generateRandomOTP();
         String otpHash = hashUtil.sha256(otp);
 
-        // Store in Redis
-        String key = OTP_PREFIX + identifier;
-        redisTemplate.opsForValue().set(key, otpHash, otpExpirySeconds, TimeUnit.SECONDS);
-
-        // Increment attempt counter
-        redisTemplate.opsForValue().increment(attemptKey);
-        redisTemplate.expire(attemptKey, otpExpirySeconds, TimeUnit.SECONDS);
+        // Rate-limit check, hash store, attempt increment and TTL in one atomic call
+        byte[] key = sessionKey(identifier);
+        Long attempts = sessionRedisTemplate.execute(ISSUE_SCRIPT, List.of(key),
+                otpHash, String.valueOf(otpExpirySeconds * 1000L), String.valueOf(maxAttempts));
 
-        // Send OTP
-        if ("email".equalsIgnoreCase(channel)) {
-            emailService.sendOTP(identifier, otp);
-        } else if ("phone".equalsIgnoreCase(channel)) {
-            smsService.sendOTP(identifier, otp);
-        } else {
-            throw new OTPException("Invalid channel: " + channel);
+        if (attempts == null || attempts < 0) {
+            throw new OTPException("Maximum OTP attempts exceeded. Please try again later.");
         }
 
+        // Hand off delivery so the request does not wait on the email/SMS provider
+        deliveryQueue.submit(channel.toLowerCase(), identifier, otp);
+
         log.info("OTP generated for identifier: {}", identifier);
-        return key;
+        return "otp:" + HexFormat.of().formatHex(key, SESSION_PREFIX.length, key.length);
     }
 
     /**
      * Validate OTP
      */
     public boolean validateOTP(String identifier, String otp) {
-        String key = OTP_PREFIX + identifier;
-        String storedHash = redisTemplate.opsForValue().get(key);
-
-        if (storedHash == null) {
-            throw new OTPException("OTP expired or not found");
-        }
-
-        String inputHash = hashUtil.sha256(otp);
-        boolean isValid = storedHash.equals(inputHash);
+        return checkOTP(identifier, otp, 0);
+    }
 
+    /**
+     * Validate OTP and, on success, mark the identifier as verified in the same call
+     */
+    public boolean verifyOTP(String identifier, String otp) {
+        boolean isValid = checkOTP(identifier, otp, verifiedTtlSeconds * 1000L);
         if (isValid) {
-            // Delete OTP after successful validation
-            redisTemplate.delete(key);
-            redisTemplate.delete(ATTEMPT_PREFIX + identifier);
-            log.info("OTP validated successfully for: {}", identifier);
-        } else {
-            log.warn("Invalid OTP attempt for: {}", identifier);
+            log.info("Identifier marked as verified: {}", identifier);
         }
-
         return isValid;
     }
 
@@ -97,8 +97,9 @@ public class OTPService {
      * Mark identifier as verified after OTP validation
      */
     public void markIdentifierAsVerified(String identifier) {
-        String key = VERIFIED_PREFIX + identifier;
-        redisTemplate.opsForValue().set(key, "true", 1800, TimeUnit.SECONDS); // 30 minutes
+        byte[] key = sessionKey(identifier);
+        sessionRedisTemplate.opsForHash().put(key, FIELD_VERIFIED, "1");
+        sessionRedisTemplate.expire(key, verifiedTtlSeconds, TimeUnit.SECONDS);
         log.info("Identifier marked as verified: {}", identifier);
     }
 
@@ -106,25 +107,62 @@ public class OTPService {
      * Check if identifier is verified
      */
     public boolean isIdentifierVerified(String identifier) {
-        String key = VERIFIED_PREFIX + identifier;
-        return "true".equals(redisTemplate.opsForValue().get(key));
+        return "1".equals(sessionRedisTemplate.opsForHash().get(sessionKey(identifier), FIELD_VERIFIED));
+    }
+
+    /**
+     * Check and clear the verified flag in one call; only one caller can consume a verification
+     */
+    public boolean consumeVerifiedIdentifier(String identifier) {
+        Long removed = sessionRedisTemplate.opsForHash().delete(sessionKey(identifier), FIELD_VERIFIED);
+        return removed != null && removed > 0;
     }
 
     /**
      * Invalidate verified identifier (clean up after use)
      */
     public void invalidateVerifiedIdentifier(String identifier) {
-        String key = VERIFIED_PREFIX + identifier;
-        redisTemplate.delete(key);
+        sessionRedisTemplate.opsForHash().delete(sessionKey(identifier), FIELD_VERIFIED);
         log.info("Verified identifier invalidated: {}", identifier);
     }
 
+    private boolean checkOTP(String identifier, String otp, long verifiedTtlMillis) {
+        String inputHash = hashUtil.sha256(otp);
+
+        // Compare, clear on match and optionally mark verified in one atomic call
+        Long result = sessionRedisTemplate.execute(VALIDATE_SCRIPT, List.of(sessionKey(identifier)),
+                inputHash, String.valueOf(verifiedTtlMillis));
+
+        if (result == null || result < 0) {
+            throw new OTPException("OTP expired or not found");
+        }
+
+        boolean isValid = result == 1L;
+
+        if (isValid) {
+            log.info("OTP validated successfully for: {}", identifier);
+        } else {
+            log.warn("Invalid OTP attempt for: {}", identifier);
+        }
+
+        return isValid;
+    }
+
+    /**
+     * Session key: fixed prefix followed by the first 16 bytes of SHA-256(identifier)
+     */
+    byte[] sessionKey(String identifier) {
+        byte[] digest = hashUtil.sha256Bytes(identifier);
+        byte[] key = Arrays.copyOf(SESSION_PREFIX, SESSION_PREFIX.length + SESSION_DIGEST_BYTES);
+        System.arraycopy(digest, 0, key, SESSION_PREFIX.length, SESSION_DIGEST_BYTES);
+        return key;
+    }
+
     /**
      * Generate random 6-digit OTP
      */
     private String generateRandomOTP() {
-        SecureRandom random = new SecureRandom();
-        int otp = 100000 + random.nextInt(900000);
+        int otp = 100000 + cryptoPrimitives.random().nextInt(900000);
         return String.valueOf(otp);
     }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import com.digitalecosystem.identityservice.dto.ChallengeResponse;
 import com.digitalecosystem.identityservice.entity.UserIdentity;
 import com.digitalecosystem.identityservice.exception.IdentityException;
 import com.digitalecosystem.identityservice.repository.UserIdentityRepository;
+import com.digitalecosystem.identityservice.util.CryptoPrimitives;
 import com.digitalecosystem.identityservice.util.EncryptionUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -24,6 +25,7 @@ public class ProofOfControlService {
     private final RedisTemplate<String, String> redisTemplate;
     private final UserIdentityRepository userIdentityRepository;
     private final EncryptionUtil encryptionUtil;
+    private final CryptoPrimitives cryptoPrimitives;
 
     private static final String CHALLENGE_PREFIX = "challenge:";
     private static final int CHALLENGE_TTL = 300; // 5 minutes
@@ -39,8 +41,7 @@ public class ProofOfControlService {
                 .orElseThrow(() -> new IdentityException("DID not found: " + did));
 
         // Generate random nonce
-        byte[] nonceBytes = new byte[32];
-        new SecureRandom().nextBytes(nonceBytes);
+        byte[] nonceBytes = cryptoPrimitives.randomBytes(32);
         String nonce = Base64.getEncoder().encodeToString(nonceBytes);
         String nonceId = java.util.UUID.randomUUID().toString();
 
@@ -91,7 +92,7 @@ public class ProofOfControlService {
         return isValid;
     }
 
-    private boolean verifySignature(String publicKeyBase58, String data, String signatureBase64) {
+    boolean verifySignature(String publicKeyBase58, String data, String signatureBase64) {
         try {
             // Decode Base58 public key (commonly used format for Ed25519 in DIDs)
             byte[] publicKeyBytes = decodeBase58(publicKeyBase58);
@@ -102,8 +103,8 @@ public class ProofOfControlService {
             // Get data bytes (the nonce that was signed)
             byte[] dataBytes = data.getBytes(java.nio.charset.StandardCharsets.UTF_8);
 
-            // Create Ed25519 signature verifier
-            Signature verifier = Signature.getInstance("Ed25519", "BC");
+            // Reuse this thread's Ed25519 verifier; initVerify below resets it
+            Signature verifier = cryptoPrimitives.signature("Ed25519", "BC");
 
             // Convert raw public key bytes to PublicKey object
             PublicKey publicKey = getPublicKeyFromBytes(publicKeyBytes);
@@ -139,7 +140,7 @@ public class ProofOfControlService {
             byte[] encodedKey = encodeEd25519PublicKey(publicKeyBytes);
 
             X509EncodedKeySpec keySpec = new X509EncodedKeySpec(encodedKey);
-            KeyFactory keyFactory = KeyFactory.getInstance("Ed25519", "BC");
+            KeyFactory keyFactory = cryptoPrimitives.keyFactory("Ed25519", "BC");
             return keyFactory.generatePublic(keySpec);
 
         } catch (Exception e) {
@@ -160,7 +161,7 @@ public class ProofOfControlService {
         return result;
     }
 
-    private byte[] decodeBase58(String base58String) {
+    byte[] decodeBase58(String base58String) {
         // Base58 decoding implementation (commonly used in DIDs)
         // You might want to use a library like BitcoinJ or create a simple implementation
         try {
@@ -0,0 +1,51 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.config.RateLimitProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Distributed token buckets kept in Redis, one per rule and key
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RateLimiterService {
+
+    private static final String BUCKET_PREFIX = "rl:";
+
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> TOKEN_BUCKET_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/token_bucket.lua"), List.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    /**
+     * Take {@code cost} tokens from the bucket for this rule and key, or none if it holds fewer.
+     * Returns 0 when allowed, otherwise the milliseconds until enough tokens are available.
+     * Fails open if Redis is unavailable so the limiter never becomes an outage.
+     */
+    public long tryConsume(RateLimitProperties.Rule rule, String key, long cost) {
+        try {
+            List<?> result = redisTemplate.execute(TOKEN_BUCKET_SCRIPT,
+                    List.of(BUCKET_PREFIX + rule.getName() + ":" + key),
+                    String.valueOf(rule.getCapacity()),
+                    String.valueOf(rule.refillRatePerMilli()),
+                    String.valueOf(cost));
+
+            if (result == null || result.size() < 2 || ((Number) result.get(0)).longValue() == 1L) {
+                return 0;
+            }
+            return Math.max(1, ((Number) result.get(1)).longValue());
+        } catch (Exception e) {
+            log.warn("Rate limiter unavailable, allowing request: {}", e.getMessage());
+            return 0;
+        }
+    }
+}
@@ -1,43 +1,58 @@
 package com.digitalecosystem.identityservice.service;
 
-import com.twilio.Twilio;
-import com.twilio.rest.api.v2010.account.Message;
-import com.twilio.type.PhoneNumber;
+import com.digitalecosystem.identityservice.exception.OTPDeliveryException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.Map;
+
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class SMSService {
 
-    @Value("${app.twilio.account-sid:}")
-    private String accountSid;
-
-    @Value("${app.twilio.auth-token:}")
-    private String authToken;
-
-    @Value("${app.twilio.phone-number:}")
-    private String fromPhoneNumber;
+    private final SmsGateway smsGateway;
+    private final MeterRegistry meterRegistry;
 
     public void sendOTP(String phoneNumber, String otp) {
         try {
-            if (accountSid.isEmpty() || authToken.isEmpty()) {
-                log.warn("Twilio not configured. OTP: {} for phone: {}", otp, phoneNumber);
-                return;
-            }
+            String messageId = smsGateway.send(phoneNumber, otpBody(otp));
+            countSent(1, "success");
+            log.info("SMS sent successfully via {}. SID: {}", smsGateway.name(), messageId);
+        } catch (Exception e) {
+            countSent(1, "failure");
+            // Surface the failure so the delivery worker can retry or dead-letter it
+            throw new OTPDeliveryException("Failed to send SMS", e);
+        }
+    }
 
-            Twilio.init(accountSid, authToken);
+    /**
+     * Send several OTPs in one gateway batch, returning a result per entry in the same order
+     */
+    public List<SmsGateway.Result> sendOTPBatch(List<Map.Entry<String, String>> phoneAndOtp) {
+        List<SmsGateway.Message> messages = phoneAndOtp.stream()
+                .map(entry -> new SmsGateway.Message(entry.getKey(), otpBody(entry.getValue())))
+                .toList();
+
+        List<SmsGateway.Result> results = smsGateway.sendBatch(messages);
+
+        long sent = results.stream().filter(SmsGateway.Result::isSuccess).count();
+        countSent(sent, "success");
+        countSent(results.size() - sent, "failure");
+        log.info("SMS batch sent via {}: {}/{} succeeded", smsGateway.name(), sent, results.size());
+        return results;
+    }
 
-            Message message = Message.creator(
-                    new PhoneNumber(phoneNumber),
-                    new PhoneNumber(fromPhoneNumber),
-                    "Your OTP code is: " + otp
-            ).create();
+    private String otpBody(String otp) {
+        return "Your OTP code is: " + otp;
+    }
 
-            log.info("SMS sent successfully. SID: {}", message.getSid());
-        } catch (Exception e) {
-            log.error("Failed to send SMS", e);
+    private void countSent(long count, String outcome) {
+        if (count > 0) {
+            meterRegistry.counter("sms.sent", "provider", smsGateway.name(), "outcome", outcome).increment(count);
         }
     }
-}
\ No newline at end of file
+}
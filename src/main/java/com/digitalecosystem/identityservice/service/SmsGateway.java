@@ -0,0 +1,53 @@
+package com.digitalecosystem.identityservice.service;
+
+import java.util.List;
+
+/**
+ * Provider-neutral SMS transport. Implementations are long-lived and thread-safe.
+ */
+public interface SmsGateway {
+
+    /**
+     * Send one message, returning the provider message id
+     */
+    String send(String to, String body);
+
+    /**
+     * Send a group of messages. Providers with a bulk API override this;
+     * the default sends them one after another.
+     */
+    default List<Result> sendBatch(List<Message> messages) {
+        return messages.stream()
+                .map(message -> {
+                    try {
+                        return Result.sent(message.to(), send(message.to(), message.body()));
+                    } catch (Exception e) {
+                        return Result.failed(message.to(), e.getMessage());
+                    }
+                })
+                .toList();
+    }
+
+    /**
+     * Provider name used for logging and metrics
+     */
+    String name();
+
+    record Message(String to, String body) {
+    }
+
+    record Result(String to, String messageId, String error) {
+
+        static Result sent(String to, String messageId) {
+            return new Result(to, messageId, null);
+        }
+
+        static Result failed(String to, String error) {
+            return new Result(to, null, error);
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+}
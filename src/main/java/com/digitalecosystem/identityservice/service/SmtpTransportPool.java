@@ -0,0 +1,210 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.exception.OTPDeliveryException;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of connected, authenticated SMTP transports. A borrowed transport sends a whole
+ * batch of messages over one session, so the TCP/TLS handshake and AUTH are paid once
+ * per session instead of once per message.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SmtpTransportPool {
+
+    private final MailProperties mailProperties;
+
+    @Value("${app.mail.pool.size:8}")
+    private int poolSize;
+
+    @Value("${app.mail.pool.borrow-timeout-ms:5000}")
+    private long borrowTimeoutMs;
+
+    @Value("${app.mail.pool.max-idle-ms:60000}")
+    private long maxIdleMs;
+
+    @Value("${app.mail.pool.max-messages-per-session:500}")
+    private int maxMessagesPerSession;
+
+    private final LinkedBlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+    private volatile Semaphore permits;
+    private volatile Session session;
+
+    /**
+     * Mail session shared by all pooled transports, also used to build messages
+     */
+    public Session session() {
+        Session current = session;
+        if (current == null) {
+            synchronized (this) {
+                if (session == null) {
+                    Properties properties = new Properties();
+                    properties.putAll(mailProperties.getProperties());
+                    session = Session.getInstance(properties);
+                }
+                current = session;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Send messages over a single pooled session; returns a success flag per message.
+     * A broken session is replaced once and the remaining messages continue on the new one.
+     */
+    public List<Boolean> send(List<MimeMessage> messages) {
+        List<Boolean> results = new ArrayList<>(messages.size());
+        PooledTransport pooled = borrow();
+        try {
+            for (MimeMessage message : messages) {
+                try {
+                    if (!pooled.transport.isConnected()) {
+                        pooled = reconnect(pooled);
+                    }
+                    message.saveChanges();
+                    pooled.transport.sendMessage(message, message.getRecipients(Message.RecipientType.TO));
+                    pooled.sent++;
+                    results.add(true);
+                } catch (MessagingException e) {
+                    log.warn("SMTP send failed: {}", e.getMessage());
+                    results.add(false);
+                }
+            }
+        } finally {
+            release(pooled);
+        }
+        return results;
+    }
+
+    /**
+     * Close sessions that have been idle longer than the configured limit
+     */
+    @Scheduled(fixedDelayString = "${app.mail.pool.evict-interval-ms:30000}")
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - maxIdleMs;
+        Iterator<PooledTransport> iterator = idle.iterator();
+        while (iterator.hasNext()) {
+            PooledTransport pooled = iterator.next();
+            if (pooled.lastUsed < cutoff && idle.remove(pooled)) {
+                close(pooled);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        PooledTransport pooled;
+        while ((pooled = idle.poll()) != null) {
+            close(pooled);
+        }
+    }
+
+    private PooledTransport borrow() {
+        try {
+            if (!permits().tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new OTPDeliveryException("Timed out waiting for an SMTP session");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OTPDeliveryException("Interrupted waiting for an SMTP session", e);
+        }
+
+        try {
+            PooledTransport pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (pooled.transport.isConnected()) {
+                    return pooled;
+                }
+                close(pooled);
+            }
+            return connect();
+        } catch (RuntimeException e) {
+            permits().release();
+            throw e;
+        }
+    }
+
+    private void release(PooledTransport pooled) {
+        try {
+            if (pooled.sent >= maxMessagesPerSession || !pooled.transport.isConnected()) {
+                close(pooled);
+            } else {
+                pooled.lastUsed = System.currentTimeMillis();
+                // Most recently used first, so surplus sessions age out through eviction
+                idle.offerFirst(pooled);
+            }
+        } finally {
+            permits().release();
+        }
+    }
+
+    private PooledTransport reconnect(PooledTransport broken) {
+        close(broken);
+        return connect();
+    }
+
+    private PooledTransport connect() {
+        try {
+            Transport transport = session().getTransport(mailProperties.getProtocol());
+            transport.connect(mailProperties.getHost(),
+                    mailProperties.getPort() != null ? mailProperties.getPort() : -1,
+                    mailProperties.getUsername(),
+                    mailProperties.getPassword());
+            log.debug("Opened SMTP session to {}", mailProperties.getHost());
+            return new PooledTransport(transport);
+        } catch (MessagingException e) {
+            throw new OTPDeliveryException("Failed to open SMTP session", e);
+        }
+    }
+
+    private void close(PooledTransport pooled) {
+        try {
+            pooled.transport.close();
+        } catch (MessagingException e) {
+            log.debug("Error closing SMTP session: {}", e.getMessage());
+        }
+    }
+
+    private Semaphore permits() {
+        Semaphore current = permits;
+        if (current == null) {
+            synchronized (this) {
+                if (permits == null) {
+                    permits = new Semaphore(poolSize);
+                }
+                current = permits;
+            }
+        }
+        return current;
+    }
+
+    private static final class PooledTransport {
+        private final Transport transport;
+        private long lastUsed = System.currentTimeMillis();
+        private int sent;
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+    }
+}
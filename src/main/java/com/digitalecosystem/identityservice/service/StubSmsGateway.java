@@ -0,0 +1,61 @@
+package com.digitalecosystem.identityservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process SMS provider for local runs and load tests. Nothing leaves the JVM;
+ * an optional per-request latency simulates the provider round trip.
+ */
+@Component
+@ConditionalOnProperty(name = "app.sms.provider", havingValue = "stub")
+@Slf4j
+public class StubSmsGateway implements SmsGateway {
+
+    @Value("${app.sms.stub.latency-ms:0}")
+    private long latencyMs;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Override
+    public String send(String to, String body) {
+        simulateLatency();
+        long id = sequence.incrementAndGet();
+        log.debug("Stub SMS #{} to {}: {}", id, to, body);
+        return "stub-" + id;
+    }
+
+    @Override
+    public List<Result> sendBatch(List<Message> messages) {
+        // One simulated round trip for the whole batch, as a bulk API would behave
+        simulateLatency();
+        return messages.stream()
+                .map(message -> Result.sent(message.to(), "stub-" + sequence.incrementAndGet()))
+                .toList();
+    }
+
+    @Override
+    public String name() {
+        return "stub";
+    }
+
+    public long sentCount() {
+        return sequence.get();
+    }
+
+    private void simulateLatency() {
+        if (latencyMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(latencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.dto.SyncChangesResponse;
+import com.digitalecosystem.identityservice.exception.IdentityException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Delta pull for reconnecting devices. Triggers stamp every identity, contact and device-link
+ * write with a global change sequence and leave tombstones for deletes (V7 migration); this
+ * reads one identity's changes after the client's cursor, in sequence order, a page at a time.
+ * A page ends before any change whose lower sequence numbers may still belong to running
+ * transactions (V10 migration), so the cursor never passes a change that commits later.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SyncChangeFeed {
+
+    // Each branch is one identity's rows, so the union stays small; the cursor is the change sequence.
+    // Changes stamped while a transaction that is still running held a lower sequence number are
+    // held back, together with everything after them, until that transaction ends.
+    private static final String CHANGES_QUERY = """
+            WITH changes AS (
+                SELECT u.change_seq, 'identity' AS entity, u.id AS entity_id, 'upsert' AS action, u.change_xmax,
+                       json_build_object('did', u.did, 'publicKey', u.public_key, 'syncStatus', u.sync_status,
+                           'serverVersion', u.server_version, 'publicDid', u.public_did,
+                           'didWebStatus', u.did_web_status, 'didWebPath', u.did_web_path,
+                           'didWebPublishedAt', u.did_web_published_at, 'updatedAt', u.updated_at)::text AS data
+                FROM user_identity u
+                WHERE u.did = ? AND u.change_seq > ?
+                UNION ALL
+                SELECT c.change_seq, 'contact', c.id, 'upsert', c.change_xmax,
+                       json_build_object('email', c.email, 'phoneNumber', c.phone_number,
+                           'identifierHash', c.identifier_hash, 'verified', c.is_verified,
+                           'updatedAt', c.updated_at)::text
+                FROM user_contact c
+                JOIN user_identity u ON u.id = c.user_id
+                WHERE u.did = ? AND c.change_seq > ?
+                UNION ALL
+                SELECT d.change_seq, 'device', d.id, 'upsert', d.change_xmax,
+                       json_build_object('deviceId', d.device_id, 'deviceInfo', d.device_info,
+                           'status', d.status, 'lastLogin', d.last_login, 'updatedAt', d.updated_at)::text
+                FROM device_link d
+                JOIN user_identity u ON u.id = d.user_id
+                WHERE u.did = ? AND d.change_seq > ?
+                UNION ALL
+                SELECT t.change_seq, t.entity, t.entity_id, 'delete', t.change_xmax, NULL
+                FROM sync_tombstone t
+                WHERE t.did = ? AND t.change_seq > ?
+            ), unsettled AS (
+                SELECT min(change_seq) AS change_seq FROM changes
+                WHERE change_xmax > pg_snapshot_xmin(pg_current_snapshot())::text::bigint
+            )
+            SELECT change_seq, entity, entity_id, action, data FROM changes
+            WHERE change_seq < COALESCE((SELECT change_seq FROM unsettled), 9223372036854775807)
+            ORDER BY change_seq
+            LIMIT ?
+            """;
+
+    private static final String HORIZON_QUERY = "SELECT purged_through FROM sync_change_horizon";
+
+    private static final String PURGE_TOMBSTONES = """
+            WITH purged AS (
+                DELETE FROM sync_tombstone WHERE changed_at < ? RETURNING change_seq
+            ), horizon AS (
+                UPDATE sync_change_horizon
+                SET purged_through = GREATEST(purged_through, COALESCE((SELECT max(change_seq) FROM purged), 0))
+            )
+            SELECT count(*) FROM purged
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.sync.changes.page-size:500}")
+    private int defaultPageSize;
+
+    @Value("${app.sync.changes.max-page-size:2000}")
+    private int maxPageSize;
+
+    @Value("${app.sync.changes.tombstone-retention-days:30}")
+    private long tombstoneRetentionDays;
+
+    /**
+     * Changes to one identity after the given sequence number
+     */
+    public SyncChangesResponse changesSince(String did, long since, Integer limit) {
+        if (did == null || did.isBlank()) {
+            throw new IdentityException("DID is required");
+        }
+        if (since < 0) {
+            throw new IdentityException("since must not be negative");
+        }
+        int pageSize = limit == null ? defaultPageSize : Math.min(Math.max(1, limit), maxPageSize);
+
+        Long purgedThrough = jdbcTemplate.queryForObject(HORIZON_QUERY, Long.class);
+        if (since > 0 && purgedThrough != null && since < purgedThrough) {
+            // Deletes after this cursor may be gone with their tombstones
+            return response(List.of(), since, false, true);
+        }
+
+        // One row past the page tells whether another page follows
+        List<SyncChangesResponse.Change> changes = jdbcTemplate.query(CHANGES_QUERY, (rs, row) ->
+                        SyncChangesResponse.Change.builder()
+                                .seq(rs.getLong(1))
+                                .entity(rs.getString(2))
+                                .id(rs.getLong(3))
+                                .action(rs.getString(4))
+                                .data(rs.getString(5))
+                                .build(),
+                did, since, did, since, did, since, did, since, pageSize + 1);
+
+        boolean hasMore = changes.size() > pageSize;
+        if (hasMore) {
+            changes = changes.subList(0, pageSize);
+        }
+        long nextSince = changes.isEmpty() ? since : changes.get(changes.size() - 1).getSeq();
+        return response(changes, nextSince, hasMore, false);
+    }
+
+    /**
+     * Drop old tombstones; cursors older than the newest purged one are told to resync
+     */
+    @Scheduled(cron = "${app.sync.changes.purge-cron:0 30 3 * * *}")
+    public void purgeTombstones() {
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minusDays(tombstoneRetentionDays);
+            Long purged = jdbcTemplate.queryForObject(PURGE_TOMBSTONES, Long.class, Timestamp.valueOf(cutoff));
+            log.info("Purged {} sync tombstones older than {}", purged, cutoff);
+        } catch (Exception e) {
+            log.warn("Failed to purge sync tombstones: {}", e.getMessage());
+        }
+    }
+
+    private static SyncChangesResponse response(List<SyncChangesResponse.Change> changes, long nextSince,
+                                                boolean hasMore, boolean resyncRequired) {
+        return SyncChangesResponse.builder()
+                .changes(changes)
+                .nextSince(nextSince)
+                .hasMore(hasMore)
+                .resyncRequired(resyncRequired)
+                .serverTime(System.currentTimeMillis())
+                .build();
+    }
+}
@@ -0,0 +1,224 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.dto.SyncBatchRequest;
+import com.digitalecosystem.identityservice.dto.SyncBatchResponse;
+import com.digitalecosystem.identityservice.exception.IdentityException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Outcomes of sync operations by client operation id, so a batch resent after a timeout is
+ * answered from what was recorded instead of being applied again. Caffeine per node (L1) in
+ * front of Redis (L2); entries expire after the TTL, which bounds how late a retry is recognised.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SyncOperationDedupe {
+
+    static final String KEY_PREFIX = "syncop:";
+    static final int MAX_OP_ID_LENGTH = 128;
+    private static final String APPLIED_VALUE = "";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.sync.dedupe.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.sync.dedupe.local-max-size:100000}")
+    private long localMaxSize;
+
+    @Value("${app.sync.dedupe.local-ttl-seconds:600}")
+    private long localTtlSeconds;
+
+    @Value("${app.sync.dedupe.ttl-seconds:86400}")
+    private long ttlSeconds;
+
+    private Cache<String, String> local;
+    private Counter hits;
+    private Counter misses;
+
+    /**
+     * Recorded result of an operation: applied, or rejected with a reason
+     */
+    public record Outcome(String conflictReason) {
+
+        public static final Outcome APPLIED = new Outcome(null);
+
+        public boolean applied() {
+            return conflictReason == null;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        local = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(Math.min(localTtlSeconds, ttlSeconds)))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, local, "sync.dedupe");
+        // Hit rate is hit / (hit + miss); a hit is an operation that was not applied twice
+        hits = Counter.builder("sync.dedupe.lookups")
+                .description("Operation ids checked against recorded outcomes")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        misses = Counter.builder("sync.dedupe.lookups")
+                .description("Operation ids checked against recorded outcomes")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Operations that already have a recorded outcome, keyed by their position
+     */
+    public Map<Integer, Outcome> recorded(List<SyncBatchRequest.SyncOperation> operations) {
+        Map<Integer, Outcome> recorded = new LinkedHashMap<>();
+        if (!enabled) {
+            return recorded;
+        }
+
+        List<String> keys = new ArrayList<>(operations.size());
+        Set<String> lookup = new LinkedHashSet<>();
+        for (SyncBatchRequest.SyncOperation operation : operations) {
+            String key = key(operation);
+            keys.add(key);
+            if (key != null) {
+                lookup.add(key);
+            }
+        }
+        if (lookup.isEmpty()) {
+            return recorded;
+        }
+
+        Map<String, String> found = find(lookup);
+        for (int position = 0; position < keys.size(); position++) {
+            String key = keys.get(position);
+            if (key == null) {
+                continue;
+            }
+            String value = found.get(key);
+            if (value == null) {
+                misses.increment();
+            } else {
+                hits.increment();
+                recorded.put(position, APPLIED_VALUE.equals(value) ? Outcome.APPLIED : new Outcome(value));
+            }
+        }
+        return recorded;
+    }
+
+    /**
+     * Remember the outcomes of operations whose transaction has committed. Conflicts marked
+     * retryable were not applied, so they are left out and a resend is applied normally.
+     */
+    public void record(Map<String, Outcome> outcomes) {
+        if (!enabled || outcomes.isEmpty()) {
+            return;
+        }
+        Map<String, String> values = new HashMap<>();
+        outcomes.forEach((key, outcome) -> values.put(key, outcome.applied() ? APPLIED_VALUE : outcome.conflictReason()));
+        local.putAll(values);
+
+        try {
+            Expiration expiration = Expiration.seconds(ttlSeconds);
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                values.forEach((key, value) -> connection.stringCommands().set(
+                        key.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8),
+                        expiration, RedisStringCommands.SetOption.upsert()));
+                return null;
+            });
+        } catch (Exception e) {
+            // Other nodes then apply a resend, which the operations tolerate
+            log.warn("Failed to record sync operation outcomes in Redis: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Outcomes to record for applied operations, keyed by dedupe key. A missing DID depends on
+     * ordering (the create may still be on its way in another batch), so it is not recorded and
+     * a resend is checked again.
+     */
+    public static Map<String, Outcome> outcomes(List<SyncBatchRequest.SyncOperation> operations,
+                                                Map<Integer, SyncBatchResponse.ConflictInfo> conflicts) {
+        Map<String, Outcome> outcomes = new HashMap<>();
+        for (int position = 0; position < operations.size(); position++) {
+            String key = key(operations.get(position));
+            SyncBatchResponse.ConflictInfo conflict = conflicts.get(position);
+            if (key == null || (conflict != null && !replayable(conflict))) {
+                continue;
+            }
+            outcomes.put(key, conflict == null ? Outcome.APPLIED : new Outcome(conflict.getReason()));
+        }
+        return outcomes;
+    }
+
+    private static boolean replayable(SyncBatchResponse.ConflictInfo conflict) {
+        return !Boolean.TRUE.equals(conflict.getRetryable())
+                && (conflict.getReason() == null || !conflict.getReason().startsWith(SyncService.DID_NOT_FOUND));
+    }
+
+    /**
+     * Dedupe key of an operation, or null when the client sent no operation id. Ids are scoped
+     * to the operation's DID, so one client cannot read another's outcome by guessing its id.
+     */
+    static String key(SyncBatchRequest.SyncOperation operation) {
+        String opId = operation.getOpId();
+        if (opId == null || opId.isBlank()) {
+            return null;
+        }
+        if (opId.length() > MAX_OP_ID_LENGTH) {
+            throw new IdentityException("Operation id is too long: " + opId.substring(0, MAX_OP_ID_LENGTH));
+        }
+        String did = operation.getData() != null && operation.getData().getDid() != null ? operation.getData().getDid() : "";
+        return KEY_PREFIX + did + ":" + opId;
+    }
+
+    private Map<String, String> find(Set<String> keys) {
+        Map<String, String> found = new HashMap<>(local.getAllPresent(keys));
+        if (found.size() == keys.size()) {
+            return found;
+        }
+
+        List<String> remaining = keys.stream().filter(key -> !found.containsKey(key)).toList();
+        try {
+            List<String> shared = redisTemplate.opsForValue().multiGet(remaining);
+            if (shared != null) {
+                for (int i = 0; i < remaining.size(); i++) {
+                    if (shared.get(i) != null) {
+                        found.put(remaining.get(i), shared.get(i));
+                        local.put(remaining.get(i), shared.get(i));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // Without the shared tier a resend to another node is applied again, which is still correct
+            log.warn("Sync operation dedupe read from Redis failed: {}", e.getMessage());
+        }
+        return found;
+    }
+}
@@ -0,0 +1,238 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.dto.SyncBatchAcceptedResponse;
+import com.digitalecosystem.identityservice.dto.SyncBatchRequest;
+import com.digitalecosystem.identityservice.dto.SyncBatchResponse;
+import com.digitalecosystem.identityservice.dto.SyncBatchStatusResponse;
+import com.digitalecosystem.identityservice.entity.SyncBatch;
+import com.digitalecosystem.identityservice.entity.SyncQueue;
+import com.digitalecosystem.identityservice.exception.IdentityException;
+import com.digitalecosystem.identityservice.repository.SyncBatchRepository;
+import com.digitalecosystem.identityservice.repository.SyncQueueRepository;
+import com.digitalecosystem.identityservice.util.SpooledBody;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Durable sync ingestion backed by the sync_queue table.
+ * The request thread only records the batch; {@link SyncQueueWorker} applies it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SyncQueueService {
+
+    private static final int MAX_OPERATION_LENGTH = 50;
+    private static final int MAX_DID_LENGTH = 255;
+
+    private final SyncBatchRepository syncBatchRepository;
+    private final SyncQueueRepository syncQueueRepository;
+    private final MeterRegistry meterRegistry;
+    private final EntityManager entityManager;
+
+    @Value("${app.sync.async:true}")
+    private boolean async;
+
+    @Value("${app.sync.chunk-size:200}")
+    private int chunkSize;
+
+    @Value("${app.sync.spool-memory-bytes:65536}")
+    private int spoolMemoryBytes;
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("sync.queue.depth", this, SyncQueueService::depth)
+                .description("Sync batches waiting to be applied")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Whether batches are queued for the workers rather than applied on the request thread
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * Read a batch body to the end before it is parsed. The upload runs at the client's pace,
+     * so it must finish before a transaction opens or a pooled connection is taken.
+     */
+    public SpooledBody spool(InputStream body) throws IOException {
+        return new SpooledBody(body, spoolMemoryBytes);
+    }
+
+    /**
+     * Persist a batch and its operations, in order, for the workers to apply. Operations are
+     * written a chunk at a time as they are read and the persistence context is cleared after
+     * each chunk, so memory does not grow with the batch. Nothing is visible to the workers
+     * until the whole batch has been read and committed.
+     */
+    @Transactional
+    public SyncBatchAcceptedResponse enqueue(Iterator<SyncBatchRequest.SyncOperation> operations) {
+        String batchId = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+
+        // Flushed first: the queue rows reference it, and their inserts are reordered by table
+        syncBatchRepository.saveAndFlush(SyncBatch.builder()
+                .id(batchId)
+                .operationCount(0)
+                .build());
+
+        int count = 0;
+        List<SyncQueue> rows = new ArrayList<>(chunkSize);
+        while (operations.hasNext()) {
+            rows.add(row(batchId, operations.next(), now));
+            if (rows.size() >= chunkSize) {
+                count += write(rows);
+            }
+        }
+        count += write(rows);
+        syncBatchRepository.updateOperationCount(batchId, count);
+
+        log.info("Queued sync batch {} with {} operations", batchId, count);
+        return SyncBatchAcceptedResponse.builder()
+                .batchId(batchId)
+                .status(SyncBatch.STATUS_QUEUED)
+                .operations(count)
+                .statusUrl("/api/v1/sync/batch/" + batchId)
+                .serverTime(System.currentTimeMillis())
+                .build();
+    }
+
+    /**
+     * Progress and conflicts of a queued batch
+     */
+    @Transactional(readOnly = true)
+    public Optional<SyncBatchStatusResponse> status(String batchId) {
+        return syncBatchRepository.findById(batchId).map(batch -> {
+            List<SyncBatchResponse.ConflictInfo> conflicts = batch.getProcessedCount() == 0 ? List.of()
+                    : syncQueueRepository.findByBatchIdAndConflictReasonNotNullOrderByIdAsc(batchId).stream()
+                            .map(row -> SyncBatchResponse.ConflictInfo.builder()
+                                    .operation(row.getOperation())
+                                    .reason(row.getConflictReason())
+                                    .clientData(row.getPayload())
+                                    .build())
+                            .toList();
+
+            return SyncBatchStatusResponse.builder()
+                    .batchId(batch.getId())
+                    .status(batch.getStatus())
+                    .operations(batch.getOperationCount())
+                    .processed(batch.getProcessedCount())
+                    .synced(batch.getSyncedCount())
+                    .conflicts(conflicts)
+                    .error(batch.getError())
+                    .createdAt(batch.getCreatedAt())
+                    .completedAt(batch.getCompletedAt())
+                    .build();
+        });
+    }
+
+    private static SyncQueue row(String batchId, SyncBatchRequest.SyncOperation operation, LocalDateTime now) {
+        return SyncQueue.builder()
+                .batchId(batchId)
+                .operation(operationName(operation))
+                .opId(opId(operation))
+                .did(did(operation))
+                .payload(payload(operation.getData()))
+                .clientTimestamp(operation.getTimestamp() != null
+                        ? LocalDateTime.ofInstant(Instant.ofEpochMilli(operation.getTimestamp()), ZoneId.systemDefault())
+                        : now)
+                .build();
+    }
+
+    /**
+     * Write a chunk of queue rows and detach them
+     *
+     * @return rows written; the list is cleared for the next chunk
+     */
+    private int write(List<SyncQueue> rows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        // Pooled ids keep list order, which is the order the workers apply them in
+        syncQueueRepository.saveAll(rows);
+        syncQueueRepository.flush();
+        entityManager.clear();
+        int written = rows.size();
+        rows.clear();
+        return written;
+    }
+
+    /**
+     * Queue payload of an operation's data, read back by {@link #data}
+     */
+    static Map<String, Object> payload(SyncBatchRequest.OperationData data) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        if (data != null) {
+            if (data.getDid() != null) {
+                payload.put("did", data.getDid());
+            }
+            if (data.getPublicKey() != null) {
+                payload.put("publicKey", data.getPublicKey());
+            }
+        }
+        return payload;
+    }
+
+    /**
+     * Operation data of a queued row, for {@link SyncQueueWorker}
+     */
+    static SyncBatchRequest.OperationData data(Map<String, Object> payload) {
+        return new SyncBatchRequest.OperationData(
+                payload.get("did") instanceof String did ? did : null,
+                payload.get("publicKey") instanceof String publicKey ? publicKey : null);
+    }
+
+    private static String operationName(SyncBatchRequest.SyncOperation operation) {
+        String name = operation.getOperation() != null ? operation.getOperation() : "";
+        if (name.length() > MAX_OPERATION_LENGTH) {
+            throw new IdentityException("Unknown operation: " + name.substring(0, MAX_OPERATION_LENGTH));
+        }
+        return name;
+    }
+
+    /**
+     * DID the workers order batches by; one too long to exist cannot conflict with another batch
+     */
+    private static String did(SyncBatchRequest.SyncOperation operation) {
+        String did = operation.getData() != null ? operation.getData().getDid() : null;
+        return did != null && did.length() <= MAX_DID_LENGTH ? did : null;
+    }
+
+    private static String opId(SyncBatchRequest.SyncOperation operation) {
+        String opId = operation.getOpId();
+        if (opId != null && opId.length() > SyncOperationDedupe.MAX_OP_ID_LENGTH) {
+            throw new IdentityException("Operation id is too long: " + opId.substring(0, SyncOperationDedupe.MAX_OP_ID_LENGTH));
+        }
+        return opId;
+    }
+
+    private double depth() {
+        try {
+            return syncBatchRepository.countByStatusIn(List.of(SyncBatch.STATUS_QUEUED, SyncBatch.STATUS_PROCESSING));
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.dto.SyncBatchRequest;
+import com.digitalecosystem.identityservice.dto.SyncBatchResponse;
+import com.digitalecosystem.identityservice.entity.SyncBatch;
+import com.digitalecosystem.identityservice.entity.SyncQueue;
+import com.digitalecosystem.identityservice.repository.SyncBatchRepository;
+import com.digitalecosystem.identityservice.repository.SyncQueueRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains sync_queue on every node. Each worker locks the oldest unfinished batch with
+ * FOR UPDATE SKIP LOCKED and applies its next chunk of operations in one transaction, so a
+ * batch is applied in order by one worker at a time while other workers take other batches.
+ * A batch touching a DID that an older batch still has pending waits for it, so batches from
+ * one device are not reordered across workers.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SyncQueueWorker {
+
+    private final SyncBatchRepository syncBatchRepository;
+    private final SyncQueueRepository syncQueueRepository;
+    private final SyncService syncService;
+    private final SyncOperationDedupe operationDedupe;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.sync.async:true}")
+    private boolean async;
+
+    @Value("${app.sync.workers:4}")
+    private int workers;
+
+    @Value("${app.sync.chunk-size:200}")
+    private int chunkSize;
+
+    @Value("${app.sync.poll-interval-ms:500}")
+    private long pollIntervalMs;
+
+    @Value("${app.sync.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.sync.retention-hours:24}")
+    private long retentionHours;
+
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    private Counter operationsApplied;
+    private Timer batchLatency;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        operationsApplied = meterRegistry.counter("sync.queue.operations");
+        batchLatency = Timer.builder("sync.queue.latency")
+                .description("Time from batch acceptance to its last operation being applied")
+                .register(meterRegistry);
+
+        if (!async) {
+            log.info("Async sync ingestion disabled, batches are applied on the request thread");
+            return;
+        }
+
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            threads.add(Thread.ofVirtual().name("sync-worker-" + i).start(this::drainLoop));
+        }
+        log.info("Sync queue workers started: workers={}, chunkSize={}", workers, chunkSize);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    /**
+     * Apply the next chunk of the oldest unclaimed batch
+     *
+     * @return false when there was nothing to do or the chunk failed, so the caller backs off
+     */
+    boolean drainChunk() {
+        String[] claimedId = {null};
+        try {
+            Map<String, SyncOperationDedupe.Outcome> outcomes = new TransactionTemplate(transactionManager).execute(status -> {
+                Optional<SyncBatch> claimed = syncBatchRepository.claimNext();
+                if (claimed.isEmpty()) {
+                    return null;
+                }
+                claimedId[0] = claimed.get().getId();
+                return applyChunk(claimed.get());
+            });
+            if (outcomes == null) {
+                return false;
+            }
+            // Only committed outcomes are recorded, so a rolled-back chunk is applied again on retry
+            operationDedupe.record(outcomes);
+            return true;
+        } catch (RuntimeException e) {
+            if (claimedId[0] == null) {
+                throw e;
+            }
+            recordFailure(claimedId[0], e);
+            return false;
+        }
+    }
+
+    /**
+     * Drop finished batches once clients have had time to poll their result
+     */
+    @Scheduled(fixedDelayString = "${app.sync.purge-interval-ms:3600000}")
+    public void purgeFinished() {
+        if (!running) {
+            return;
+        }
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minusHours(retentionHours);
+            Integer purged = new TransactionTemplate(transactionManager).execute(status ->
+                    syncBatchRepository.deleteCompletedBefore(cutoff));
+            if (purged != null && purged > 0) {
+                log.info("Purged {} finished sync batches", purged);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to purge finished sync batches: {}", e.getMessage());
+        }
+    }
+
+    private void drainLoop() {
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                if (!drainChunk()) {
+                    sleepQuietly(pollIntervalMs);
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Sync queue poll failed, retrying: {}", e.getMessage());
+                sleepQuietly(pollIntervalMs);
+            }
+        }
+    }
+
+    /**
+     * @return outcomes to record for the applied operations once the chunk commits
+     */
+    private Map<String, SyncOperationDedupe.Outcome> applyChunk(SyncBatch batch) {
+        List<SyncQueue> rows = syncQueueRepository.findByBatchIdAndSyncedFalseOrderByIdAsc(
+                batch.getId(), PageRequest.of(0, chunkSize));
+        List<SyncBatchRequest.SyncOperation> operations = rows.stream().map(SyncQueueWorker::toOperation).toList();
+
+        // Operations of a resent batch that were already applied keep their recorded outcome
+        Map<Integer, SyncOperationDedupe.Outcome> recorded = operationDedupe.recorded(operations);
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            if (!recorded.containsKey(i)) {
+                pending.add(i);
+            }
+        }
+        List<SyncBatchRequest.SyncOperation> toApply = pending.stream().map(operations::get).toList();
+        // A chunk that already failed set-based is retried with a savepoint per operation
+        Map<Integer, SyncBatchResponse.ConflictInfo> conflicts = toApply.isEmpty() ? Map.of()
+                : batch.getAttempts() > 0
+                ? syncService.applyIsolated(toApply)
+                : syncService.applyOperations(toApply);
+
+        Map<Integer, String> reasons = new HashMap<>();
+        recorded.forEach((i, outcome) -> {
+            if (!outcome.applied()) {
+                reasons.put(i, outcome.conflictReason());
+            }
+        });
+        conflicts.forEach((i, conflict) -> reasons.put(pending.get(i), conflict.getReason()));
+
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < rows.size(); i++) {
+            SyncQueue row = rows.get(i);
+            row.setSynced(true);
+            row.setSyncedAt(now);
+            row.setConflictReason(reasons.get(i));
+        }
+
+        batch.setProcessedCount(batch.getProcessedCount() + rows.size());
+        batch.setSyncedCount(batch.getSyncedCount() + rows.size() - reasons.size());
+        if (rows.isEmpty() || batch.getProcessedCount() >= batch.getOperationCount()) {
+            batch.setStatus(SyncBatch.STATUS_COMPLETED);
+            batch.setCompletedAt(now);
+            batchLatency.record(Duration.between(batch.getCreatedAt(), now));
+            log.info("Sync batch {} completed: {} synced, {} conflicts", batch.getId(), batch.getSyncedCount(),
+                    batch.getProcessedCount() - batch.getSyncedCount());
+        } else {
+            batch.setStatus(SyncBatch.STATUS_PROCESSING);
+        }
+        operationsApplied.increment(rows.size());
+        return SyncOperationDedupe.outcomes(toApply, conflicts);
+    }
+
+    /**
+     * The chunk rolled back; count the attempt and give up on the batch once attempts run out
+     */
+    private void recordFailure(String batchId, RuntimeException failure) {
+        log.error("Sync batch {} chunk failed", batchId, failure);
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                syncBatchRepository.recordFailure(batchId, String.valueOf(failure.getMessage()));
+                if (syncBatchRepository.failIfExhausted(batchId, maxAttempts, LocalDateTime.now()) > 0) {
+                    log.error("Sync batch {} failed after {} attempts", batchId, maxAttempts);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Failed to record sync batch {} failure: {}", batchId, e.getMessage());
+        }
+    }
+
+    private static SyncBatchRequest.SyncOperation toOperation(SyncQueue row) {
+        SyncBatchRequest.SyncOperation operation = new SyncBatchRequest.SyncOperation();
+        operation.setOpId(row.getOpId());
+        operation.setOperation(row.getOperation());
+        operation.setData(SyncQueueService.data(row.getPayload()));
+        operation.setTimestamp(row.getClientTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        return operation;
+    }
+
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -2,17 +2,35 @@ package com.digitalecosystem.identityservice.service;
 
 import com.digitalecosystem.identityservice.dto.SyncBatchRequest;
 import com.digitalecosystem.identityservice.dto.SyncBatchResponse;
-import com.digitalecosystem.identityservice.entity.SyncQueue;
 import com.digitalecosystem.identityservice.entity.UserIdentity;
+import com.digitalecosystem.identityservice.repository.IdentityJdbcRepository;
 import com.digitalecosystem.identityservice.repository.SyncQueueRepository;
+import com.digitalecosystem.identityservice.repository.UserContactRepository;
 import com.digitalecosystem.identityservice.repository.UserIdentityRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.sql.Savepoint;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 
 @Service
 @RequiredArgsConstructor
@@ -21,83 +39,376 @@ public class SyncService {
 
     private final SyncQueueRepository syncQueueRepository;
     private final UserIdentityRepository userIdentityRepository;
+    private final UserContactRepository userContactRepository;
+    private final IdentityJdbcRepository identityJdbcRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SyncOperationDedupe operationDedupe;
+
+    // Keeps each IN list well below PostgreSQL's bind parameter limit
+    private static final int IN_CLAUSE_CHUNK = 1000;
+
+    private static final String EXECUTION_SINGLE = "single";
 
     /**
-     * Process batch sync operations
+     * Prefix of the conflict for an operation on a DID that does not exist (yet)
+     */
+    static final String DID_NOT_FOUND = "DID not found: ";
+
+    @Value("${app.sync.execution:chunked}")
+    private String execution;
+
+    @Value("${app.sync.chunk-size:200}")
+    private int chunkSize;
+
+    /**
+     * Process batch sync operations held in memory
      */
-    @Transactional
     public SyncBatchResponse processBatchSync(SyncBatchRequest request) {
-        List<SyncBatchResponse.ConflictInfo> conflicts = new ArrayList<>();
-        int syncedCount = 0;
-
-        for (SyncBatchRequest.SyncOperation operation : request.getOperations()) {
-            try {
-                processOperation(operation);
-                syncedCount++;
-            } catch (Exception e) {
-                log.error("Failed to process operation: {}", operation.getOperation(), e);
-                conflicts.add(SyncBatchResponse.ConflictInfo.builder()
-                        .operation(operation.getOperation())
-                        .reason(e.getMessage())
-                        .clientData(operation.getData())
-                        .build());
+        return processBatchSync(request.getOperations().iterator());
+    }
+
+    /**
+     * Process batch sync operations as they are read. In chunked execution each chunk of
+     * operations is applied and committed once it has been read, so neither the batch nor its
+     * row locks are held beyond one chunk; single execution buffers the batch and applies it in
+     * one transaction. A chunk whose set-based apply fails is retried with a savepoint per
+     * operation, so a bad operation is reported alone instead of sinking the rest. Operations
+     * resent with an operation id that already has a recorded outcome are answered from it
+     * without being applied again, which is also how a batch cut short by malformed input is
+     * resumed: the chunks before the bad input stay committed.
+     */
+    public SyncBatchResponse processBatchSync(Iterator<SyncBatchRequest.SyncOperation> operations) {
+        int size = EXECUTION_SINGLE.equalsIgnoreCase(execution) ? Integer.MAX_VALUE : Math.max(1, chunkSize);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        Map<Integer, SyncBatchResponse.ConflictInfo> conflicts = new TreeMap<>();
+        List<SyncBatchRequest.SyncOperation> chunk = new ArrayList<>();
+        int processed = 0;
+        while (operations.hasNext()) {
+            chunk.add(operations.next());
+            if (chunk.size() >= size) {
+                processChunk(transaction, chunk, processed, conflicts);
+                processed += chunk.size();
+                chunk = new ArrayList<>();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            processChunk(transaction, chunk, processed, conflicts);
+            processed += chunk.size();
+        }
+
+        return response(processed, conflicts);
+    }
+
+    /**
+     * Response for a batch whose every operation already has a recorded outcome, answered
+     * without touching the database; empty when any operation still has to be applied
+     */
+    public Optional<SyncBatchResponse> replayRecorded(List<SyncBatchRequest.SyncOperation> operations) {
+        Map<Integer, SyncOperationDedupe.Outcome> recorded = operationDedupe.recorded(operations);
+        if (operations.isEmpty() || recorded.size() < operations.size()) {
+            return Optional.empty();
+        }
+        Map<Integer, SyncBatchResponse.ConflictInfo> conflicts = new TreeMap<>();
+        recorded.forEach((position, outcome) -> {
+            if (!outcome.applied()) {
+                conflicts.put(position, conflict(operations.get(position), outcome.conflictReason(), false));
+            }
+        });
+        return Optional.of(response(operations.size(), conflicts));
+    }
+
+    /**
+     * Apply the operations of a chunk that have no recorded outcome and record theirs
+     *
+     * @param offset position of the chunk's first operation in the batch
+     */
+    private void processChunk(TransactionTemplate transaction, List<SyncBatchRequest.SyncOperation> chunk, int offset,
+                              Map<Integer, SyncBatchResponse.ConflictInfo> conflicts) {
+        Map<Integer, SyncOperationDedupe.Outcome> recorded = operationDedupe.recorded(chunk);
+        List<Integer> pending = new ArrayList<>();
+        for (int position = 0; position < chunk.size(); position++) {
+            SyncOperationDedupe.Outcome outcome = recorded.get(position);
+            if (outcome == null) {
+                pending.add(position);
+            } else if (!outcome.applied()) {
+                conflicts.put(offset + position, conflict(chunk.get(position), outcome.conflictReason(), false));
             }
         }
+        if (pending.isEmpty()) {
+            return;
+        }
 
+        List<SyncBatchRequest.SyncOperation> toApply = pending.stream().map(chunk::get).toList();
+        Map<Integer, SyncBatchResponse.ConflictInfo> applied = applyChunk(transaction, toApply);
+        applied.forEach((position, conflict) -> conflicts.put(offset + pending.get(position), conflict));
+        // The chunk has committed (or was reported retryable), so its outcomes are safe to replay
+        operationDedupe.record(SyncOperationDedupe.outcomes(toApply, applied));
+    }
+
+    private static SyncBatchResponse response(int operations, Map<Integer, SyncBatchResponse.ConflictInfo> conflicts) {
         return SyncBatchResponse.builder()
-                .synced(syncedCount)
-                .conflicts(conflicts)
+                .synced(operations - conflicts.size())
+                .conflicts(new ArrayList<>(conflicts.values()))
                 .serverTime(System.currentTimeMillis())
                 .build();
     }
 
-    private void processOperation(SyncBatchRequest.SyncOperation operation) {
-        switch (operation.getOperation().toLowerCase()) {
-            case "create":
-                handleCreate(operation);
-                break;
-            case "update":
-                handleUpdate(operation);
-                break;
-            case "delete":
-                handleDelete(operation);
-                break;
-            default:
-                throw new IllegalArgumentException("Unknown operation: " + operation.getOperation());
+    private Map<Integer, SyncBatchResponse.ConflictInfo> applyChunk(TransactionTemplate transaction,
+                                                                    List<SyncBatchRequest.SyncOperation> chunk) {
+        try {
+            return transaction.execute(status -> applyOperations(chunk));
+        } catch (RuntimeException e) {
+            log.warn("Set-based sync of {} operations failed, retrying each under a savepoint: {}",
+                    chunk.size(), e.getMessage());
         }
+        try {
+            return transaction.execute(status -> applyIsolated(chunk));
+        } catch (RuntimeException e) {
+            // Nothing in this chunk was committed; earlier chunks stay applied
+            log.error("Sync chunk of {} operations could not be committed", chunk.size(), e);
+            Map<Integer, SyncBatchResponse.ConflictInfo> notApplied = new LinkedHashMap<>();
+            for (int position = 0; position < chunk.size(); position++) {
+                notApplied.put(position, conflict(chunk.get(position), "Not applied: " + e.getMessage(), true));
+            }
+            return notApplied;
+        }
+    }
+
+    /**
+     * Apply operations inside the caller's transaction. Every referenced DID is loaded once, the
+     * operations are replayed in order against that snapshot to decide each outcome, and the
+     * surviving creates, updates and deletes are then applied as one bulk statement per type.
+     *
+     * @return conflicts keyed by the position of the rejected operation
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<Integer, SyncBatchResponse.ConflictInfo> applyOperations(List<SyncBatchRequest.SyncOperation> operations) {
+        BatchPlan plan = plan(operations, loadExistingDids(operations));
+
+        // Deletes first, so a delete followed by a create of the same DID does not hit the unique constraint
+        applyDeletes(plan.deletes);
+        applyCreates(plan.creates);
+        applyUpdates(plan.updates);
+        return plan.conflicts;
     }
 
-    private void handleCreate(SyncBatchRequest.SyncOperation operation) {
-        String did = (String) operation.getData().get("did");
-        String publicKey = (String) operation.getData().get("publicKey");
+    /**
+     * Apply operations one at a time inside the caller's transaction, each under its own
+     * savepoint, so a failing statement is rolled back alone and reported as that operation's
+     * conflict while the rest of the transaction stays usable.
+     *
+     * @return conflicts keyed by the position of the rejected operation
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<Integer, SyncBatchResponse.ConflictInfo> applyIsolated(List<SyncBatchRequest.SyncOperation> operations) {
+        Map<Integer, SyncBatchResponse.ConflictInfo> conflicts = new LinkedHashMap<>();
+        LocalDateTime now = LocalDateTime.now();
 
-        if (!userIdentityRepository.existsByDid(did)) {
-            UserIdentity userIdentity = UserIdentity.builder()
-                    .did(did)
-                    .publicKey(publicKey)
-                    .syncStatus("synced")
-                    .build();
-            userIdentityRepository.save(userIdentity);
-            log.info("Created identity via sync: {}", did);
+        for (int position = 0; position < operations.size(); position++) {
+            SyncBatchRequest.SyncOperation operation = operations.get(position);
+            String reason = validate(operation);
+            if (reason == null && did(operation) != null) {
+                Savepoint savepoint = identityJdbcRepository.setSavepoint();
+                try {
+                    reason = applyOne(operation, now);
+                    identityJdbcRepository.releaseSavepoint(savepoint);
+                } catch (DataAccessException e) {
+                    identityJdbcRepository.rollbackToSavepoint(savepoint);
+                    reason = e.getMostSpecificCause().getMessage();
+                }
+            }
+            if (reason != null) {
+                conflicts.put(position, conflict(operation, reason, false));
+            }
         }
+        return conflicts;
     }
 
-    private void handleUpdate(SyncBatchRequest.SyncOperation operation) {
-        String did = (String) operation.getData().get("did");
-        UserIdentity userIdentity = userIdentityRepository.findByDid(did)
-                .orElseThrow(() -> new IllegalArgumentException("DID not found: " + did));
+    /**
+     * Reason an operation is rejected before touching the database, or null
+     */
+    private static String validate(SyncBatchRequest.SyncOperation operation) {
+        String did = did(operation);
+        return switch (type(operation)) {
+            case "create" -> did == null ? "DID is required"
+                    : publicKey(operation) == null ? "Public key is required" : null;
+            case "update" -> did == null ? DID_NOT_FOUND + null : null;
+            case "delete" -> null;
+            default -> "Unknown operation: " + operation.getOperation();
+        };
+    }
 
-        userIdentity.setUpdatedAt(LocalDateTime.now());
-        userIdentity.setSyncStatus("synced");
-        userIdentityRepository.save(userIdentity);
-        log.info("Updated identity via sync: {}", did);
+    private String applyOne(SyncBatchRequest.SyncOperation operation, LocalDateTime now) {
+        String did = did(operation);
+        switch (type(operation)) {
+            case "create" -> {
+                // An existing DID is left as is, like the set-based path
+                if (identityJdbcRepository.insertIdentity(did, publicKey(operation), "synced", now).isPresent()) {
+                    eventPublisher.publishEvent(new IdentityChangeEvent(
+                            IdentityChangeEvent.Type.IDENTITY_CREATED, did, List.of()));
+                }
+                return null;
+            }
+            case "update" -> {
+                return identityJdbcRepository.markSynced(did, now) ? null : DID_NOT_FOUND + did;
+            }
+            default -> {
+                identityJdbcRepository.deleteIdentity(did).ifPresent(identifierHashes ->
+                        eventPublisher.publishEvent(new IdentityChangeEvent(
+                                IdentityChangeEvent.Type.IDENTITY_DELETED, did, identifierHashes)));
+                return null;
+            }
+        }
     }
 
-    private void handleDelete(SyncBatchRequest.SyncOperation operation) {
-        String did = (String) operation.getData().get("did");
-        userIdentityRepository.findByDid(did).ifPresent(userIdentity -> {
-            userIdentityRepository.delete(userIdentity);
-            log.info("Deleted identity via sync: {}", did);
-        });
+    private Set<String> loadExistingDids(List<SyncBatchRequest.SyncOperation> operations) {
+        List<String> referenced = operations.stream()
+                .map(SyncService::did)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        Set<String> existing = new HashSet<>();
+        for (List<String> chunk : chunks(referenced)) {
+            existing.addAll(userIdentityRepository.findExistingDids(chunk));
+        }
+        return existing;
+    }
+
+    /**
+     * Replay the operations in order against the loaded DIDs. Later operations see the effect of
+     * earlier ones, so the outcome of each operation matches sequential processing.
+     */
+    private BatchPlan plan(List<SyncBatchRequest.SyncOperation> operations, Set<String> existing) {
+        BatchPlan plan = new BatchPlan();
+        Set<String> present = new HashSet<>(existing);
+
+        for (int position = 0; position < operations.size(); position++) {
+            SyncBatchRequest.SyncOperation operation = operations.get(position);
+            String did = did(operation);
+            switch (type(operation)) {
+                case "create" -> {
+                    String publicKey = publicKey(operation);
+                    if (did == null) {
+                        plan.conflict(position, operation, "DID is required");
+                    } else if (publicKey == null) {
+                        plan.conflict(position, operation, "Public key is required");
+                    } else if (present.add(did)) {
+                        plan.creates.put(did, publicKey);
+                    }
+                }
+                case "update" -> {
+                    if (did == null || !present.contains(did)) {
+                        plan.conflict(position, operation, DID_NOT_FOUND + did);
+                    } else if (!plan.creates.containsKey(did)) {
+                        // An update of a row created in this batch is already covered by the insert
+                        plan.updates.add(did);
+                    }
+                }
+                case "delete" -> {
+                    if (did != null && present.remove(did)) {
+                        plan.updates.remove(did);
+                        if (plan.creates.remove(did) == null) {
+                            plan.deletes.add(did);
+                        }
+                    }
+                }
+                default -> plan.conflict(position, operation, "Unknown operation: " + operation.getOperation());
+            }
+        }
+        return plan;
+    }
+
+    private void applyCreates(Map<String, String> creates) {
+        if (creates.isEmpty()) {
+            return;
+        }
+        List<UserIdentity> identities = creates.entrySet().stream()
+                .map(entry -> UserIdentity.builder()
+                        .did(entry.getKey())
+                        .publicKey(entry.getValue())
+                        .syncStatus("synced")
+                        .build())
+                .toList();
+        // Pooled ids and JDBC batching turn these into a handful of multi-row inserts
+        userIdentityRepository.saveAll(identities);
+        creates.keySet().forEach(did -> eventPublisher.publishEvent(new IdentityChangeEvent(
+                IdentityChangeEvent.Type.IDENTITY_CREATED, did, List.of())));
+        log.info("Created {} identities via sync", creates.size());
+    }
+
+    private void applyUpdates(Set<String> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        int updated = 0;
+        for (List<String> chunk : chunks(List.copyOf(updates))) {
+            updated += userIdentityRepository.markSyncedByDidIn(chunk, "synced", now);
+        }
+        log.info("Updated {} identities via sync", updated);
+    }
+
+    private void applyDeletes(Set<String> deletes) {
+        if (deletes.isEmpty()) {
+            return;
+        }
+        for (List<String> chunk : chunks(List.copyOf(deletes))) {
+            // Contacts go with the identity (ON DELETE CASCADE), so their cached lookups must too
+            Map<String, List<String>> hashesByDid = new HashMap<>();
+            for (Object[] row : userContactRepository.findIdentifierHashesByDidIn(chunk)) {
+                hashesByDid.computeIfAbsent((String) row[0], did -> new ArrayList<>()).add((String) row[1]);
+            }
+            userIdentityRepository.deleteByDidIn(chunk);
+            chunk.forEach(did -> eventPublisher.publishEvent(new IdentityChangeEvent(
+                    IdentityChangeEvent.Type.IDENTITY_DELETED, did, hashesByDid.getOrDefault(did, List.of()))));
+        }
+        log.info("Deleted {} identities via sync", deletes.size());
+    }
+
+    private static String type(SyncBatchRequest.SyncOperation operation) {
+        return operation.getOperation() != null ? operation.getOperation().toLowerCase() : "";
+    }
+
+    private static String did(SyncBatchRequest.SyncOperation operation) {
+        return operation.getData() != null ? operation.getData().getDid() : null;
+    }
+
+    private static String publicKey(SyncBatchRequest.SyncOperation operation) {
+        return operation.getData() != null ? operation.getData().getPublicKey() : null;
+    }
+
+    private static SyncBatchResponse.ConflictInfo conflict(SyncBatchRequest.SyncOperation operation, String reason,
+                                                           boolean retryable) {
+        log.warn("Sync operation {} rejected: {}", operation.getOperation(), reason);
+        return SyncBatchResponse.ConflictInfo.builder()
+                .operation(operation.getOperation())
+                .reason(reason)
+                .retryable(retryable)
+                .clientData(operation.getData())
+                .build();
+    }
+
+    private static List<List<String>> chunks(List<String> values) {
+        List<List<String>> chunks = new ArrayList<>();
+        for (int from = 0; from < values.size(); from += IN_CLAUSE_CHUNK) {
+            chunks.add(values.subList(from, Math.min(values.size(), from + IN_CLAUSE_CHUNK)));
+        }
+        return chunks;
+    }
+
+    /**
+     * Net effect of a batch; insertion order keeps statements and events in request order
+     */
+    private static final class BatchPlan {
+        private final Map<String, String> creates = new LinkedHashMap<>();
+        private final Set<String> updates = new LinkedHashSet<>();
+        private final Set<String> deletes = new LinkedHashSet<>();
+        private final Map<Integer, SyncBatchResponse.ConflictInfo> conflicts = new LinkedHashMap<>();
+
+        private void conflict(int position, SyncBatchRequest.SyncOperation operation, String reason) {
+            conflicts.put(position, SyncService.conflict(operation, reason, false));
+        }
     }
-}
\ No newline at end of file
+}
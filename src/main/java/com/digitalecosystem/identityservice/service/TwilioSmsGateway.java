@@ -0,0 +1,157 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.twilio.http.NetworkHttpClient;
+import com.twilio.http.TwilioRestClient;
+import com.twilio.type.PhoneNumber;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Twilio gateway built once at startup on a pooled, keep-alive HTTP client.
+ * Twilio's Messages API has no bulk send, so batches are fanned out concurrently over the pool.
+ */
+@Component
+@ConditionalOnProperty(name = "app.sms.provider", havingValue = "twilio", matchIfMissing = true)
+@Slf4j
+public class TwilioSmsGateway implements SmsGateway {
+
+    @Value("${app.twilio.account-sid:}")
+    private String accountSid;
+
+    @Value("${app.twilio.auth-token:}")
+    private String authToken;
+
+    @Value("${app.twilio.phone-number:}")
+    private String fromPhoneNumber;
+
+    @Value("${app.sms.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${app.sms.connect-timeout-ms:2000}")
+    private int connectTimeoutMs;
+
+    @Value("${app.sms.read-timeout-ms:10000}")
+    private int readTimeoutMs;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+    private TwilioRestClient restClient;
+    private PhoneNumber from;
+    private Semaphore inFlight;
+    private ExecutorService executor;
+
+    @PostConstruct
+    void init() {
+        if (accountSid.isEmpty() || authToken.isEmpty()) {
+            log.warn("Twilio not configured, SMS will only be logged");
+            return;
+        }
+
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMs)
+                .setConnectionRequestTimeout(connectTimeoutMs)
+                .setSocketTimeout(readTimeoutMs)
+                .build();
+
+        HttpClientBuilder clientBuilder = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE);
+
+        restClient = new TwilioRestClient.Builder(accountSid, authToken)
+                .httpClient(new NetworkHttpClient(clientBuilder))
+                .build();
+        from = new PhoneNumber(fromPhoneNumber);
+        inFlight = new Semaphore(maxConnections);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+
+        log.info("Twilio SMS gateway initialised with {} pooled connections", maxConnections);
+    }
+
+    @PreDestroy
+    void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+        if (connectionManager != null) {
+            connectionManager.close();
+        }
+    }
+
+    @Override
+    public String send(String to, String body) {
+        if (restClient == null) {
+            log.warn("Twilio not configured. Message for phone {}: {}", to, body);
+            return "unsent-" + UUID.randomUUID();
+        }
+
+        // Qualified: the simple name Message refers to SmsGateway.Message inside this class
+        com.twilio.rest.api.v2010.account.Message message =
+                com.twilio.rest.api.v2010.account.Message.creator(new PhoneNumber(to), from, body).create(restClient);
+        return message.getSid();
+    }
+
+    @Override
+    public List<Result> sendBatch(List<Message> messages) {
+        if (restClient == null || messages.size() < 2) {
+            return SmsGateway.super.sendBatch(messages);
+        }
+
+        List<Future<Result>> futures = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            futures.add(executor.submit(() -> sendPooled(message)));
+        }
+
+        List<Result> results = new ArrayList<>(messages.size());
+        for (int i = 0; i < futures.size(); i++) {
+            String to = messages.get(i).to();
+            try {
+                results.add(futures.get(i).get(readTimeoutMs + connectTimeoutMs, TimeUnit.MILLISECONDS));
+            } catch (Exception e) {
+                results.add(Result.failed(to, e.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public String name() {
+        return "twilio";
+    }
+
+    private Result sendPooled(Message message) {
+        try {
+            inFlight.acquire();
+            try {
+                return Result.sent(message.to(), send(message.to(), message.body()));
+            } finally {
+                inFlight.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.failed(message.to(), "Interrupted");
+        } catch (Exception e) {
+            return Result.failed(message.to(), e.getMessage());
+        }
+    }
+}
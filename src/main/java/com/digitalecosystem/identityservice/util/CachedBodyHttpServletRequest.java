@@ -0,0 +1,111 @@
+package com.digitalecosystem.identityservice.util;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Request wrapper that reads the body once so filters can inspect it
+ * and controllers can still read it afterwards.
+ */
+public class CachedBodyHttpServletRequest extends HttpServletRequestWrapper {
+
+    private final byte[] body;
+    private final InputStream remainder;
+
+    public CachedBodyHttpServletRequest(HttpServletRequest request) throws IOException {
+        super(request);
+        this.body = request.getInputStream().readAllBytes();
+        this.remainder = null;
+    }
+
+    /**
+     * Buffer at most {@code maxBody} bytes whatever Content-Length claims, so chunked or
+     * mislabelled bodies are inspected too; anything longer is streamed on to the controller.
+     */
+    public CachedBodyHttpServletRequest(HttpServletRequest request, int maxBody) throws IOException {
+        super(request);
+        InputStream input = request.getInputStream();
+        byte[] prefix = input.readNBytes(maxBody + 1);
+        this.body = prefix;
+        this.remainder = prefix.length > maxBody ? input : null;
+    }
+
+    /**
+     * The buffered body, or only its first bytes when {@link #isComplete()} is false
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * Whether the whole body fit in the buffer and {@link #getBody()} can be parsed
+     */
+    public boolean isComplete() {
+        return remainder == null;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+        // An oversized body can be read once: the buffered prefix, then the rest of the original stream
+        InputStream input = remainder == null
+                ? new ByteArrayInputStream(body)
+                : new SequenceInputStream(new ByteArrayInputStream(body), remainder);
+        return new ServletInputStream() {
+            private boolean finished;
+
+            @Override
+            public boolean isFinished() {
+                if (finished || remainder != null) {
+                    return finished;
+                }
+                try {
+                    return input.available() == 0;
+                } catch (IOException e) {
+                    return false;
+                }
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read() throws IOException {
+                int read = input.read();
+                finished = read < 0;
+                return read;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = input.read(b, off, len);
+                finished = read < 0;
+                return read;
+            }
+        };
+    }
+
+    @Override
+    public BufferedReader getReader() {
+        String encoding = getCharacterEncoding();
+        Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+        return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+    }
+}
@@ -0,0 +1,133 @@
+package com.digitalecosystem.identityservice.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shared crypto building blocks for the hot paths. JCA engines are not thread-safe and are
+ * expensive to look up, so each thread keeps one instance per algorithm and reuses it.
+ * Callers must fully re-initialise an engine (init/initVerify) before every use and must not
+ * hand it to another thread.
+ */
+@Component
+@Slf4j
+public class CryptoPrimitives {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final SecureRandom random = createRandom();
+
+    private final ThreadLocal<Map<String, MessageDigest>> digests = ThreadLocal.withInitial(HashMap::new);
+    private final ThreadLocal<Map<String, Mac>> macs = ThreadLocal.withInitial(HashMap::new);
+    private final ThreadLocal<Map<String, Cipher>> ciphers = ThreadLocal.withInitial(HashMap::new);
+    private final ThreadLocal<Map<String, Signature>> signatures = ThreadLocal.withInitial(HashMap::new);
+    private final ThreadLocal<Map<String, KeyFactory>> keyFactories = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * Process-wide DRBG; SecureRandom is thread-safe, so one seeded instance serves every caller
+     */
+    public SecureRandom random() {
+        return random;
+    }
+
+    /**
+     * Fill a new array with random bytes
+     */
+    public byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Reset digest for the calling thread
+     */
+    public MessageDigest digest(String algorithm) {
+        MessageDigest digest = digests.get().computeIfAbsent(algorithm, name -> create(() -> MessageDigest.getInstance(name)));
+        digest.reset();
+        return digest;
+    }
+
+    /**
+     * Uninitialised Mac for the calling thread
+     */
+    public Mac mac(String algorithm) {
+        return macs.get().computeIfAbsent(algorithm, name -> create(() -> Mac.getInstance(name)));
+    }
+
+    /**
+     * Uninitialised Cipher for the calling thread
+     */
+    public Cipher cipher(String transformation) {
+        return ciphers.get().computeIfAbsent(transformation, name -> create(() -> Cipher.getInstance(name)));
+    }
+
+    /**
+     * Uninitialised Signature for the calling thread
+     */
+    public Signature signature(String algorithm, String provider) {
+        return signatures.get().computeIfAbsent(algorithm + "/" + provider,
+                name -> create(() -> Signature.getInstance(algorithm, provider)));
+    }
+
+    /**
+     * KeyFactory for the calling thread
+     */
+    public KeyFactory keyFactory(String algorithm, String provider) {
+        return keyFactories.get().computeIfAbsent(algorithm + "/" + provider,
+                name -> create(() -> KeyFactory.getInstance(algorithm, provider)));
+    }
+
+    /**
+     * SHA-256 of the given bytes
+     */
+    public byte[] sha256(byte[] input) {
+        return digest("SHA-256").digest(input);
+    }
+
+    /**
+     * Lower-case hex using a lookup table
+     */
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int v = bytes[i] & 0xff;
+            chars[i * 2] = HEX[v >>> 4];
+            chars[i * 2 + 1] = HEX[v & 0x0f];
+        }
+        return new String(chars);
+    }
+
+    private static SecureRandom createRandom() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            log.warn("DRBG not available, falling back to default SecureRandom");
+            return new SecureRandom();
+        }
+    }
+
+    private static <T> T create(EngineFactory<T> factory) {
+        try {
+            return factory.create();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Crypto algorithm not available", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface EngineFactory<T> {
+        T create() throws GeneralSecurityException;
+    }
+}
@@ -0,0 +1,28 @@
+package com.digitalecosystem.identityservice.util;
+
+/**
+ * RFC 4180 field quoting, compatible with PostgreSQL COPY ... (FORMAT csv)
+ */
+public final class CsvFormat {
+
+    private CsvFormat() {
+    }
+
+    /**
+     * Append a quoted field; null is written as an empty unquoted field, which COPY reads as NULL
+     */
+    public static StringBuilder appendField(StringBuilder csv, String value) {
+        if (value == null) {
+            return csv;
+        }
+        csv.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                csv.append('"');
+            }
+            csv.append(c);
+        }
+        return csv.append('"');
+    }
+}
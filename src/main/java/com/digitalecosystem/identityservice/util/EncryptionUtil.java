@@ -1,6 +1,7 @@
 package com.digitalecosystem.identityservice.util;
 
 import com.digitalecosystem.identityservice.exception.EncryptionException;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import javax.crypto.Cipher;
@@ -12,14 +13,16 @@ import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.ByteBuffer;
 import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.security.spec.KeySpec;
 import java.util.Base64;
 
 @Component
+@RequiredArgsConstructor
 @Slf4j
 public class EncryptionUtil {
 
+    private final CryptoPrimitives cryptoPrimitives;
+
     private static final String ALGORITHM = "AES/GCM/NoPadding";
     private static final int KEY_SIZE = 256;
     private static final int IV_SIZE = 12;
@@ -36,7 +39,7 @@ public class EncryptionUtil {
             SecretKey key = deriveKey(passphrase, salt);
             byte[] iv = generateIV();
 
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
+            Cipher cipher = cryptoPrimitives.cipher(ALGORITHM);
             GCMParameterSpec parameterSpec = new GCMParameterSpec(TAG_SIZE, iv);
             cipher.init(Cipher.ENCRYPT_MODE, key, parameterSpec);
 
@@ -75,7 +78,7 @@ public class EncryptionUtil {
 
             SecretKey key = deriveKey(passphrase, salt);
 
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
+            Cipher cipher = cryptoPrimitives.cipher(ALGORITHM);
             GCMParameterSpec parameterSpec = new GCMParameterSpec(TAG_SIZE, iv);
             cipher.init(Cipher.DECRYPT_MODE, key, parameterSpec);
 
@@ -101,18 +104,14 @@ public class EncryptionUtil {
      * Generate random salt
      */
     private byte[] generateSalt() {
-        byte[] salt = new byte[SALT_SIZE];
-        new SecureRandom().nextBytes(salt);
-        return salt;
+        return cryptoPrimitives.randomBytes(SALT_SIZE);
     }
 
     /**
      * Generate random IV
      */
     private byte[] generateIV() {
-        byte[] iv = new byte[IV_SIZE];
-        new SecureRandom().nextBytes(iv);
-        return iv;
+        return cryptoPrimitives.randomBytes(IV_SIZE);
     }
 
     /**
@@ -1,38 +1,26 @@
 package com.digitalecosystem.identityservice.util;
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
 @Component
+@RequiredArgsConstructor
 public class HashUtil {
 
+    private final CryptoPrimitives cryptoPrimitives;
+
     /**
      * Generate SHA-256 hash
      */
     public String sha256(String input) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            return bytesToHex(hash);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-256 algorithm not found", e);
-        }
+        return CryptoPrimitives.toHex(sha256Bytes(input));
     }
 
     /**
-     * Convert bytes to hex string
+     * Generate raw SHA-256 digest
      */
-    private String bytesToHex(byte[] hash) {
-        StringBuilder hexString = new StringBuilder(2 * hash.length);
-        for (byte b : hash) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) {
-                hexString.append('0');
-            }
-            hexString.append(hex);
-        }
-        return hexString.toString();
+    public byte[] sha256Bytes(String input) {
+        return cryptoPrimitives.sha256(input.getBytes(StandardCharsets.UTF_8));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,149 @@
+package com.digitalecosystem.identityservice.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Scalable Bloom filter (Almeida et al.): when the newest slice reaches its capacity a larger
+ * slice with a tighter false-positive rate is appended, so the compound rate stays below the
+ * configured target however many entries are added. Adds and lookups are lock-free.
+ * <p>
+ * Keys are hex SHA-256 digests; their bits are already uniform, so the first 32 hex
+ * characters supply the two hashes for double hashing without rehashing.
+ */
+public class ScalableBloomFilter {
+
+    // Each slice gets half the false-positive budget of the previous one
+    private static final double TIGHTENING_RATIO = 0.5;
+
+    private final long initialCapacity;
+    private final double falsePositiveRate;
+    private final int growthFactor;
+    private final List<Slice> slices = new CopyOnWriteArrayList<>();
+
+    public ScalableBloomFilter(long initialCapacity, double falsePositiveRate, int growthFactor) {
+        if (initialCapacity <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1 || growthFactor < 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter sizing");
+        }
+        this.initialCapacity = initialCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+        this.growthFactor = growthFactor;
+        slices.add(new Slice(initialCapacity, falsePositiveRate * (1 - TIGHTENING_RATIO)));
+    }
+
+    public void add(String hexDigest) {
+        long h1 = Long.parseUnsignedLong(hexDigest, 0, 16, 16);
+        long h2 = Long.parseUnsignedLong(hexDigest, 16, 32, 16);
+        if (contains(h1, h2)) {
+            return;
+        }
+        current().add(h1, h2);
+    }
+
+    /**
+     * False means the key was definitely never added
+     */
+    public boolean mightContain(String hexDigest) {
+        long h1 = Long.parseUnsignedLong(hexDigest, 0, 16, 16);
+        long h2 = Long.parseUnsignedLong(hexDigest, 16, 32, 16);
+        return contains(h1, h2);
+    }
+
+    public long size() {
+        return slices.stream().mapToLong(slice -> slice.count.get()).sum();
+    }
+
+    public long memoryBytes() {
+        return slices.stream().mapToLong(slice -> slice.words.length() * 8L).sum();
+    }
+
+    public int sliceCount() {
+        return slices.size();
+    }
+
+    /**
+     * Estimated false-positive rate for the current fill, across all slices
+     */
+    public double expectedFalsePositiveRate() {
+        double allNegative = 1.0;
+        for (Slice slice : slices) {
+            allNegative *= 1 - slice.expectedFalsePositiveRate();
+        }
+        return 1 - allNegative;
+    }
+
+    public double targetFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    private boolean contains(long h1, long h2) {
+        for (Slice slice : slices) {
+            if (slice.contains(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Slice current() {
+        Slice last = slices.get(slices.size() - 1);
+        if (last.count.get() < last.capacity) {
+            return last;
+        }
+        synchronized (this) {
+            last = slices.get(slices.size() - 1);
+            if (last.count.get() >= last.capacity) {
+                long capacity = initialCapacity * (long) Math.pow(growthFactor, slices.size());
+                double rate = falsePositiveRate * (1 - TIGHTENING_RATIO) * Math.pow(TIGHTENING_RATIO, slices.size());
+                last = new Slice(capacity, rate);
+                slices.add(last);
+            }
+            return last;
+        }
+    }
+
+    private static final class Slice {
+        private final long capacity;
+        private final long bits;
+        private final int hashes;
+        private final AtomicLongArray words;
+        private final AtomicLong count = new AtomicLong();
+
+        private Slice(long capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.words = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE - 8, (optimalBits + 63) >>> 6));
+            this.bits = words.length() * 64L;
+            this.hashes = Math.max(1, (int) Math.round((double) bits / capacity * Math.log(2)));
+        }
+
+        private void add(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                do {
+                    current = words.get(word);
+                } while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask));
+            }
+            count.incrementAndGet();
+        }
+
+        private boolean contains(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private double expectedFalsePositiveRate() {
+            return Math.pow(1 - Math.exp(-(double) hashes * count.get() / bits), hashes);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.digitalecosystem.identityservice.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A request body read to the end before any of it is processed, so a slow upload holds no
+ * database connection or transaction. Bodies up to the memory threshold stay on the heap;
+ * larger ones go to a temporary file that is deleted on close.
+ */
+public class SpooledBody implements Closeable {
+
+    private final byte[] buffered;
+    private final Path file;
+
+    public SpooledBody(InputStream input, int memoryThreshold) throws IOException {
+        byte[] head = input.readNBytes(memoryThreshold + 1);
+        if (head.length <= memoryThreshold) {
+            this.buffered = head;
+            this.file = null;
+            return;
+        }
+
+        Path spool = Files.createTempFile("spooled-body-", ".tmp");
+        try (OutputStream out = Files.newOutputStream(spool)) {
+            out.write(head);
+            input.transferTo(out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spool);
+            throw e;
+        }
+        this.buffered = null;
+        this.file = spool;
+    }
+
+    /**
+     * A fresh stream over the whole body
+     */
+    public InputStream open() throws IOException {
+        return file == null ? new ByteArrayInputStream(buffered) : Files.newInputStream(file);
+    }
+
+    /**
+     * Whether the body went to a temporary file
+     */
+    public boolean isSpooled() {
+        return file != null;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            Files.deleteIfExists(file);
+        }
+    }
+}
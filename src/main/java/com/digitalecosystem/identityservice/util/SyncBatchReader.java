@@ -0,0 +1,175 @@
+package com.digitalecosystem.identityservice.util;
+
+import com.digitalecosystem.identityservice.dto.SyncBatchRequest;
+import com.digitalecosystem.identityservice.exception.IdentityException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a sync batch ({"operations": [...]}) one operation at a time with the Jackson streaming
+ * parser, so a batch is never held in memory as a whole. Only the fields the server uses are
+ * kept; anything else is skipped token by token without building a tree. A data field of the
+ * wrong type is read as missing, so it becomes that operation's conflict rather than failing
+ * the batch; malformed JSON throws {@link IdentityException} when the reader reaches it.
+ */
+public class SyncBatchReader implements Iterator<SyncBatchRequest.SyncOperation>, Closeable {
+
+    private final JsonParser parser;
+    private final ArrayDeque<SyncBatchRequest.SyncOperation> buffered = new ArrayDeque<>();
+    private boolean exhausted;
+    private int read;
+
+    public SyncBatchReader(JsonFactory jsonFactory, InputStream input) throws IOException {
+        this.parser = jsonFactory.createParser(input);
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IdentityException("Sync batch must be a JSON object");
+            }
+            seekOperations();
+        } catch (JsonProcessingException e) {
+            throw malformed(e);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (buffered.isEmpty() && !exhausted) {
+            SyncBatchRequest.SyncOperation operation = readOperation();
+            if (operation != null) {
+                buffered.add(operation);
+            }
+        }
+        return !buffered.isEmpty();
+    }
+
+    @Override
+    public SyncBatchRequest.SyncOperation next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return buffered.poll();
+    }
+
+    /**
+     * Read ahead up to {@code max} operations without consuming them; fewer means the batch ends there
+     */
+    public List<SyncBatchRequest.SyncOperation> peek(int max) {
+        while (buffered.size() < max && !exhausted) {
+            SyncBatchRequest.SyncOperation operation = readOperation();
+            if (operation != null) {
+                buffered.add(operation);
+            }
+        }
+        return List.copyOf(buffered);
+    }
+
+    /**
+     * Operations parsed so far, including any read ahead
+     */
+    public int operationsRead() {
+        return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    private void seekOperations() throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            if (parser.nextToken() == JsonToken.START_ARRAY && "operations".equals(name)) {
+                return;
+            }
+            parser.skipChildren();
+        }
+        // No operations array: an empty batch
+        exhausted = true;
+    }
+
+    private SyncBatchRequest.SyncOperation readOperation() {
+        try {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.END_ARRAY) {
+                exhausted = true;
+                return null;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new IdentityException("Sync operation " + read + " must be a JSON object");
+            }
+
+            SyncBatchRequest.SyncOperation operation = new SyncBatchRequest.SyncOperation();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (name) {
+                    case "opId" -> operation.setOpId(scalarText(value));
+                    case "operation" -> operation.setOperation(scalarText(value));
+                    case "timestamp" -> operation.setTimestamp(longValue(value));
+                    case "data" -> operation.setData(readData(value));
+                    default -> parser.skipChildren();
+                }
+            }
+            read++;
+            return operation;
+        } catch (JsonProcessingException e) {
+            throw malformed(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private SyncBatchRequest.OperationData readData(JsonToken token) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        SyncBatchRequest.OperationData data = new SyncBatchRequest.OperationData();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (name) {
+                case "did" -> data.setDid(stringValue(value));
+                case "publicKey" -> data.setPublicKey(stringValue(value));
+                default -> parser.skipChildren();
+            }
+        }
+        return data;
+    }
+
+    private String scalarText(JsonToken token) throws IOException {
+        return token.isScalarValue() && token != JsonToken.VALUE_NULL ? parser.getText() : skip();
+    }
+
+    private String stringValue(JsonToken token) throws IOException {
+        return token == JsonToken.VALUE_STRING ? parser.getText() : skip();
+    }
+
+    private Long longValue(JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private String skip() throws IOException {
+        parser.skipChildren();
+        return null;
+    }
+
+    private IdentityException malformed(JsonProcessingException e) {
+        return new IdentityException("Malformed sync batch after " + read + " operations: " + e.getOriginalMessage());
+    }
+}
@@ -0,0 +1,64 @@
+-- Hold back feed rows by transaction state instead of by age. Each change records the snapshot
+-- xmax (the first transaction id not yet assigned) taken just after its sequence number was
+-- drawn: every transaction that drew a lower sequence number already had an id below it. Once
+-- the reader's snapshot xmin has passed that value, all of them have committed or aborted, so
+-- no lower sequence number can still appear.
+-- Drawing the id first (pg_current_xact_id) keeps it below the sequence number, and each
+-- statement of the functions takes a fresh snapshot under READ COMMITTED, the isolation level
+-- the writers use.
+ALTER TABLE user_identity ADD COLUMN change_xmax BIGINT;
+ALTER TABLE user_contact ADD COLUMN change_xmax BIGINT;
+ALTER TABLE device_link ADD COLUMN change_xmax BIGINT;
+ALTER TABLE sync_tombstone ADD COLUMN change_xmax BIGINT;
+
+-- Rows stamped before this migration have settled and are left NULL
+
+CREATE OR REPLACE FUNCTION stamp_change() RETURNS trigger AS $$
+BEGIN
+    PERFORM pg_current_xact_id();
+    NEW.change_seq := nextval('change_seq');
+    NEW.change_xmax := pg_snapshot_xmax(pg_current_snapshot())::text::bigint;
+    NEW.changed_at := clock_timestamp();
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION stamp_identity_change() RETURNS trigger AS $$
+BEGIN
+    PERFORM pg_current_xact_id();
+    NEW.change_seq := nextval('change_seq');
+    NEW.change_xmax := pg_snapshot_xmax(pg_current_snapshot())::text::bigint;
+    NEW.changed_at := clock_timestamp();
+    IF TG_OP = 'UPDATE' THEN
+        NEW.server_version := COALESCE(OLD.server_version, 0) + 1;
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION tombstone_identity() RETURNS trigger AS $$
+DECLARE
+    seq BIGINT;
+BEGIN
+    seq := nextval('change_seq');
+    INSERT INTO sync_tombstone (change_seq, entity, entity_id, did, change_xmax)
+    VALUES (seq, 'identity', OLD.id, OLD.did, pg_snapshot_xmax(pg_current_snapshot())::text::bigint);
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION tombstone_child() RETURNS trigger AS $$
+DECLARE
+    owner_did VARCHAR(255);
+    seq BIGINT;
+BEGIN
+    SELECT did INTO owner_did FROM user_identity WHERE id = OLD.user_id;
+    -- No owner when the delete cascades from the identity, whose own tombstone covers its children
+    IF owner_did IS NOT NULL THEN
+        seq := nextval('change_seq');
+        INSERT INTO sync_tombstone (change_seq, entity, entity_id, did, change_xmax)
+        VALUES (seq, TG_ARGV[0], OLD.id, owner_did, pg_snapshot_xmax(pg_current_snapshot())::text::bigint);
+    END IF;
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
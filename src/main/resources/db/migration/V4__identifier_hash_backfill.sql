@@ -0,0 +1,3 @@
+-- Legacy contacts still missing identifier_hash, in id order, for the keyset-paginated backfill.
+-- The index shrinks to nothing as the backfill completes.
+CREATE INDEX idx_user_contact_missing_hash ON user_contact(id) WHERE identifier_hash IS NULL;
@@ -0,0 +1,9 @@
+-- Step every id sequence by 50 so Hibernate's pooled optimizer can take a block of ids per
+-- nextval and batch inserts; IDENTITY generation forced one INSERT round trip per row.
+-- Must match allocationSize on the entities' @SequenceGenerator.
+ALTER SEQUENCE user_identity_id_seq INCREMENT BY 50;
+ALTER SEQUENCE user_contact_id_seq INCREMENT BY 50;
+ALTER SEQUENCE device_link_id_seq INCREMENT BY 50;
+ALTER SEQUENCE backup_metadata_id_seq INCREMENT BY 50;
+ALTER SEQUENCE sync_queue_id_seq INCREMENT BY 50;
+ALTER SEQUENCE did_web_audit_log_id_seq INCREMENT BY 50;
@@ -0,0 +1,23 @@
+-- Asynchronous sync ingestion: a batch is accepted into sync_queue and drained by workers.
+-- Workers claim a batch row with FOR UPDATE SKIP LOCKED, so each batch is applied by one
+-- worker at a time, in order, while other workers take other batches.
+CREATE TABLE sync_batch (
+    id VARCHAR(36) PRIMARY KEY,
+    status VARCHAR(20) NOT NULL DEFAULT 'queued',
+    operation_count INT NOT NULL,
+    processed_count INT NOT NULL DEFAULT 0,
+    synced_count INT NOT NULL DEFAULT 0,
+    attempts INT NOT NULL DEFAULT 0,
+    error TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    completed_at TIMESTAMP
+);
+
+CREATE INDEX idx_sync_batch_pending ON sync_batch(created_at) WHERE status IN ('queued', 'processing');
+CREATE INDEX idx_sync_batch_completed_at ON sync_batch(completed_at);
+
+ALTER TABLE sync_queue
+    ADD COLUMN batch_id VARCHAR(36) REFERENCES sync_batch(id) ON DELETE CASCADE,
+    ADD COLUMN conflict_reason TEXT;
+
+CREATE INDEX idx_sync_queue_batch ON sync_queue(batch_id, id) WHERE synced = FALSE;
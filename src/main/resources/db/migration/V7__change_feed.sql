@@ -0,0 +1,87 @@
+-- Delta sync: every insert or update of an identity, contact or device link is stamped with the
+-- next value of one global sequence, and deletes leave a tombstone, so a device can pull only
+-- what changed after the last sequence number it saw. Triggers stamp every writer alike
+-- (JPA, hand-written SQL and COPY imports).
+CREATE SEQUENCE change_seq;
+
+ALTER TABLE user_identity ADD COLUMN change_seq BIGINT, ADD COLUMN changed_at TIMESTAMP;
+ALTER TABLE user_contact ADD COLUMN change_seq BIGINT, ADD COLUMN changed_at TIMESTAMP;
+ALTER TABLE device_link ADD COLUMN change_seq BIGINT, ADD COLUMN changed_at TIMESTAMP;
+
+-- Existing rows count as changed once, so a first pull from 0 returns them
+UPDATE user_identity SET change_seq = nextval('change_seq'), changed_at = CURRENT_TIMESTAMP;
+UPDATE user_contact SET change_seq = nextval('change_seq'), changed_at = CURRENT_TIMESTAMP;
+UPDATE device_link SET change_seq = nextval('change_seq'), changed_at = CURRENT_TIMESTAMP;
+
+CREATE TABLE sync_tombstone (
+    change_seq BIGINT PRIMARY KEY DEFAULT nextval('change_seq'),
+    entity VARCHAR(20) NOT NULL,
+    entity_id BIGINT NOT NULL,
+    did VARCHAR(255) NOT NULL,
+    changed_at TIMESTAMP NOT NULL DEFAULT clock_timestamp()
+);
+
+CREATE INDEX idx_sync_tombstone_did ON sync_tombstone(did, change_seq);
+CREATE INDEX idx_sync_tombstone_changed_at ON sync_tombstone(changed_at);
+
+-- Highest sequence number whose tombstones have been purged; older cursors must pull from 0
+CREATE TABLE sync_change_horizon (
+    id BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (id),
+    purged_through BIGINT NOT NULL
+);
+
+INSERT INTO sync_change_horizon (id, purged_through) VALUES (TRUE, 0);
+
+CREATE FUNCTION stamp_change() RETURNS trigger AS $$
+BEGIN
+    NEW.change_seq := nextval('change_seq');
+    NEW.changed_at := clock_timestamp();
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Identities also bump server_version, so a client can tell which copy of a row is newer
+CREATE FUNCTION stamp_identity_change() RETURNS trigger AS $$
+BEGIN
+    NEW.change_seq := nextval('change_seq');
+    NEW.changed_at := clock_timestamp();
+    IF TG_OP = 'UPDATE' THEN
+        NEW.server_version := COALESCE(OLD.server_version, 0) + 1;
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION tombstone_identity() RETURNS trigger AS $$
+BEGIN
+    INSERT INTO sync_tombstone (entity, entity_id, did) VALUES ('identity', OLD.id, OLD.did);
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION tombstone_child() RETURNS trigger AS $$
+DECLARE
+    owner_did VARCHAR(255);
+BEGIN
+    SELECT did INTO owner_did FROM user_identity WHERE id = OLD.user_id;
+    -- No owner when the delete cascades from the identity, whose own tombstone covers its children
+    IF owner_did IS NOT NULL THEN
+        INSERT INTO sync_tombstone (entity, entity_id, did) VALUES (TG_ARGV[0], OLD.id, owner_did);
+    END IF;
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER user_identity_change BEFORE INSERT OR UPDATE ON user_identity
+    FOR EACH ROW EXECUTE FUNCTION stamp_identity_change();
+CREATE TRIGGER user_contact_change BEFORE INSERT OR UPDATE ON user_contact
+    FOR EACH ROW EXECUTE FUNCTION stamp_change();
+CREATE TRIGGER device_link_change BEFORE INSERT OR UPDATE ON device_link
+    FOR EACH ROW EXECUTE FUNCTION stamp_change();
+
+CREATE TRIGGER user_identity_tombstone AFTER DELETE ON user_identity
+    FOR EACH ROW EXECUTE FUNCTION tombstone_identity();
+CREATE TRIGGER user_contact_tombstone AFTER DELETE ON user_contact
+    FOR EACH ROW EXECUTE FUNCTION tombstone_child('contact');
+CREATE TRIGGER device_link_tombstone AFTER DELETE ON device_link
+    FOR EACH ROW EXECUTE FUNCTION tombstone_child('device');
@@ -0,0 +1,3 @@
+-- Client operation id of a queued sync operation, so the workers can record its outcome
+-- and skip it when a resent batch carries the same id
+ALTER TABLE sync_queue ADD COLUMN op_id VARCHAR(128);
@@ -0,0 +1,7 @@
+-- DID each queued operation touches, so a worker holds a batch back while an older unfinished
+-- batch still has operations on one of its DIDs and batches from one device apply in order
+ALTER TABLE sync_queue ADD COLUMN did VARCHAR(255);
+
+UPDATE sync_queue SET did = payload->>'did' WHERE synced = FALSE AND batch_id IS NOT NULL;
+
+CREATE INDEX idx_sync_queue_pending_did ON sync_queue(did, batch_id) WHERE synced = FALSE;
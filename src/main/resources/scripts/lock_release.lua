@@ -0,0 +1,9 @@
+-- Release a lock only while this holder still owns it, so a holder whose lease expired
+-- cannot delete the lock another node has since taken.
+-- KEYS[1] = lock key
+-- ARGV[1] = holder id stored as the lock value
+-- Returns 1 when released, 0 when the lock is held by someone else or gone.
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
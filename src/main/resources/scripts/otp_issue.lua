@@ -0,0 +1,24 @@
+-- Atomically issue an OTP into the identifier's session hash: rate-limit check,
+-- hash store, attempt increment and TTL.
+-- KEYS[1] = session key (prefix + identifier digest)
+-- ARGV[1] = OTP hash
+-- ARGV[2] = OTP expiry in milliseconds
+-- ARGV[3] = max attempts
+-- Fields: h = OTP hash, e = OTP expiry (epoch ms), a = attempts, v = verified flag.
+-- Returns the new attempt count, or -1 when the limit has been reached.
+local expiry = tonumber(ARGV[2])
+local attempts = tonumber(redis.call('HGET', KEYS[1], 'a') or '0')
+if attempts >= tonumber(ARGV[3]) then
+    return -1
+end
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+attempts = attempts + 1
+redis.call('HSET', KEYS[1], 'h', ARGV[1], 'e', tostring(now + expiry), 'a', tostring(attempts))
+-- Never shorten a longer verified window already on the session
+if redis.call('PTTL', KEYS[1]) < expiry then
+    redis.call('PEXPIRE', KEYS[1], expiry)
+end
+return attempts
@@ -0,0 +1,30 @@
+-- Atomically compare an OTP hash against the session and clear the OTP on match,
+-- optionally marking the identifier as verified in the same call.
+-- KEYS[1] = session key (prefix + identifier digest)
+-- ARGV[1] = hash of the submitted OTP
+-- ARGV[2] = verified window in milliseconds, or 0 to only consume the OTP
+-- Returns 1 when valid, 0 when invalid and -1 when expired or not found.
+local session = redis.call('HMGET', KEYS[1], 'h', 'e')
+if not session[1] then
+    return -1
+end
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+if tonumber(session[2]) <= now then
+    redis.call('HDEL', KEYS[1], 'h', 'e')
+    return -1
+end
+
+if session[1] ~= ARGV[1] then
+    return 0
+end
+
+-- An emptied hash is removed by Redis
+redis.call('HDEL', KEYS[1], 'h', 'e', 'a')
+local verifiedTtl = tonumber(ARGV[2])
+if verifiedTtl > 0 then
+    redis.call('HSET', KEYS[1], 'v', '1')
+    redis.call('PEXPIRE', KEYS[1], verifiedTtl)
+end
+return 1
@@ -0,0 +1,36 @@
+-- Token bucket refilled continuously from the Redis server clock.
+-- KEYS[1] = bucket key
+-- ARGV[1] = capacity
+-- ARGV[2] = refill rate in tokens per millisecond
+-- ARGV[3] = tokens to take (default 1); nothing is taken unless all of them are available
+-- Returns {allowed (1/0), retry-after in milliseconds}.
+local capacity = tonumber(ARGV[1])
+local rate = tonumber(ARGV[2])
+local cost = tonumber(ARGV[3]) or 1
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local bucket = redis.call('HMGET', KEYS[1], 't', 'ts')
+local tokens = tonumber(bucket[1])
+local updated = tonumber(bucket[2])
+if tokens == nil or updated == nil then
+    tokens = capacity
+    updated = now
+end
+
+tokens = math.min(capacity, tokens + math.max(0, now - updated) * rate)
+
+local allowed = 0
+local retryAfter = 0
+if tokens >= cost then
+    tokens = tokens - cost
+    allowed = 1
+else
+    retryAfter = math.ceil((cost - tokens) / rate)
+end
+
+redis.call('HSET', KEYS[1], 't', tostring(tokens), 'ts', tostring(now))
+-- Keep the bucket only as long as it takes to refill completely
+redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / rate) + 1000)
+return {allowed, retryAfter}
@@ -0,0 +1,177 @@
+package com.digitalecosystem.identityservice.config;
+
+import com.digitalecosystem.identityservice.service.RateLimiterService;
+import com.digitalecosystem.identityservice.util.CryptoPrimitives;
+import com.digitalecosystem.identityservice.util.HashUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RateLimitFilterTest {
+
+    @Mock
+    private RateLimiterService rateLimiterService;
+
+    private final HashUtil hashUtil = new HashUtil(new CryptoPrimitives());
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // Configured as in the application, so error bodies with timestamps serialise
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        RateLimitProperties.Rule rule = new RateLimitProperties.Rule();
+        rule.setName("verify-identifier");
+        rule.setMethod("POST");
+        rule.setPath("/api/v1/auth/verify-otp");
+        rule.setKey(RateLimitProperties.KeyType.IDENTIFIER);
+        rule.setCapacity(5);
+        rule.setRefillTokens(5);
+        rule.setRefillPeriod(Duration.ofMinutes(5));
+
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setRules(List.of(rule));
+
+        filter = new RateLimitFilter(properties, rateLimiterService, hashUtil, objectMapper, meterRegistry);
+    }
+
+    @Test
+    void allowedRequest_BodyStillReadable() throws Exception {
+        // Arrange
+        when(rateLimiterService.tryConsume(any(), eq(hashUtil.sha256("user@example.com")), eq(1L))).thenReturn(0L);
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        filter.doFilter(verifyRequest("{\"identifier\":\"User@Example.com\",\"otp\":\"123456\"}"),
+                new MockHttpServletResponse(), chain);
+
+        // Assert
+        ServletRequest forwarded = chain.getRequest();
+        assertNotNull(forwarded);
+        String body = new String(forwarded.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(body.contains("\"otp\":\"123456\""));
+        assertEquals(1.0, meterRegistry.counter("rate_limit.requests",
+                "rule", "verify-identifier", "outcome", "allowed").count());
+    }
+
+    @Test
+    void rejectedRequest_Returns429WithoutCallingChain() throws Exception {
+        // Arrange
+        when(rateLimiterService.tryConsume(any(), any(), anyLong())).thenReturn(2_500L);
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        filter.doFilter(verifyRequest("{\"identifier\":\"user@example.com\",\"otp\":\"000000\"}"), response, chain);
+
+        // Assert
+        assertEquals(429, response.getStatus());
+        assertEquals("3", response.getHeader("Retry-After"));
+        assertNull(chain.getRequest());
+        assertEquals(1.0, meterRegistry.counter("rate_limit.requests",
+                "rule", "verify-identifier", "outcome", "rejected").count());
+    }
+
+    @Test
+    void chunkedRequest_StillKeyedByIdentifier() throws Exception {
+        // Arrange
+        when(rateLimiterService.tryConsume(any(), eq(hashUtil.sha256("user@example.com")), eq(1L))).thenReturn(0L);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/auth/verify-otp") {
+            @Override
+            public long getContentLengthLong() {
+                // Transfer-Encoding: chunked sends no Content-Length
+                return -1;
+            }
+        };
+        request.setContent("{\"identifier\":\"user@example.com\",\"otp\":\"123456\"}".getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        // Assert
+        verify(rateLimiterService).tryConsume(any(), eq(hashUtil.sha256("user@example.com")), eq(1L));
+    }
+
+    @Test
+    void oversizedBody_RejectedOnIdentifierRule() throws Exception {
+        // Arrange
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        String padded = "{\"padding\":\"" + "x".repeat(20_000) + "\",\"identifier\":\"user@example.com\"}";
+
+        // Act
+        filter.doFilter(verifyRequest(padded), response, chain);
+
+        // Assert
+        assertEquals(413, response.getStatus());
+        assertNull(chain.getRequest());
+        verifyNoInteractions(rateLimiterService);
+    }
+
+    @Test
+    void costedRule_ChargesOneTokenPerIdentifier() throws Exception {
+        // Arrange
+        RateLimitProperties.Rule rule = new RateLimitProperties.Rule();
+        rule.setName("check-batch-ip");
+        rule.setMethod("POST");
+        rule.setPath("/api/v1/identity/check-batch");
+        rule.setCostFields(List.of("identifiers", "identifierHashes"));
+        rule.setCapacity(5000);
+        rule.setRefillTokens(5000);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setRules(List.of(rule));
+        RateLimitFilter batchFilter = new RateLimitFilter(properties, rateLimiterService, hashUtil, objectMapper, meterRegistry);
+
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/identity/check-batch");
+        request.setContent("{\"identifiers\":[\"a@example.com\",\"b@example.com\"],\"identifierHashes\":[\"00\"]}"
+                .getBytes(StandardCharsets.UTF_8));
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        batchFilter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        // Assert
+        verify(rateLimiterService).tryConsume(rule, "127.0.0.1", 3L);
+        assertNotNull(chain.getRequest());
+    }
+
+    @Test
+    void unmatchedPath_SkipsLimiter() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/identity/restore");
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        // Assert
+        assertSame(request, chain.getRequest());
+        verifyNoInteractions(rateLimiterService);
+    }
+
+    private MockHttpServletRequest verifyRequest(String json) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/auth/verify-otp");
+        request.setContentType("application/json");
+        request.setContent(json.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
@@ -0,0 +1,131 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailServiceTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private SmtpTransportPool transportPool;
+    private EmailService emailService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MailProperties mailProperties = new MailProperties();
+        mailProperties.setHost("localhost");
+        mailProperties.setPort(ServerSetupTest.SMTP.getPort());
+
+        transportPool = new SmtpTransportPool(mailProperties);
+        ReflectionTestUtils.setField(transportPool, "poolSize", 4);
+        ReflectionTestUtils.setField(transportPool, "borrowTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(transportPool, "maxIdleMs", 60000L);
+        ReflectionTestUtils.setField(transportPool, "maxMessagesPerSession", 500);
+
+        emailService = new EmailService(transportPool);
+        ReflectionTestUtils.setField(emailService, "enabled", true);
+        ReflectionTestUtils.setField(emailService, "from", "no-reply@digitalecosystem.com");
+        ReflectionTestUtils.setField(emailService, "otpExpirySeconds", 180);
+        emailService.compileTemplates();
+    }
+
+    @AfterEach
+    void tearDown() {
+        transportPool.shutdown();
+    }
+
+    @Test
+    void sendOTP_RendersTemplate() throws Exception {
+        // Act
+        emailService.sendOTP("user@example.com", "123456");
+
+        // Assert
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertEquals(1, received.length);
+        assertEquals("Your verification code: 123456", received[0].getSubject());
+        assertEquals("user@example.com", received[0].getAllRecipients()[0].toString());
+    }
+
+    @Test
+    void sendOTPBatch_SendsAllOverPooledSession() {
+        // Arrange
+        List<Map.Entry<String, String>> batch = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            batch.add(Map.entry("user" + i + "@example.com", String.valueOf(100000 + i)));
+        }
+
+        // Act
+        List<Boolean> results = emailService.sendOTPBatch(batch);
+
+        // Assert
+        assertEquals(25, results.size());
+        assertTrue(results.stream().allMatch(Boolean::booleanValue));
+        assertEquals(25, greenMail.getReceivedMessages().length);
+    }
+
+    @Test
+    void sendOTPBatch_InvalidAddressFailsOnlyThatEntry() {
+        // Act
+        List<Boolean> results = emailService.sendOTPBatch(List.of(
+                Map.entry("user@example.com", "111111"),
+                Map.entry("not an address", "222222")));
+
+        // Assert
+        assertEquals(List.of(true, false), results);
+        assertEquals(1, greenMail.getReceivedMessages().length);
+    }
+
+    /**
+     * Messages per second: pooled batches versus a fresh SMTP connection per message.
+     * Run with: mvn test -Dtest=EmailServiceTest -Dbenchmarks=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void benchmarkThroughput() throws Exception {
+        int total = 2_000;
+        int batchSize = 50;
+
+        long start = System.nanoTime();
+        for (int sent = 0; sent < total; sent += batchSize) {
+            List<Map.Entry<String, String>> batch = new ArrayList<>(batchSize);
+            for (int i = 0; i < batchSize; i++) {
+                batch.add(Map.entry("pooled" + (sent + i) + "@example.com", "123456"));
+            }
+            emailService.sendOTPBatch(batch);
+        }
+        double pooled = total / ((System.nanoTime() - start) / 1e9);
+
+        start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            MimeMessage message = new MimeMessage(transportPool.session());
+            message.setFrom("no-reply@digitalecosystem.com");
+            message.setRecipients(MimeMessage.RecipientType.TO, "single" + i + "@example.com");
+            message.setSubject("Your verification code: 123456");
+            message.setText("Your verification code is: 123456");
+
+            Transport transport = transportPool.session().getTransport("smtp");
+            transport.connect("localhost", ServerSetupTest.SMTP.getPort(), null, null);
+            transport.sendMessage(message, message.getAllRecipients());
+            transport.close();
+        }
+        double perMessage = total / ((System.nanoTime() - start) / 1e9);
+
+        System.out.printf("pooled: %.0f msg/s, connection per message: %.0f msg/s%n", pooled, perMessage);
+    }
+}
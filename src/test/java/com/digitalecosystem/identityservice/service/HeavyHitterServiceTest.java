@@ -0,0 +1,149 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.util.CountMinSketch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HeavyHitterServiceTest {
+
+    // Threshold 10: nominated by the sketch at 5, then 10 exact counts
+    private static final int REQUESTS_TO_BLOCK = 14;
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    private HeavyHitterService heavyHitterService;
+
+    @BeforeEach
+    void setUp() {
+        heavyHitterService = new HeavyHitterService(redisTemplate);
+        ReflectionTestUtils.setField(heavyHitterService, "enabled", true);
+        ReflectionTestUtils.setField(heavyHitterService, "windowMs", 60000L);
+        ReflectionTestUtils.setField(heavyHitterService, "blockThreshold", 10);
+        ReflectionTestUtils.setField(heavyHitterService, "blockDurationMs", 600000L);
+        ReflectionTestUtils.setField(heavyHitterService, "topK", 3);
+        ReflectionTestUtils.setField(heavyHitterService, "sketchWidth", 1024);
+        ReflectionTestUtils.setField(heavyHitterService, "sketchDepth", 4);
+        ReflectionTestUtils.setField(heavyHitterService, "maxCandidates", 100);
+        heavyHitterService.init();
+    }
+
+    @Test
+    void sketch_NeverUndercounts() {
+        // Arrange
+        CountMinSketch sketch = new CountMinSketch(64, 4);
+        for (int i = 0; i < 1000; i++) {
+            sketch.add("noise-" + i);
+        }
+
+        // Act
+        for (int i = 0; i < 25; i++) {
+            sketch.add("hot");
+        }
+
+        // Assert
+        assertTrue(sketch.estimate("hot") >= 25);
+    }
+
+    @Test
+    void recordAndCheck_BlocksOnceThresholdReached() {
+        // Act: nominated at 5 requests, then counted exactly up to the threshold of 10
+        for (int i = 0; i < REQUESTS_TO_BLOCK - 1; i++) {
+            assertFalse(heavyHitterService.recordAndCheck("ip:10.0.0.1"));
+        }
+
+        // Assert
+        assertTrue(heavyHitterService.recordAndCheck("ip:10.0.0.1"));
+        assertTrue(heavyHitterService.recordAndCheck("ip:10.0.0.1"));
+        assertFalse(heavyHitterService.recordAndCheck("ip:10.0.0.2"));
+    }
+
+    @Test
+    void recordAndCheck_SketchOvercount_DoesNotBlock() {
+        // Arrange: a sketch this narrow puts every key's estimate far over the threshold
+        ReflectionTestUtils.setField(heavyHitterService, "sketchWidth", 2);
+        ReflectionTestUtils.setField(heavyHitterService, "sketchDepth", 1);
+        heavyHitterService.init();
+        for (int i = 0; i < 200; i++) {
+            heavyHitterService.recordAndCheck("ip:198.51.100." + i);
+        }
+
+        // Act
+        boolean rejected = heavyHitterService.recordAndCheck("id:innocent");
+
+        // Assert
+        assertFalse(rejected);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void snapshot_KeepsOnlyTopKeys() {
+        // Arrange
+        for (int key = 1; key <= 5; key++) {
+            for (int i = 0; i < key; i++) {
+                heavyHitterService.recordAndCheck("id:" + key);
+            }
+        }
+
+        // Act
+        Map<String, Integer> top = (Map<String, Integer>) heavyHitterService.snapshot().get("topKeys");
+
+        // Assert
+        assertEquals(Set.of("id:3", "id:4", "id:5"), top.keySet());
+        assertEquals("id:5", top.keySet().iterator().next());
+    }
+
+    @Test
+    void syncBlockList_PublishesLocalAndAdoptsSharedBlocks() {
+        // Arrange
+        long until = System.currentTimeMillis() + 60000;
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(zSetOperations.rangeByScoreWithScores(eq("hh:blocked"), anyDouble(), anyDouble()))
+                .thenReturn(Set.of(new DefaultTypedTuple<>("ip:192.0.2.7", (double) until)));
+        for (int i = 0; i < REQUESTS_TO_BLOCK; i++) {
+            heavyHitterService.recordAndCheck("ip:10.0.0.1");
+        }
+
+        // Act
+        heavyHitterService.syncBlockList();
+
+        // Assert
+        verify(zSetOperations).add(eq("hh:blocked"), anySet());
+        assertTrue(heavyHitterService.recordAndCheck("ip:192.0.2.7"));
+    }
+
+    @Test
+    void syncBlockList_RedisUnavailable_KeepsLocalBlocks() {
+        // Arrange
+        when(redisTemplate.opsForZSet()).thenThrow(new RuntimeException("connection refused"));
+        for (int i = 0; i < REQUESTS_TO_BLOCK; i++) {
+            heavyHitterService.recordAndCheck("ip:10.0.0.1");
+        }
+
+        // Act
+        heavyHitterService.syncBlockList();
+
+        // Assert
+        assertTrue(heavyHitterService.recordAndCheck("ip:10.0.0.1"));
+    }
+}
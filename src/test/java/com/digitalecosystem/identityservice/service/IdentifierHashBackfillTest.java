@@ -0,0 +1,150 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.util.CryptoPrimitives;
+import com.digitalecosystem.identityservice.util.HashUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdentifierHashBackfillTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private final HashUtil hashUtil = new HashUtil(new CryptoPrimitives());
+    private IdentifierHashBackfill backfill;
+
+    @BeforeEach
+    void setUp() {
+        backfill = new IdentifierHashBackfill(jdbcTemplate, redisTemplate, hashUtil, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(backfill, "enabled", true);
+        ReflectionTestUtils.setField(backfill, "batchSize", 2);
+        ReflectionTestUtils.setField(backfill, "pauseMs", 0L);
+        ReflectionTestUtils.setField(backfill, "lockTtlMs", 60000L);
+        ReflectionTestUtils.setField(backfill, "legacyFallback", "auto");
+        backfill.registerMetrics();
+
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(valueOperations.setIfAbsent(eq(IdentifierHashBackfill.LOCK_KEY), anyString(), any())).thenReturn(true);
+        String nodeId = (String) ReflectionTestUtils.getField(backfill, "nodeId");
+        lenient().when(valueOperations.get(IdentifierHashBackfill.LOCK_KEY)).thenReturn(nodeId);
+    }
+
+    @Test
+    void run_ResumesFromCursorAndCompletes() throws Exception {
+        // Arrange
+        when(valueOperations.get(IdentifierHashBackfill.CURSOR_KEY)).thenReturn("10");
+        ResultSet row11 = row(11, "a@example.com", null);
+        ResultSet row12 = row(12, null, "+15550100");
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            long after = invocation.getArgument(2);
+            if (after == 10L) {
+                handler.processRow(row11);
+                handler.processRow(row12);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), anyLong(), anyInt());
+
+        // Act
+        backfill.run();
+
+        // Assert
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat((List<Object[]> updates) ->
+                updates.size() == 2
+                        && updates.get(0)[0].equals(hashUtil.sha256("a@example.com"))
+                        && updates.get(1)[0].equals(hashUtil.sha256("+15550100"))));
+        verify(valueOperations).set(IdentifierHashBackfill.CURSOR_KEY, "12");
+        verify(valueOperations).set(IdentifierHashBackfill.COMPLETE_KEY, "1");
+        assertFalse(backfill.legacyFallbackEnabled());
+        verify(redisTemplate).execute(IdentifierHashBackfill.RELEASE_SCRIPT, List.of(IdentifierHashBackfill.LOCK_KEY),
+                ReflectionTestUtils.getField(backfill, "nodeId"));
+    }
+
+    @Test
+    void run_LockLost_ReleasesOnlyIfStillOwned() throws Exception {
+        // Arrange: another node took the lock after this one's lease ran out
+        when(valueOperations.get(IdentifierHashBackfill.LOCK_KEY)).thenReturn("other-node");
+        ResultSet row11 = row(11, "a@example.com", null);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(row11);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), anyLong(), anyInt());
+
+        // Act
+        backfill.run();
+
+        // Assert: the lock is never deleted outright, only through the compare-and-delete script
+        verify(redisTemplate, never()).delete(IdentifierHashBackfill.LOCK_KEY);
+        verify(redisTemplate).execute(IdentifierHashBackfill.RELEASE_SCRIPT, List.of(IdentifierHashBackfill.LOCK_KEY),
+                ReflectionTestUtils.getField(backfill, "nodeId"));
+    }
+
+    @Test
+    void run_RowWithEmailAndPhone_KeepsLegacyFallback() throws Exception {
+        // Arrange
+        ResultSet row11 = row(11, "a@example.com", "+15550100");
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            long after = invocation.getArgument(2);
+            if (after == 0L) {
+                handler.processRow(row11);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), anyLong(), anyInt());
+
+        // Act
+        backfill.run();
+
+        // Assert: the email is hashed, and the phone is still found through the raw query
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat((List<Object[]> updates) ->
+                updates.size() == 1 && updates.get(0)[0].equals(hashUtil.sha256("a@example.com"))));
+        verify(valueOperations).set(IdentifierHashBackfill.DUAL_KEY, "1");
+        verify(valueOperations).set(IdentifierHashBackfill.COMPLETE_KEY, "1");
+        assertTrue(backfill.legacyFallbackEnabled());
+    }
+
+    @Test
+    void run_LockHeldElsewhere_DoesNothing() {
+        // Arrange
+        when(valueOperations.setIfAbsent(eq(IdentifierHashBackfill.LOCK_KEY), anyString(), any())).thenReturn(false);
+
+        // Act
+        backfill.run();
+
+        // Assert
+        verifyNoInteractions(jdbcTemplate);
+        assertTrue(backfill.legacyFallbackEnabled());
+    }
+
+    private ResultSet row(long id, String email, String phone) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("id")).thenReturn(id);
+        when(rs.getString("email")).thenReturn(email);
+        lenient().when(rs.getString("phone_number")).thenReturn(phone);
+        return rs;
+    }
+}
@@ -0,0 +1,137 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.exception.IdentityException;
+import com.digitalecosystem.identityservice.repository.IdentityJdbcRepository;
+import com.digitalecosystem.identityservice.repository.UserContactRepository;
+import com.digitalecosystem.identityservice.util.CryptoPrimitives;
+import com.digitalecosystem.identityservice.util.HashUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdentifierRangeIndexTest {
+
+    private static final String HASH_A = "abcde" + "1".repeat(59);
+    private static final String HASH_B = "abcde" + "2".repeat(59);
+    private static final String HASH_OTHER = "fffff" + "3".repeat(59);
+
+    @Mock
+    private UserContactRepository userContactRepository;
+
+    @Mock
+    private IdentityJdbcRepository identityJdbcRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    private final CryptoPrimitives cryptoPrimitives = new CryptoPrimitives();
+    private IdentifierRangeIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new IdentifierRangeIndex(userContactRepository, identityJdbcRepository, new HashUtil(cryptoPrimitives),
+                cryptoPrimitives, transactionManager, listenerContainer, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "prefixLength", 5);
+        ReflectionTestUtils.setField(index, "includeDids", true);
+        index.init();
+    }
+
+    @Test
+    void lookup_NotBuilt_ReturnsEmpty() {
+        // Act & Assert
+        assertTrue(index.lookup("abcde").isEmpty());
+    }
+
+    @Test
+    void lookup_ReturnsSortedSuffixesForPrefix() {
+        // Arrange
+        when(userContactRepository.streamIdentifiersWithDid()).thenReturn(Stream.of(
+                new Object[]{HASH_B, null, null, "did:key:b"},
+                new Object[]{HASH_OTHER, null, null, "did:key:other"},
+                new Object[]{HASH_A, null, null, "did:key:a"}));
+
+        // Act
+        index.rebuild();
+        IdentifierRangeIndex.Range range = index.lookup("ABCDE").orElseThrow();
+
+        // Assert
+        assertEquals("1".repeat(59) + ":did:key:a\n" + "2".repeat(59) + ":did:key:b\n", range.body());
+        assertEquals("", index.lookup("00000").orElseThrow().body());
+    }
+
+    @Test
+    void onIdentityChange_LinkAndDeleteChangeEtag() {
+        // Arrange
+        when(userContactRepository.streamIdentifiersWithDid()).thenReturn(Stream.<Object[]>of(
+                new Object[]{HASH_A, null, null, "did:key:a"}));
+        index.rebuild();
+        String before = index.lookup("abcde").orElseThrow().etag();
+
+        // Act
+        index.onIdentityChange(new IdentityChangeEvent(
+                IdentityChangeEvent.Type.CONTACT_LINKED, "did:key:b", List.of(HASH_B)));
+        String linked = index.lookup("abcde").orElseThrow().etag();
+        index.onIdentityChange(new IdentityChangeEvent(
+                IdentityChangeEvent.Type.IDENTITY_DELETED, "did:key:b", List.of(HASH_B)));
+
+        // Assert
+        assertNotEquals(before, linked);
+        assertEquals(before, index.lookup("abcde").orElseThrow().etag());
+    }
+
+    @Test
+    void onIdentityChange_DeleteByOtherIdentityIsIgnored() {
+        // Arrange
+        when(userContactRepository.streamIdentifiersWithDid()).thenReturn(Stream.<Object[]>of(
+                new Object[]{HASH_A, null, null, "did:key:a"}));
+        index.rebuild();
+
+        // Act
+        index.onIdentityChange(new IdentityChangeEvent(
+                IdentityChangeEvent.Type.IDENTITY_DELETED, "did:key:other", List.of(HASH_A)));
+
+        // Assert
+        assertTrue(index.lookup("abcde").orElseThrow().body().startsWith("1".repeat(59)));
+    }
+
+    @Test
+    void refresh_AppliesChangesCommittedOnOtherNodes() {
+        // Arrange: HASH_A was deleted and HASH_B linked on another node
+        when(userContactRepository.streamIdentifiersWithDid()).thenReturn(Stream.<Object[]>of(
+                new Object[]{HASH_A, null, null, "did:key:a"}));
+        index.rebuild();
+        when(identityJdbcRepository.findDidsByIdentifierHashes(List.of(HASH_A, HASH_B)))
+                .thenReturn(Map.of(HASH_B, "did:key:b"));
+
+        // Act
+        index.refresh(List.of(HASH_A, HASH_B.toUpperCase()));
+
+        // Assert
+        assertEquals("2".repeat(59) + ":did:key:b\n", index.lookup("abcde").orElseThrow().body());
+    }
+
+    @Test
+    void lookup_InvalidPrefix_Rejected() {
+        // Act & Assert
+        assertThrows(IdentityException.class, () -> index.lookup("abcd"));
+        assertThrows(IdentityException.class, () -> index.lookup("abcdz"));
+    }
+}
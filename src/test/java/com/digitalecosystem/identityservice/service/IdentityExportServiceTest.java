@@ -0,0 +1,109 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdentityExportServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ResultSet resultSet;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private IdentityExportService exportService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        exportService = new IdentityExportService(jdbcTemplate, transactionManager, objectMapper, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(exportService, "fetchSize", 1000);
+
+        when(resultSet.getLong(1)).thenReturn(7L);
+        when(resultSet.getObject(anyInt())).thenAnswer(invocation -> switch (invocation.<Integer>getArgument(0)) {
+            case 2 -> "did:key:z6Mkexample";
+            case 3 -> "publicKeyBase58";
+            case 5 -> Timestamp.valueOf(LocalDateTime.of(2024, 1, 2, 3, 4, 5));
+            case 11 -> "[{\"email\":\"a@example.com\"}]";
+            case 12 -> "[]";
+            default -> null;
+        });
+        lenient().when(resultSet.getString(11)).thenReturn("[{\"email\":\"a@example.com\"}]");
+        lenient().when(resultSet.getString(12)).thenReturn("[]");
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(resultSet);
+            handler.processRow(resultSet);
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void export_Ndjson_OneGzippedLinePerIdentity() throws Exception {
+        // Arrange
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        IdentityExportService.ExportStats stats = exportService.export(out, IdentityExportService.Format.NDJSON);
+
+        // Assert
+        String[] lines = gunzip(out).split("\n");
+        assertEquals(2, stats.rows());
+        assertEquals(2, lines.length);
+        JsonNode row = objectMapper.readTree(lines[0]);
+        assertEquals(7, row.get("id").asLong());
+        assertEquals("did:key:z6Mkexample", row.get("did").asText());
+        assertEquals("2024-01-02T03:04:05", row.get("createdAt").asText());
+        assertEquals("a@example.com", row.get("contacts").get(0).get("email").asText());
+        assertTrue(row.get("publicDid").isNull());
+    }
+
+    @Test
+    void export_Csv_HeaderAndQuotedFields() throws Exception {
+        // Arrange
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        exportService.export(out, IdentityExportService.Format.CSV);
+
+        // Assert
+        String[] lines = gunzip(out).split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("id,did,publicKey"));
+        assertTrue(lines[1].startsWith("7,\"did:key:z6Mkexample\",\"publicKeyBase58\",,\"2024-01-02T03:04:05\""));
+        assertTrue(lines[1].endsWith(",\"[{\"\"email\"\":\"\"a@example.com\"\"}]\",\"[]\""));
+    }
+
+    private static String gunzip(ByteArrayOutputStream out) throws Exception {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.dto.IdentityImportResponse;
+import com.digitalecosystem.identityservice.util.DIDUtil;
+import com.digitalecosystem.identityservice.util.HashUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdentityImportServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private DIDUtil didUtil;
+
+    @Mock
+    private HashUtil hashUtil;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private IdentityImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        importService = new IdentityImportService(jdbcTemplate, transactionManager, didUtil, hashUtil,
+                new ObjectMapper(), eventPublisher);
+        ReflectionTestUtils.setField(importService, "chunkSize", 100);
+        ReflectionTestUtils.setField(importService, "maxReportedRejects", 10);
+        lenient().when(didUtil.isValidDID(anyString())).thenAnswer(invocation ->
+                invocation.<String>getArgument(0).startsWith("did:"));
+        lenient().when(hashUtil.sha256(anyString())).thenReturn("hash");
+    }
+
+    @Test
+    void importNdjson_MergesValidRowsAndReportsRejects() throws Exception {
+        // Arrange
+        String ndjson = """
+                {"did":"did:key:a","publicKey":"pk-a","identifier":"a@example.com"}
+                not json
+                {"did":"invalid","publicKey":"pk"}
+                {"did":"did:key:b","publicKey":"pk-b"}
+                {"did":"did:key:a","publicKey":"pk-a2"}
+                {"did":"did:key:c","publicKey":"pk-c"}
+                """;
+        // did:key:c already exists, so the merge does not return it
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn(Set.of("did:key:a", "did:key:b"));
+
+        // Act
+        IdentityImportResponse response = importService.importNdjson(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+        // Assert
+        assertEquals(6, response.getRowsRead());
+        assertEquals(2, response.getIdentitiesImported());
+        assertEquals(1, response.getContactsLinked());
+        assertEquals(4, response.getRowsRejected());
+        assertEquals(List.of(2L, 3L, 5L, 6L), response.getRejects().stream()
+                .map(IdentityImportResponse.RejectedRow::getLine)
+                .sorted()
+                .toList());
+        verify(jdbcTemplate, times(1)).execute(any(ConnectionCallback.class));
+    }
+
+    @Test
+    void importNdjson_PublishesEventsForImportedRows() throws Exception {
+        // Arrange
+        String ndjson = "{\"did\":\"did:key:a\",\"publicKey\":\"pk-a\",\"identifier\":\"a@example.com\"}\n";
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn(Set.of("did:key:a"));
+
+        // Act
+        importService.importNdjson(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+        // Assert
+        verify(eventPublisher).publishEvent(new IdentityChangeEvent(
+                IdentityChangeEvent.Type.IDENTITY_CREATED, "did:key:a", List.of()));
+        verify(eventPublisher).publishEvent(new IdentityChangeEvent(
+                IdentityChangeEvent.Type.CONTACT_LINKED, "did:key:a", List.of("hash")));
+    }
+}
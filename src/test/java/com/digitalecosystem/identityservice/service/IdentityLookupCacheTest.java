@@ -0,0 +1,138 @@
+package com.digitalecosystem.identityservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdentityLookupCacheTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private IdentityLookupCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new IdentityLookupCache(redisTemplate, listenerContainer, meterRegistry);
+        ReflectionTestUtils.setField(cache, "localMaxSize", 1000L);
+        ReflectionTestUtils.setField(cache, "positiveTtlSeconds", 600L);
+        ReflectionTestUtils.setField(cache, "negativeTtlSeconds", 30L);
+        ReflectionTestUtils.setField(cache, "redisTtlSeconds", 3600L);
+        ReflectionTestUtils.setField(cache, "invalidationGuardMs", 10000L);
+        cache.init();
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    @Test
+    void get_CachesNotFoundWithShortTtl() {
+        // Arrange
+        AtomicInteger loads = new AtomicInteger();
+
+        // Act
+        Optional<String> first = cache.get("hash", hash -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+        Optional<String> second = cache.get("hash", hash -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+
+        // Assert
+        assertTrue(first.isEmpty());
+        assertTrue(second.isEmpty());
+        assertEquals(1, loads.get());
+        verify(valueOperations).setIfAbsent("idc:hash", "", Duration.ofSeconds(30));
+    }
+
+    @Test
+    void get_SharedHitSkipsLoader() {
+        // Arrange
+        when(valueOperations.get("idc:hash")).thenReturn("did:key:z6Mkexample");
+
+        // Act
+        Optional<String> did = cache.get("hash", hash -> fail("database should not be queried"));
+
+        // Assert
+        assertEquals(Optional.of("did:key:z6Mkexample"), did);
+    }
+
+    @Test
+    void onIdentityChange_DropsLocalAndSharedEntries() {
+        // Arrange
+        cache.get("hash", hash -> Optional.empty());
+
+        // Act
+        cache.onIdentityChange(new IdentityChangeEvent(
+                IdentityChangeEvent.Type.CONTACT_LINKED, "did:key:z6Mkexample", List.of("hash")));
+        Optional<String> did = cache.get("hash", hash -> Optional.of("did:key:z6Mkexample"));
+
+        // Assert
+        assertEquals(Optional.of("did:key:z6Mkexample"), did);
+        verify(valueOperations).set("idc:hash", "!invalidated", Duration.ofMillis(10000));
+        verify(redisTemplate).convertAndSend(IdentityLookupCache.INVALIDATION_CHANNEL, "hash");
+    }
+
+    @Test
+    void get_LoadSlowerThanInvalidationGuard_SkipsWriteBack() {
+        // Arrange: any marker set while this load ran may already have expired
+        ReflectionTestUtils.setField(cache, "invalidationGuardMs", 0L);
+
+        // Act
+        Optional<String> did = cache.get("hash", hash -> Optional.of("did:key:z6Mkexample"));
+
+        // Assert
+        assertEquals(Optional.of("did:key:z6Mkexample"), did);
+        verify(valueOperations, never()).setIfAbsent(anyString(), anyString(), any(Duration.class));
+    }
+
+    @Test
+    void get_InvalidatedMarker_TreatedAsMiss() {
+        // Arrange
+        when(valueOperations.get("idc:hash")).thenReturn("!invalidated");
+
+        // Act
+        Optional<String> did = cache.get("hash", hash -> Optional.empty());
+
+        // Assert: a miss, and the marker is only filled in once it has expired
+        assertTrue(did.isEmpty());
+        verify(valueOperations, never()).set(eq("idc:hash"), eq(""), any(Duration.class));
+        verify(valueOperations).setIfAbsent("idc:hash", "", Duration.ofSeconds(30));
+    }
+
+    @Test
+    void get_RedisDown_FallsBackToLoader() {
+        // Arrange
+        when(valueOperations.get(anyString())).thenThrow(new RuntimeException("connection refused"));
+
+        // Act
+        Optional<String> did = cache.get("hash", hash -> Optional.of("did:key:z6Mkexample"));
+
+        // Assert
+        assertEquals(Optional.of("did:key:z6Mkexample"), did);
+    }
+}
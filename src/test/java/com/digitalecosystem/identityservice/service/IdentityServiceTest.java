@@ -2,9 +2,13 @@ package com.digitalecosystem.identityservice.service;
 
 import com.digitalecosystem.identityservice.dto.DIDCreateRequest;
 import com.digitalecosystem.identityservice.dto.DIDCreateResponse;
+import com.digitalecosystem.identityservice.dto.IdentityCheckBatchRequest;
 import com.digitalecosystem.identityservice.dto.IdentityCheckResponse;
+import com.digitalecosystem.identityservice.entity.UserContact;
 import com.digitalecosystem.identityservice.entity.UserIdentity;
 import com.digitalecosystem.identityservice.exception.IdentityException;
+import com.digitalecosystem.identityservice.exception.IdentityExistsException;
+import com.digitalecosystem.identityservice.repository.IdentityJdbcRepository;
 import com.digitalecosystem.identityservice.repository.UserContactRepository;
 import com.digitalecosystem.identityservice.repository.UserIdentityRepository;
 import com.digitalecosystem.identityservice.util.DIDUtil;
@@ -14,12 +18,19 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,18 +42,39 @@ class IdentityServiceTest {
     @Mock
     private UserContactRepository userContactRepository;
 
+    @Mock
+    private IdentityJdbcRepository identityJdbcRepository;
+
+    @Mock
+    private OTPService otpService;
+
     @Mock
     private DIDUtil didUtil;
 
     @Mock
     private HashUtil hashUtil;
 
+    @Mock
+    private IdentifierBloomFilter identifierBloomFilter;
+
+    @Mock
+    private IdentityLookupCache identityLookupCache;
+
+    @Mock
+    private IdentifierHashBackfill identifierHashBackfill;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private IdentityService identityService;
 
     @Test
     void checkIdentity_NotExists() {
         // Arrange
+        when(identifierBloomFilter.mightContain(any())).thenReturn(true);
+        when(identifierHashBackfill.legacyFallbackEnabled()).thenReturn(true);
+        readThroughCache();
         when(userContactRepository.findByEmailOrPhoneNumber(anyString(), anyString()))
                 .thenReturn(Optional.empty());
 
@@ -55,50 +87,215 @@ class IdentityServiceTest {
     }
 
     @Test
-    void createDID_Success() {
+    void checkIdentity_BackfillComplete_SkipsRawFallback() {
+        // Arrange
+        when(identifierBloomFilter.mightContain(any())).thenReturn(true);
+        when(identifierHashBackfill.legacyFallbackEnabled()).thenReturn(false);
+        readThroughCache();
+
+        // Act
+        IdentityCheckResponse response = identityService.checkIdentity("test@example.com");
+
+        // Assert
+        assertFalse(response.getExists());
+        verify(userContactRepository).findByIdentifierHash(any());
+        verify(userContactRepository, never()).findByEmailOrPhoneNumber(anyString(), anyString());
+        verify(userContactRepository, never()).save(any());
+    }
+
+    @Test
+    void checkIdentity_CacheHit_SkipsDatabase() {
+        // Arrange
+        when(hashUtil.sha256("test@example.com")).thenReturn("hash");
+        when(identifierBloomFilter.mightContain("hash")).thenReturn(true);
+        when(identityLookupCache.get(eq("hash"), any())).thenReturn(Optional.of("did:key:z6Mkexample"));
+
+        // Act
+        IdentityCheckResponse response = identityService.checkIdentity("test@example.com");
+
+        // Assert
+        assertTrue(response.getExists());
+        assertEquals("did:key:z6Mkexample", response.getDid());
+        verifyNoInteractions(userContactRepository);
+    }
+
+    @Test
+    void checkIdentity_BloomNegative_SkipsCacheAndDatabase() {
+        // Arrange
+        when(hashUtil.sha256("new@example.com")).thenReturn("hash");
+        when(identifierBloomFilter.mightContain("hash")).thenReturn(false);
+
+        // Act
+        IdentityCheckResponse response = identityService.checkIdentity("new@example.com");
+
+        // Assert
+        assertFalse(response.getExists());
+        verifyNoInteractions(identityLookupCache, userContactRepository);
+    }
+
+    @Test
+    void isRegistered_DoesNotTrustBloomNegative() {
+        // Arrange: linked on another node, not yet broadcast to this node's filter
+        when(hashUtil.sha256("linked@example.com")).thenReturn("hash");
+        lenient().when(identifierBloomFilter.mightContain("hash")).thenReturn(false);
+        when(identityLookupCache.get(eq("hash"), any())).thenReturn(Optional.of("did:key:z6Mkexample"));
+
+        // Act
+        boolean registered = identityService.isRegistered("linked@example.com");
+
+        // Assert
+        assertTrue(registered);
+        verify(identifierBloomFilter, never()).mightContain(any());
+    }
+
+    @Test
+    void checkIdentities_OneQuery_ResultsInRequestOrder() {
+        // Arrange
+        ReflectionTestUtils.setField(identityService, "batchMaxSize", 100);
+        IdentityCheckBatchRequest request = new IdentityCheckBatchRequest();
+        request.setIdentifiers(List.of("a@example.com", "b@example.com", "c@example.com"));
+
+        when(hashUtil.sha256("a@example.com")).thenReturn("hash-a");
+        when(hashUtil.sha256("b@example.com")).thenReturn("hash-b");
+        when(hashUtil.sha256("c@example.com")).thenReturn("hash-c");
+        when(identifierBloomFilter.mightContain(anyString())).thenAnswer(invocation -> !"hash-b".equals(invocation.getArgument(0)));
+        when(identifierHashBackfill.legacyFallbackEnabled()).thenReturn(false);
+        when(identityJdbcRepository.findDidsByIdentifierHashes(Set.of("hash-a", "hash-c")))
+                .thenReturn(Map.of("hash-c", "did:key:z6Mkexample"));
+
+        // Act
+        List<IdentityCheckResponse> results = identityService.checkIdentities(request);
+
+        // Assert
+        assertEquals(3, results.size());
+        assertFalse(results.get(0).getExists());
+        assertFalse(results.get(1).getExists());
+        assertTrue(results.get(2).getExists());
+        assertEquals("did:key:z6Mkexample", results.get(2).getDid());
+        verify(identityJdbcRepository, times(1)).findDidsByIdentifierHashes(any());
+        verifyNoInteractions(userContactRepository, identityLookupCache);
+    }
+
+    @Test
+    void checkIdentities_PrehashedInput_SkipsHashing() {
+        // Arrange
+        ReflectionTestUtils.setField(identityService, "batchMaxSize", 100);
+        String hash = "A".repeat(64);
+        IdentityCheckBatchRequest request = new IdentityCheckBatchRequest();
+        request.setIdentifierHashes(List.of(hash));
+
+        when(identifierBloomFilter.mightContain("a".repeat(64))).thenReturn(true);
+        when(identityJdbcRepository.findDidsByIdentifierHashes(Set.of("a".repeat(64)))).thenReturn(Map.of());
+
+        // Act
+        List<IdentityCheckResponse> results = identityService.checkIdentities(request);
+
+        // Assert
+        assertFalse(results.get(0).getExists());
+        verifyNoInteractions(hashUtil);
+        verify(identityJdbcRepository, never()).findDidsByRawIdentifiers(any());
+    }
+
+    @Test
+    void checkIdentities_TooMany_Rejected() {
+        // Arrange
+        ReflectionTestUtils.setField(identityService, "batchMaxSize", 2);
+        IdentityCheckBatchRequest request = new IdentityCheckBatchRequest();
+        request.setIdentifiers(List.of("a@example.com", "b@example.com", "c@example.com"));
+
+        // Act & Assert
+        assertThrows(IdentityException.class, () -> identityService.checkIdentities(request));
+        verifyNoInteractions(identityJdbcRepository);
+    }
+
+    @Test
+    void linkContact_PublishesChangeEvent() {
+        // Arrange
+        UserIdentity identity = UserIdentity.builder().did("did:key:z6Mkexample").build();
+        when(userIdentityRepository.findByDid("did:key:z6Mkexample")).thenReturn(Optional.of(identity));
+        when(hashUtil.sha256("test@example.com")).thenReturn("hash");
+
+        // Act
+        identityService.linkContact("did:key:z6Mkexample", "test@example.com", true);
+
+        // Assert
+        verify(userContactRepository).save(any(UserContact.class));
+        verify(eventPublisher).publishEvent(new IdentityChangeEvent(
+                IdentityChangeEvent.Type.CONTACT_LINKED, "did:key:z6Mkexample", List.of("hash")));
+    }
+
+    @Test
+    void registerDID_InvalidFormat() {
+        // Arrange
+        DIDCreateRequest request = new DIDCreateRequest();
+        request.setDid("invalid-did");
+
+        when(didUtil.isValidDID(anyString())).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(IdentityException.class, () -> identityService.registerDID(request));
+        verifyNoInteractions(identityJdbcRepository, otpService);
+    }
+
+    @Test
+    void registerDID_WithVerifiedIdentifier_InsertsIdentityAndContact() {
         // Arrange
         DIDCreateRequest request = new DIDCreateRequest();
         request.setDid("did:key:z6Mkexample");
         request.setPublicKey("publicKeyBase58");
-        request.setOfflineCreated(false);
+        request.setVerifiedIdentifier("test@example.com");
 
         when(didUtil.isValidDID(anyString())).thenReturn(true);
-        when(userIdentityRepository.existsByDid(anyString())).thenReturn(false);
-        when(userIdentityRepository.save(any(UserIdentity.class)))
-                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(otpService.consumeVerifiedIdentifier("test@example.com")).thenReturn(true);
+        when(hashUtil.sha256("test@example.com")).thenReturn("hash");
+        when(identityJdbcRepository.insertIdentityWithContact(eq("did:key:z6Mkexample"), eq("publicKeyBase58"),
+                eq("synced"), eq("test@example.com"), isNull(), eq("hash"), any())).thenReturn(Optional.of(1L));
 
         // Act
-        DIDCreateResponse response = identityService.createDID(request);
+        DIDCreateResponse response = identityService.registerDID(request);
 
         // Assert
-        assertNotNull(response);
         assertEquals("did:key:z6Mkexample", response.getDid());
         assertEquals("registered", response.getStatus());
-        verify(userIdentityRepository, times(1)).save(any(UserIdentity.class));
+        verify(eventPublisher).publishEvent(new IdentityChangeEvent(
+                IdentityChangeEvent.Type.CONTACT_LINKED, "did:key:z6Mkexample", List.of("hash")));
+        verifyNoInteractions(userIdentityRepository, userContactRepository);
     }
 
     @Test
-    void createDID_InvalidFormat() {
+    void registerDID_NotVerified_DoesNotInsert() {
         // Arrange
         DIDCreateRequest request = new DIDCreateRequest();
-        request.setDid("invalid-did");
+        request.setDid("did:key:z6Mkexample");
+        request.setVerifiedIdentifier("test@example.com");
 
-        when(didUtil.isValidDID(anyString())).thenReturn(false);
+        when(didUtil.isValidDID(anyString())).thenReturn(true);
+        when(otpService.consumeVerifiedIdentifier("test@example.com")).thenReturn(false);
 
         // Act & Assert
-        assertThrows(IdentityException.class, () -> identityService.createDID(request));
+        assertThrows(IdentityException.class, () -> identityService.registerDID(request));
+        verifyNoInteractions(identityJdbcRepository);
     }
 
     @Test
-    void createDID_AlreadyExists() {
+    void registerDID_Conflict_ThrowsIdentityExists() {
         // Arrange
         DIDCreateRequest request = new DIDCreateRequest();
         request.setDid("did:key:z6Mkexample");
+        request.setPublicKey("publicKeyBase58");
 
         when(didUtil.isValidDID(anyString())).thenReturn(true);
-        when(userIdentityRepository.existsByDid(anyString())).thenReturn(true);
+        when(identityJdbcRepository.insertIdentity(eq("did:key:z6Mkexample"), eq("publicKeyBase58"), eq("synced"), any()))
+                .thenReturn(Optional.empty());
 
         // Act & Assert
-        assertThrows(IdentityException.class, () -> identityService.createDID(request));
+        assertThrows(IdentityExistsException.class, () -> identityService.registerDID(request));
+        verifyNoInteractions(eventPublisher, otpService);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readThroughCache() {
+        when(identityLookupCache.get(any(), any())).thenAnswer(invocation ->
+                invocation.<Function<String, Optional<String>>>getArgument(1).apply(invocation.getArgument(0)));
     }
-}
\ No newline at end of file
+}
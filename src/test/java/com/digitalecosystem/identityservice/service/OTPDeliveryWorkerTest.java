@@ -0,0 +1,85 @@
+package com.digitalecosystem.identityservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.lettuce.core.RedisBusyException;
+import io.lettuce.core.RedisCommandExecutionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OTPDeliveryWorkerTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private SMSService smsService;
+
+    private OTPDeliveryWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        worker = new OTPDeliveryWorker(redisTemplate, emailService, smsService, new SimpleMeterRegistry());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void ensureGroup_CreatesGroupOnce() {
+        // Arrange
+        when(redisTemplate.execute(any(RedisCallback.class))).thenReturn("OK");
+
+        // Act
+        worker.ensureGroup();
+        worker.ensureGroup();
+
+        // Assert
+        assertTrue(worker.isGroupReady());
+        verify(redisTemplate, times(1)).execute(any(RedisCallback.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void ensureGroup_BusyGroup_TreatedAsReady() {
+        // Arrange
+        when(redisTemplate.execute(any(RedisCallback.class))).thenThrow(new RedisSystemException("Error in execution",
+                new RedisBusyException("BUSYGROUP Consumer Group name already exists")));
+
+        // Act
+        worker.ensureGroup();
+
+        // Assert
+        assertTrue(worker.isGroupReady());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void ensureGroup_OtherError_RetriedOnNextPoll() {
+        // Arrange
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenThrow(new RedisSystemException("Error in execution",
+                        new RedisCommandExecutionException("LOADING Redis is loading the dataset in memory")))
+                .thenReturn("OK");
+
+        // Act
+        assertThrows(RedisSystemException.class, worker::ensureGroup);
+        boolean readyAfterFailure = worker.isGroupReady();
+        worker.ensureGroup();
+
+        // Assert
+        assertFalse(readyAfterFailure);
+        assertTrue(worker.isGroupReady());
+    }
+}
@@ -0,0 +1,141 @@
+package com.digitalecosystem.identityservice.service;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import redis.embedded.RedisServer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the legacy multi-call OTP issuance against the server-side script
+ * on an embedded Redis. Run with: mvn test -Dtest=OTPScriptLatencyTest -Dbenchmarks=true
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class OTPScriptLatencyTest {
+
+    private static final int PORT = 6391;
+    private static final int ITERATIONS = 5_000;
+    private static final String EXPIRY = "180";
+    private static final String EXPIRY_MS = "180000";
+    private static final String MAX_ATTEMPTS = "3";
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static RedisTemplate<String, String> redisTemplate;
+
+    @BeforeAll
+    static void startRedis() {
+        redisServer = new RedisServer(PORT);
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", PORT));
+        connectionFactory.afterPropertiesSet();
+
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(new StringRedisSerializer());
+        redisTemplate.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void flush() {
+        redisTemplate.getConnectionFactory().getConnection().serverCommands().flushAll();
+    }
+
+    @Test
+    void compareIssueLatency() {
+        // Warm up both paths so the script is cached server-side
+        for (int i = 0; i < 500; i++) {
+            legacyIssue("warmup-legacy-" + i);
+            scriptIssue("warmup-script-" + i);
+        }
+
+        long[] legacy = new long[ITERATIONS];
+        long[] script = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            legacyIssue("legacy-" + i + "@example.com");
+            legacy[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            scriptIssue("script-" + i + "@example.com");
+            script[i] = System.nanoTime() - start;
+        }
+
+        report("multi-call", legacy);
+        report("script", script);
+    }
+
+    @Test
+    void scriptEnforcesMaxAttemptsUnderConcurrency() throws Exception {
+        String identifier = "race@example.com";
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                results.add(executor.submit(() -> scriptIssue(identifier)));
+            }
+
+            int accepted = 0;
+            for (Future<Long> result : results) {
+                if (result.get(10, TimeUnit.SECONDS) > 0) {
+                    accepted++;
+                }
+            }
+            assertEquals(Integer.parseInt(MAX_ATTEMPTS), accepted);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Mirrors the original OTPService.generateOTP Redis traffic: GET, SET, INCR, EXPIRE
+     */
+    private void legacyIssue(String identifier) {
+        String attemptKey = "otp_attempt:" + identifier;
+        String attempts = redisTemplate.opsForValue().get(attemptKey);
+        if (attempts != null && Integer.parseInt(attempts) >= Integer.parseInt(MAX_ATTEMPTS)) {
+            return;
+        }
+        redisTemplate.opsForValue().set("otp:" + identifier, "hash", Long.parseLong(EXPIRY), TimeUnit.SECONDS);
+        redisTemplate.opsForValue().increment(attemptKey);
+        redisTemplate.expire(attemptKey, Long.parseLong(EXPIRY), TimeUnit.SECONDS);
+    }
+
+    private Long scriptIssue(String identifier) {
+        return redisTemplate.execute(OTPService.ISSUE_SCRIPT,
+                List.of("otps:" + identifier),
+                "hash", EXPIRY_MS, MAX_ATTEMPTS);
+    }
+
+    private static void report(String label, long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-10s p50=%6.1fus p99=%6.1fus max=%7.1fus%n", label,
+                sorted[sorted.length / 2] / 1_000.0,
+                sorted[(int) (sorted.length * 0.99)] / 1_000.0,
+                sorted[sorted.length - 1] / 1_000.0);
+    }
+}
@@ -1,17 +1,23 @@
 package com.digitalecosystem.identityservice.service;
 
 import com.digitalecosystem.identityservice.exception.OTPException;
+import com.digitalecosystem.identityservice.util.CryptoPrimitives;
 import com.digitalecosystem.identityservice.util.HashUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -20,28 +26,32 @@ import static org.mockito.Mockito.*;
 class OTPServiceTest {
 
     @Mock
-    private RedisTemplate<String, String> redisTemplate;
+    private RedisTemplate<byte[], String> sessionRedisTemplate;
 
     @Mock
-    private ValueOperations<String, String> valueOperations;
+    private HashOperations<byte[], Object, Object> hashOperations;
 
     @Mock
     private HashUtil hashUtil;
 
-    @Mock
-    private EmailService emailService;
+    @Spy
+    private CryptoPrimitives cryptoPrimitives = new CryptoPrimitives();
 
     @Mock
-    private SMSService smsService;
+    private OTPDeliveryQueue deliveryQueue;
 
     @InjectMocks
     private OTPService otpService;
 
+    private static final byte[] DIGEST = new byte[32];
+    private static final byte[] SESSION_KEY = Arrays.copyOf("otps:".getBytes(StandardCharsets.US_ASCII), 21);
+
     @BeforeEach
     void setUp() {
         ReflectionTestUtils.setField(otpService, "otpExpirySeconds", 180);
         ReflectionTestUtils.setField(otpService, "maxAttempts", 3);
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        ReflectionTestUtils.setField(otpService, "verifiedTtlSeconds", 1800);
+        lenient().when(hashUtil.sha256Bytes(anyString())).thenReturn(DIGEST);
     }
 
     @Test
@@ -50,17 +60,27 @@ class OTPServiceTest {
         String identifier = "test@example.com";
         String channel = "email";
 
-        when(valueOperations.get(anyString())).thenReturn(null);
         when(hashUtil.sha256(anyString())).thenReturn("hashed_otp");
-        doNothing().when(emailService).sendOTP(anyString(), anyString());
+        when(sessionRedisTemplate.execute(eq(OTPService.ISSUE_SCRIPT),
+                argThat((List<byte[]> keys) -> Arrays.equals(SESSION_KEY, keys.get(0))),
+                eq("hashed_otp"), eq("180000"), eq("3")))
+                .thenReturn(1L);
 
         // Act
         String result = otpService.generateOTP(identifier, channel);
 
         // Assert
         assertNotNull(result);
-        assertTrue(result.startsWith("otp:"));
-        verify(emailService, times(1)).sendOTP(eq(identifier), anyString());
+        assertEquals("otp:" + "00".repeat(16), result);
+        verify(deliveryQueue, times(1)).submit(eq("email"), eq(identifier), anyString());
+    }
+
+    @Test
+    void generateOTP_InvalidChannel() {
+        // Act & Assert
+        assertThrows(OTPException.class, () ->
+                otpService.generateOTP("test@example.com", "fax"));
+        verifyNoInteractions(sessionRedisTemplate, deliveryQueue);
     }
 
     @Test
@@ -69,7 +89,9 @@ class OTPServiceTest {
         String identifier = "test@example.com";
         String channel = "email";
 
-        when(valueOperations.get("otp_attempt:" + identifier)).thenReturn("3");
+        when(hashUtil.sha256(anyString())).thenReturn("hashed_otp");
+        when(sessionRedisTemplate.execute(eq(OTPService.ISSUE_SCRIPT), anyList(), any(), any(), any()))
+                .thenReturn(-1L);
 
         // Act & Assert
         assertThrows(OTPException.class, () ->
@@ -83,15 +105,16 @@ class OTPServiceTest {
         String otp = "123456";
         String hashedOTP = "hashed_otp";
 
-        when(valueOperations.get("otp:" + identifier)).thenReturn(hashedOTP);
         when(hashUtil.sha256(otp)).thenReturn(hashedOTP);
+        when(sessionRedisTemplate.execute(eq(OTPService.VALIDATE_SCRIPT), anyList(), eq(hashedOTP), eq("0")))
+                .thenReturn(1L);
 
         // Act
         boolean result = otpService.validateOTP(identifier, otp);
 
         // Assert
         assertTrue(result);
-        verify(redisTemplate, times(1)).delete("otp:" + identifier);
+        verifyNoInteractions(deliveryQueue);
     }
 
     @Test
@@ -100,8 +123,9 @@ class OTPServiceTest {
         String identifier = "test@example.com";
         String otp = "123456";
 
-        when(valueOperations.get("otp:" + identifier)).thenReturn("wrong_hash");
         when(hashUtil.sha256(otp)).thenReturn("correct_hash");
+        when(sessionRedisTemplate.execute(eq(OTPService.VALIDATE_SCRIPT), anyList(), eq("correct_hash"), any()))
+                .thenReturn(0L);
 
         // Act
         boolean result = otpService.validateOTP(identifier, otp);
@@ -109,4 +133,73 @@ class OTPServiceTest {
         // Assert
         assertFalse(result);
     }
-}
\ No newline at end of file
+
+    @Test
+    void validateOTP_Expired() {
+        // Arrange
+        String identifier = "test@example.com";
+        String otp = "123456";
+
+        when(hashUtil.sha256(otp)).thenReturn("hashed_otp");
+        when(sessionRedisTemplate.execute(eq(OTPService.VALIDATE_SCRIPT), anyList(), any(), any()))
+                .thenReturn(-1L);
+
+        // Act & Assert
+        assertThrows(OTPException.class, () ->
+                otpService.validateOTP(identifier, otp));
+    }
+
+    @Test
+    void verifyOTP_MarksVerifiedInSameCall() {
+        // Arrange
+        when(hashUtil.sha256("123456")).thenReturn("hashed_otp");
+        when(sessionRedisTemplate.execute(eq(OTPService.VALIDATE_SCRIPT), anyList(), eq("hashed_otp"), eq("1800000")))
+                .thenReturn(1L);
+
+        // Act
+        boolean result = otpService.verifyOTP("test@example.com", "123456");
+
+        // Assert
+        assertTrue(result);
+        verify(sessionRedisTemplate, never()).opsForHash();
+    }
+
+    @Test
+    void isIdentifierVerified_ReadsSessionFlag() {
+        // Arrange
+        when(sessionRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.get(argThat((byte[] key) -> Arrays.equals(SESSION_KEY, key)), eq(OTPService.FIELD_VERIFIED)))
+                .thenReturn("1");
+
+        // Act & Assert
+        assertTrue(otpService.isIdentifierVerified("test@example.com"));
+    }
+
+    @Test
+    void consumeVerifiedIdentifier_OnlyFirstCallerSucceeds() {
+        // Arrange
+        when(sessionRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.delete(argThat((byte[] key) -> Arrays.equals(SESSION_KEY, key)), eq(OTPService.FIELD_VERIFIED)))
+                .thenReturn(1L, 0L);
+
+        // Act & Assert
+        assertTrue(otpService.consumeVerifiedIdentifier("test@example.com"));
+        assertFalse(otpService.consumeVerifiedIdentifier("test@example.com"));
+    }
+
+    @Test
+    void sessionKey_IsFixedLengthDigest() {
+        // Arrange
+        HashUtil realHashUtil = new HashUtil(cryptoPrimitives);
+        OTPService service = new OTPService(sessionRedisTemplate, realHashUtil, cryptoPrimitives, deliveryQueue);
+
+        // Act
+        byte[] shortKey = service.sessionKey("a@b.co");
+        byte[] longKey = service.sessionKey("a.very.long.identifier.for.someone@subdomain.example-company.com");
+
+        // Assert
+        assertEquals(21, shortKey.length);
+        assertEquals(21, longKey.length);
+        assertFalse(Arrays.equals(shortKey, longKey));
+    }
+}
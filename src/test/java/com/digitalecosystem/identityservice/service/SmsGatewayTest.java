@@ -0,0 +1,74 @@
+package com.digitalecosystem.identityservice.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmsGatewayTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withUserConfiguration(StubSmsGateway.class, TwilioSmsGateway.class);
+
+    @Test
+    void sendBatch_Default_SendsEachAndKeepsFailuresPerMessage() {
+        // Arrange: a provider without a bulk API that rejects one number
+        SmsGateway gateway = new SmsGateway() {
+            @Override
+            public String send(String to, String body) {
+                if (to.endsWith("0")) {
+                    throw new IllegalArgumentException("Invalid number: " + to);
+                }
+                return "id-" + to;
+            }
+
+            @Override
+            public String name() {
+                return "test";
+            }
+        };
+
+        // Act
+        List<SmsGateway.Result> results = gateway.sendBatch(List.of(
+                new SmsGateway.Message("+15550101", "a"),
+                new SmsGateway.Message("+15550100", "b"),
+                new SmsGateway.Message("+15550102", "c")));
+
+        // Assert
+        assertEquals(3, results.size());
+        assertEquals("id-+15550101", results.get(0).messageId());
+        assertFalse(results.get(1).isSuccess());
+        assertEquals("Invalid number: +15550100", results.get(1).error());
+        assertEquals("id-+15550102", results.get(2).messageId());
+    }
+
+    @Test
+    void provider_Stub_OnlyStubGateway() {
+        contextRunner.withPropertyValues("app.sms.provider=stub").run(context -> {
+            Map<String, SmsGateway> gateways = context.getBeansOfType(SmsGateway.class);
+            assertEquals(1, gateways.size());
+            assertInstanceOf(StubSmsGateway.class, gateways.values().iterator().next());
+        });
+    }
+
+    @Test
+    void provider_Twilio_OnlyTwilioGateway() {
+        contextRunner.withPropertyValues("app.sms.provider=twilio").run(context -> {
+            Map<String, SmsGateway> gateways = context.getBeansOfType(SmsGateway.class);
+            assertEquals(1, gateways.size());
+            assertInstanceOf(TwilioSmsGateway.class, gateways.values().iterator().next());
+        });
+    }
+
+    @Test
+    void provider_Unset_DefaultsToTwilio() {
+        contextRunner.run(context -> {
+            Map<String, SmsGateway> gateways = context.getBeansOfType(SmsGateway.class);
+            assertEquals(1, gateways.size());
+            assertInstanceOf(TwilioSmsGateway.class, gateways.values().iterator().next());
+        });
+    }
+}
@@ -0,0 +1,68 @@
+package com.digitalecosystem.identityservice.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StubSmsGatewayTest {
+
+    private final StubSmsGateway gateway = new StubSmsGateway();
+
+    @Test
+    void send_ReturnsSequentialIds() {
+        // Act
+        String first = gateway.send("+15550100", "Your OTP code is: 123456");
+        String second = gateway.send("+15550101", "Your OTP code is: 654321");
+
+        // Assert
+        assertEquals("stub-1", first);
+        assertEquals("stub-2", second);
+        assertEquals(2, gateway.sentCount());
+    }
+
+    @Test
+    void sendBatch_OneResultPerMessageInOrder() {
+        // Act
+        List<SmsGateway.Result> results = gateway.sendBatch(List.of(
+                new SmsGateway.Message("+15550100", "a"),
+                new SmsGateway.Message("+15550101", "b"),
+                new SmsGateway.Message("+15550102", "c")));
+
+        // Assert
+        assertEquals(List.of("+15550100", "+15550101", "+15550102"),
+                results.stream().map(SmsGateway.Result::to).toList());
+        assertEquals(List.of("stub-1", "stub-2", "stub-3"),
+                results.stream().map(SmsGateway.Result::messageId).toList());
+        assertTrue(results.stream().allMatch(SmsGateway.Result::isSuccess));
+        assertEquals(3, gateway.sentCount());
+    }
+
+    @Test
+    void sendBatch_SimulatesOneRoundTripForTheBatch() {
+        // Arrange
+        ReflectionTestUtils.setField(gateway, "latencyMs", 100L);
+        List<SmsGateway.Message> messages = List.of(
+                new SmsGateway.Message("+15550100", "a"),
+                new SmsGateway.Message("+15550101", "b"),
+                new SmsGateway.Message("+15550102", "c"),
+                new SmsGateway.Message("+15550103", "d"),
+                new SmsGateway.Message("+15550104", "e"));
+
+        // Act
+        long start = System.nanoTime();
+        gateway.sendBatch(messages);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // Assert: a round trip per message would take at least 500 ms
+        assertTrue(elapsedMs >= 100, "elapsed " + elapsedMs + " ms");
+        assertTrue(elapsedMs < 500, "elapsed " + elapsedMs + " ms");
+    }
+
+    @Test
+    void name_IsStub() {
+        assertEquals("stub", gateway.name());
+    }
+}
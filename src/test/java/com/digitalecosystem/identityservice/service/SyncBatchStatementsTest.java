@@ -0,0 +1,103 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.dto.SyncBatchRequest;
+import com.digitalecosystem.identityservice.dto.SyncBatchResponse;
+import com.digitalecosystem.identityservice.repository.IdentityJdbcRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Counts JDBC statements and wall time for a 1,000-operation sync batch on the in-memory
+ * database, using Hibernate statistics. Run with:
+ * mvn test -Dtest=SyncBatchStatementsTest -Dbenchmarks=true
+ */
+// Single execution, so the whole batch is one set-based transaction
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "app.sync.execution=single"
+})
+@ActiveProfiles("test")
+@Import({SyncService.class, IdentityJdbcRepository.class})
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class SyncBatchStatementsTest {
+
+    private static final int OPERATIONS = 1_000;
+
+    @Autowired
+    private SyncService syncService;
+
+    @MockBean
+    private SyncOperationDedupe operationDedupe;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void processBatchSync_StatementsPerThousandOperations() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // Creates: one DID lookup, then inserts batched with pooled sequences
+        Result creates = run(statistics, batch("create"));
+        // Updates: one DID lookup and one bulk UPDATE, which bypasses the entity statistics
+        Result updates = run(statistics, batch("update"));
+
+        System.out.printf("%d creates: %d statements prepared, %d inserts, %d ms%n",
+                OPERATIONS, creates.statements(), creates.rows(), creates.millis());
+        System.out.printf("%d updates: %d statements prepared, %d ms%n",
+                OPERATIONS, updates.statements(), updates.millis());
+
+        assertEquals(OPERATIONS, creates.rows());
+        // About 20 sequence fetches + 20 insert batches of 50, against 1,000 single-row inserts before
+        assertTrue(creates.statements() < OPERATIONS / 10, "inserts were not batched");
+        // Against one SELECT and one UPDATE per operation before
+        assertTrue(updates.statements() <= 2, "updates were not applied in bulk");
+    }
+
+    private Result run(Statistics statistics, SyncBatchRequest request) {
+        statistics.clear();
+        long start = System.nanoTime();
+        SyncBatchResponse response = syncService.processBatchSync(request);
+        entityManager.flush();
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        entityManager.clear();
+
+        assertEquals(OPERATIONS, response.getSynced());
+        long rows = statistics.getEntityInsertCount() + statistics.getEntityUpdateCount();
+        return new Result(statistics.getPrepareStatementCount(), rows, millis);
+    }
+
+    private static SyncBatchRequest batch(String operation) {
+        List<SyncBatchRequest.SyncOperation> operations = new ArrayList<>(OPERATIONS);
+        for (int i = 0; i < OPERATIONS; i++) {
+            SyncBatchRequest.SyncOperation syncOperation = new SyncBatchRequest.SyncOperation();
+            syncOperation.setOperation(operation);
+            syncOperation.setData(new SyncBatchRequest.OperationData("did:key:z6Mkbench" + i, "publicKeyBase58"));
+            syncOperation.setTimestamp(System.currentTimeMillis());
+            operations.add(syncOperation);
+        }
+        SyncBatchRequest request = new SyncBatchRequest();
+        request.setOperations(operations);
+        return request;
+    }
+
+    private record Result(long statements, long rows, long millis) {
+    }
+}
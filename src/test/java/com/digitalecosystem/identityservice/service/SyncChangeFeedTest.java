@@ -0,0 +1,109 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.dto.SyncChangesResponse;
+import com.digitalecosystem.identityservice.exception.IdentityException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SyncChangeFeedTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private SyncChangeFeed changeFeed;
+
+    @BeforeEach
+    void setUp() {
+        changeFeed = new SyncChangeFeed(jdbcTemplate);
+        ReflectionTestUtils.setField(changeFeed, "defaultPageSize", 3);
+        ReflectionTestUtils.setField(changeFeed, "maxPageSize", 10);
+        lenient().when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(100L);
+    }
+
+    @Test
+    void changesSince_FullPage_CursorAtLastChange() {
+        // Arrange
+        stubChanges(LongStream.rangeClosed(201, 204).boxed().map(SyncChangeFeedTest::change).toList());
+
+        // Act
+        SyncChangesResponse response = changeFeed.changesSince("did:key:z6Mkexample", 200, null);
+
+        // Assert
+        assertEquals(3, response.getChanges().size());
+        assertTrue(response.getHasMore());
+        assertEquals(203, response.getNextSince());
+        assertFalse(response.getResyncRequired());
+    }
+
+    @Test
+    void changesSince_NothingNew_CursorUnchanged() {
+        // Arrange
+        stubChanges(List.of());
+
+        // Act
+        SyncChangesResponse response = changeFeed.changesSince("did:key:z6Mkexample", 250, null);
+
+        // Assert
+        assertTrue(response.getChanges().isEmpty());
+        assertFalse(response.getHasMore());
+        assertEquals(250, response.getNextSince());
+    }
+
+    @Test
+    void changesSince_CursorOlderThanPurgedTombstones_RequiresResync() {
+        // Act
+        SyncChangesResponse response = changeFeed.changesSince("did:key:z6Mkexample", 50, null);
+
+        // Assert
+        assertTrue(response.getResyncRequired());
+        assertTrue(response.getChanges().isEmpty());
+        verify(jdbcTemplate, never()).query(anyString(), any(RowMapper.class), any(Object[].class));
+    }
+
+    @Test
+    void changesSince_FirstPullFromZero_IgnoresHorizon() {
+        // Arrange
+        stubChanges(List.of(change(1)));
+
+        // Act
+        SyncChangesResponse response = changeFeed.changesSince("did:key:z6Mkexample", 0, 10);
+
+        // Assert
+        assertFalse(response.getResyncRequired());
+        assertEquals(1, response.getNextSince());
+    }
+
+    @Test
+    void changesSince_NegativeCursor_Rejected() {
+        assertThrows(IdentityException.class, () -> changeFeed.changesSince("did:key:z6Mkexample", -1, null));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubChanges(List<SyncChangesResponse.Change> changes) {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class))).thenReturn(changes);
+    }
+
+    private static SyncChangesResponse.Change change(long seq) {
+        return SyncChangesResponse.Change.builder()
+                .seq(seq)
+                .entity("contact")
+                .id(seq)
+                .action("upsert")
+                .data("{}")
+                .build();
+    }
+}
@@ -0,0 +1,146 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.dto.SyncBatchRequest;
+import com.digitalecosystem.identityservice.dto.SyncBatchResponse;
+import com.digitalecosystem.identityservice.exception.IdentityException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SyncOperationDedupeTest {
+
+    @Mock
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private SyncOperationDedupe dedupe;
+
+    @BeforeEach
+    void setUp() {
+        dedupe = new SyncOperationDedupe(redisTemplate, meterRegistry);
+        ReflectionTestUtils.setField(dedupe, "enabled", true);
+        ReflectionTestUtils.setField(dedupe, "localMaxSize", 1000L);
+        ReflectionTestUtils.setField(dedupe, "localTtlSeconds", 600L);
+        ReflectionTestUtils.setField(dedupe, "ttlSeconds", 86400L);
+        dedupe.init();
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    @Test
+    void recorded_SharedOutcomesReturnedByPosition() {
+        // Arrange
+        when(valueOperations.multiGet(List.of("syncop:did:key:a:op-1", "syncop:did:key:b:op-2")))
+                .thenReturn(Arrays.asList("", null));
+
+        // Act
+        Map<Integer, SyncOperationDedupe.Outcome> recorded = dedupe.recorded(List.of(
+                operation("did:key:a", "op-1"), operation("did:key:b", "op-2"), operation("did:key:c", null)));
+
+        // Assert
+        assertEquals(Map.of(0, SyncOperationDedupe.Outcome.APPLIED), recorded);
+        assertEquals(1.0, meterRegistry.counter("sync.dedupe.lookups", "result", "hit").count());
+        assertEquals(1.0, meterRegistry.counter("sync.dedupe.lookups", "result", "miss").count());
+    }
+
+    @Test
+    void recorded_LocalHitSkipsRedis() {
+        // Arrange
+        dedupe.record(Map.of("syncop:did:key:a:op-1", new SyncOperationDedupe.Outcome("DID not found: did:key:a")));
+
+        // Act
+        Map<Integer, SyncOperationDedupe.Outcome> recorded = dedupe.recorded(List.of(operation("did:key:a", "op-1")));
+
+        // Assert
+        assertEquals("DID not found: did:key:a", recorded.get(0).conflictReason());
+        verify(valueOperations, never()).multiGet(anyCollection());
+    }
+
+    @Test
+    void recorded_RedisDown_TreatedAsMiss() {
+        // Arrange
+        when(valueOperations.multiGet(anyCollection())).thenThrow(new IllegalStateException("connection refused"));
+
+        // Act
+        Map<Integer, SyncOperationDedupe.Outcome> recorded = dedupe.recorded(List.of(operation("did:key:a", "op-1")));
+
+        // Assert
+        assertTrue(recorded.isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void record_WritesSharedTierInOnePipeline() {
+        // Act
+        dedupe.record(Map.of(
+                "syncop:did:key:a:op-1", SyncOperationDedupe.Outcome.APPLIED,
+                "syncop:did:key:b:op-2", new SyncOperationDedupe.Outcome("Unknown operation: rename")));
+
+        // Assert
+        verify(redisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void outcomes_SkipsRetryableConflictsAndOperationsWithoutId() {
+        // Arrange
+        List<SyncBatchRequest.SyncOperation> operations = List.of(
+                operation("did:key:a", "op-1"), operation("did:key:b", "op-2"),
+                operation("did:key:c", "op-3"), operation("did:key:d", null));
+        Map<Integer, SyncBatchResponse.ConflictInfo> conflicts = Map.of(
+                1, SyncBatchResponse.ConflictInfo.builder().reason("Not applied: connection lost").retryable(true).build(),
+                2, SyncBatchResponse.ConflictInfo.builder().reason("Unknown operation: rename").retryable(false).build());
+
+        // Act
+        Map<String, SyncOperationDedupe.Outcome> outcomes = SyncOperationDedupe.outcomes(operations, conflicts);
+
+        // Assert
+        assertEquals(Map.of(
+                "syncop:did:key:a:op-1", SyncOperationDedupe.Outcome.APPLIED,
+                "syncop:did:key:c:op-3", new SyncOperationDedupe.Outcome("Unknown operation: rename")), outcomes);
+    }
+
+    @Test
+    void outcomes_MissingDidNotRecorded() {
+        // Arrange: the create may still be queued in an older batch, so a resend must be checked again
+        List<SyncBatchRequest.SyncOperation> operations = List.of(operation("did:key:a", "op-1"));
+        Map<Integer, SyncBatchResponse.ConflictInfo> conflicts = Map.of(
+                0, SyncBatchResponse.ConflictInfo.builder().reason("DID not found: did:key:a").retryable(false).build());
+
+        // Act
+        Map<String, SyncOperationDedupe.Outcome> outcomes = SyncOperationDedupe.outcomes(operations, conflicts);
+
+        // Assert
+        assertTrue(outcomes.isEmpty());
+    }
+
+    @Test
+    void recorded_OversizedOperationId_Rejected() {
+        assertThrows(IdentityException.class, () -> dedupe.recorded(List.of(operation("did:key:a", "x".repeat(129)))));
+    }
+
+    private static SyncBatchRequest.SyncOperation operation(String did, String opId) {
+        SyncBatchRequest.SyncOperation operation = new SyncBatchRequest.SyncOperation();
+        operation.setOpId(opId);
+        operation.setOperation("update");
+        operation.setData(new SyncBatchRequest.OperationData(did, null));
+        return operation;
+    }
+}
@@ -0,0 +1,208 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.dto.SyncBatchResponse;
+import com.digitalecosystem.identityservice.entity.SyncBatch;
+import com.digitalecosystem.identityservice.entity.SyncQueue;
+import com.digitalecosystem.identityservice.repository.SyncBatchRepository;
+import com.digitalecosystem.identityservice.repository.SyncQueueRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SyncQueueWorkerTest {
+
+    @Mock
+    private SyncBatchRepository syncBatchRepository;
+
+    @Mock
+    private SyncQueueRepository syncQueueRepository;
+
+    @Mock
+    private SyncService syncService;
+
+    @Mock
+    private SyncOperationDedupe operationDedupe;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SyncQueueWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        worker = new SyncQueueWorker(syncBatchRepository, syncQueueRepository, syncService,
+                operationDedupe, transactionManager, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(worker, "async", false);
+        ReflectionTestUtils.setField(worker, "chunkSize", 2);
+        ReflectionTestUtils.setField(worker, "maxAttempts", 3);
+        worker.start();
+    }
+
+    @Test
+    void drainChunk_AppliesChunkAndCompletesBatch() {
+        // Arrange
+        SyncBatch batch = batch(2);
+        List<SyncQueue> rows = List.of(row("create"), row("rename"));
+        when(syncBatchRepository.claimNext()).thenReturn(Optional.of(batch));
+        when(syncQueueRepository.findByBatchIdAndSyncedFalseOrderByIdAsc(eq("batch-1"), any(Pageable.class))).thenReturn(rows);
+        when(syncService.applyOperations(anyList())).thenReturn(Map.of(1, SyncBatchResponse.ConflictInfo.builder()
+                .operation("rename")
+                .reason("Unknown operation: rename")
+                .build()));
+
+        // Act
+        boolean worked = worker.drainChunk();
+
+        // Assert
+        assertTrue(worked);
+        assertTrue(rows.get(0).getSynced());
+        assertNull(rows.get(0).getConflictReason());
+        assertEquals("Unknown operation: rename", rows.get(1).getConflictReason());
+        assertEquals(SyncBatch.STATUS_COMPLETED, batch.getStatus());
+        assertEquals(2, batch.getProcessedCount());
+        assertEquals(1, batch.getSyncedCount());
+        assertNotNull(batch.getCompletedAt());
+    }
+
+    @Test
+    void drainChunk_LeavesLargerBatchForNextChunk() {
+        // Arrange
+        SyncBatch batch = batch(5);
+        when(syncBatchRepository.claimNext()).thenReturn(Optional.of(batch));
+        when(syncQueueRepository.findByBatchIdAndSyncedFalseOrderByIdAsc(eq("batch-1"), any(Pageable.class)))
+                .thenReturn(List.of(row("create"), row("update")));
+        when(syncService.applyOperations(anyList())).thenReturn(Map.of());
+
+        // Act
+        worker.drainChunk();
+
+        // Assert
+        assertEquals(SyncBatch.STATUS_PROCESSING, batch.getStatus());
+        assertEquals(2, batch.getProcessedCount());
+        assertNull(batch.getCompletedAt());
+    }
+
+    @Test
+    void drainChunk_FailedChunkCountsAnAttempt() {
+        // Arrange
+        when(syncBatchRepository.claimNext()).thenReturn(Optional.of(batch(1)));
+        when(syncQueueRepository.findByBatchIdAndSyncedFalseOrderByIdAsc(eq("batch-1"), any(Pageable.class)))
+                .thenReturn(List.of(row("create")));
+        when(syncService.applyOperations(anyList())).thenThrow(new IllegalStateException("connection reset"));
+
+        // Act
+        boolean worked = worker.drainChunk();
+
+        // Assert
+        assertFalse(worked);
+        verify(syncBatchRepository).recordFailure("batch-1", "connection reset");
+        verify(syncBatchRepository).failIfExhausted(eq("batch-1"), eq(3), any(LocalDateTime.class));
+    }
+
+    @Test
+    void drainChunk_RetriesFailedBatchWithSavepoints() {
+        // Arrange
+        SyncBatch batch = batch(1);
+        batch.setAttempts(1);
+        when(syncBatchRepository.claimNext()).thenReturn(Optional.of(batch));
+        when(syncQueueRepository.findByBatchIdAndSyncedFalseOrderByIdAsc(eq("batch-1"), any(Pageable.class)))
+                .thenReturn(List.of(row("create")));
+        when(syncService.applyIsolated(anyList())).thenReturn(Map.of());
+
+        // Act
+        worker.drainChunk();
+
+        // Assert
+        verify(syncService, never()).applyOperations(anyList());
+        assertEquals(SyncBatch.STATUS_COMPLETED, batch.getStatus());
+    }
+
+    @Test
+    void drainChunk_RecordedOperationsKeepTheirOutcome() {
+        // Arrange
+        SyncBatch batch = batch(3);
+        List<SyncQueue> rows = List.of(row("create"), row("update"), row("delete"));
+        when(syncBatchRepository.claimNext()).thenReturn(Optional.of(batch));
+        when(syncQueueRepository.findByBatchIdAndSyncedFalseOrderByIdAsc(eq("batch-1"), any(Pageable.class))).thenReturn(rows);
+        when(operationDedupe.recorded(anyList())).thenReturn(Map.of(
+                0, SyncOperationDedupe.Outcome.APPLIED,
+                1, new SyncOperationDedupe.Outcome("DID not found: did:key:z6Mkexample")));
+        when(syncService.applyOperations(anyList())).thenReturn(Map.of());
+
+        // Act
+        worker.drainChunk();
+
+        // Assert
+        verify(syncService).applyOperations(argThat(operations -> operations.size() == 1));
+        assertEquals("DID not found: did:key:z6Mkexample", rows.get(1).getConflictReason());
+        assertNull(rows.get(2).getConflictReason());
+        assertEquals(2, batch.getSyncedCount());
+        verify(operationDedupe).record(anyMap());
+    }
+
+    @Test
+    void drainChunk_FailedChunkRecordsNoOutcomes() {
+        // Arrange
+        when(syncBatchRepository.claimNext()).thenReturn(Optional.of(batch(1)));
+        when(syncQueueRepository.findByBatchIdAndSyncedFalseOrderByIdAsc(eq("batch-1"), any(Pageable.class)))
+                .thenReturn(List.of(row("create")));
+        when(syncService.applyOperations(anyList())).thenThrow(new IllegalStateException("connection reset"));
+
+        // Act
+        worker.drainChunk();
+
+        // Assert
+        verify(operationDedupe, never()).record(anyMap());
+    }
+
+    @Test
+    void drainChunk_NothingQueued() {
+        // Arrange
+        when(syncBatchRepository.claimNext()).thenReturn(Optional.empty());
+
+        // Act
+        boolean worked = worker.drainChunk();
+
+        // Assert
+        assertFalse(worked);
+        verifyNoInteractions(syncService);
+    }
+
+    private static SyncBatch batch(int operations) {
+        return SyncBatch.builder()
+                .id("batch-1")
+                .status(SyncBatch.STATUS_QUEUED)
+                .operationCount(operations)
+                .processedCount(0)
+                .syncedCount(0)
+                .attempts(0)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private static SyncQueue row(String operation) {
+        return SyncQueue.builder()
+                .batchId("batch-1")
+                .operation(operation)
+                .payload(Map.of("did", "did:key:z6Mkexample"))
+                .clientTimestamp(LocalDateTime.now())
+                .synced(false)
+                .build();
+    }
+}
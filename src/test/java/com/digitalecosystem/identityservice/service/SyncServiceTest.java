@@ -0,0 +1,305 @@
+package com.digitalecosystem.identityservice.service;
+
+import com.digitalecosystem.identityservice.dto.SyncBatchRequest;
+import com.digitalecosystem.identityservice.dto.SyncBatchResponse;
+import com.digitalecosystem.identityservice.repository.IdentityJdbcRepository;
+import com.digitalecosystem.identityservice.repository.SyncQueueRepository;
+import com.digitalecosystem.identityservice.repository.UserContactRepository;
+import com.digitalecosystem.identityservice.repository.UserIdentityRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SyncServiceTest {
+
+    @Mock
+    private SyncQueueRepository syncQueueRepository;
+
+    @Mock
+    private UserIdentityRepository userIdentityRepository;
+
+    @Mock
+    private UserContactRepository userContactRepository;
+
+    @Mock
+    private IdentityJdbcRepository identityJdbcRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private SyncOperationDedupe operationDedupe;
+
+    @InjectMocks
+    private SyncService syncService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(syncService, "execution", "chunked");
+        ReflectionTestUtils.setField(syncService, "chunkSize", 200);
+        lenient().when(userIdentityRepository.findExistingDids(anyCollection())).thenReturn(List.of("did:key:existing"));
+    }
+
+    @Test
+    void processBatchSync_LoadsDidsOnceAndAppliesInBulk() {
+        // Arrange
+        SyncBatchRequest request = request(
+                operation("create", "did:key:new"),
+                operation("create", "did:key:existing"),
+                operation("update", "did:key:existing"),
+                operation("update", "did:key:new"));
+
+        // Act
+        SyncBatchResponse response = syncService.processBatchSync(request);
+
+        // Assert
+        assertEquals(4, response.getSynced());
+        assertTrue(response.getConflicts().isEmpty());
+        verify(userIdentityRepository, times(1)).findExistingDids(anyCollection());
+        verify(userIdentityRepository, times(1)).saveAll(anyIterable());
+        verify(userIdentityRepository).markSyncedByDidIn(eq(List.of("did:key:existing")), eq("synced"), any());
+        verify(userIdentityRepository, never()).findByDid(anyString());
+        verify(eventPublisher).publishEvent(new IdentityChangeEvent(
+                IdentityChangeEvent.Type.IDENTITY_CREATED, "did:key:new", List.of()));
+    }
+
+    @Test
+    void processBatchSync_ReportsConflictsPerOperation() {
+        // Arrange
+        SyncBatchRequest request = request(
+                operation("update", "did:key:missing"),
+                operation("rename", "did:key:existing"),
+                operation("delete", "did:key:existing"),
+                operation("update", "did:key:existing"));
+        when(userContactRepository.findIdentifierHashesByDidIn(List.of("did:key:existing")))
+                .thenReturn(List.<Object[]>of(new Object[]{"did:key:existing", "hash"}));
+
+        // Act
+        SyncBatchResponse response = syncService.processBatchSync(request);
+
+        // Assert
+        assertEquals(1, response.getSynced());
+        assertEquals(List.of("DID not found: did:key:missing", "Unknown operation: rename",
+                        "DID not found: did:key:existing"),
+                response.getConflicts().stream().map(SyncBatchResponse.ConflictInfo::getReason).toList());
+        verify(userIdentityRepository).deleteByDidIn(List.of("did:key:existing"));
+        verify(userIdentityRepository, never()).markSyncedByDidIn(anyCollection(), anyString(), any());
+        verify(eventPublisher).publishEvent(new IdentityChangeEvent(
+                IdentityChangeEvent.Type.IDENTITY_DELETED, "did:key:existing", List.of("hash")));
+    }
+
+    @Test
+    void processBatchSync_CreateThenDeleteInSameBatch_TouchesNothing() {
+        // Arrange
+        SyncBatchRequest request = request(
+                operation("create", "did:key:new"),
+                operation("delete", "did:key:new"));
+
+        // Act
+        SyncBatchResponse response = syncService.processBatchSync(request);
+
+        // Assert
+        assertEquals(2, response.getSynced());
+        verify(userIdentityRepository, never()).saveAll(anyIterable());
+        verify(userIdentityRepository, never()).deleteByDidIn(anyCollection());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void processBatchSync_CommitsEachChunk() {
+        // Arrange
+        ReflectionTestUtils.setField(syncService, "chunkSize", 2);
+        SyncBatchRequest request = request(
+                operation("update", "did:key:existing"),
+                operation("update", "did:key:existing"),
+                operation("update", "did:key:existing"),
+                operation("update", "did:key:existing"),
+                operation("update", "did:key:existing"));
+
+        // Act
+        SyncBatchResponse response = syncService.processBatchSync(request);
+
+        // Assert
+        assertEquals(5, response.getSynced());
+        verify(transactionManager, times(3)).getTransaction(any());
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    @Test
+    void processBatchSync_AppliesEachChunkAsItIsRead() {
+        // Arrange
+        ReflectionTestUtils.setField(syncService, "chunkSize", 2);
+        List<Long> commitsBeforeRead = new ArrayList<>();
+        Iterator<SyncBatchRequest.SyncOperation> operations = IntStream.range(0, 5)
+                .mapToObj(i -> {
+                    commitsBeforeRead.add(mockingDetails(transactionManager).getInvocations().stream()
+                            .filter(invocation -> invocation.getMethod().getName().equals("commit"))
+                            .count());
+                    return operation("update", "did:key:existing");
+                })
+                .iterator();
+
+        // Act
+        SyncBatchResponse response = syncService.processBatchSync(operations);
+
+        // Assert
+        assertEquals(5, response.getSynced());
+        assertEquals(List.of(0L, 0L, 1L, 1L, 2L), commitsBeforeRead);
+    }
+
+    @Test
+    void processBatchSync_FailedChunkRetriedWithSavepointPerOperation() {
+        // Arrange
+        SyncBatchRequest request = request(
+                operation("create", "did:key:new"),
+                operation("update", "did:key:existing"));
+        when(userIdentityRepository.saveAll(anyIterable()))
+                .thenThrow(new DataIntegrityViolationException("value too long"));
+        when(identityJdbcRepository.insertIdentity(eq("did:key:new"), anyString(), eq("synced"), any()))
+                .thenThrow(new DataIntegrityViolationException("value too long"));
+        when(identityJdbcRepository.markSynced(eq("did:key:existing"), any())).thenReturn(true);
+
+        // Act
+        SyncBatchResponse response = syncService.processBatchSync(request);
+
+        // Assert
+        assertEquals(1, response.getSynced());
+        assertEquals(1, response.getConflicts().size());
+        assertEquals("value too long", response.getConflicts().get(0).getReason());
+        assertFalse(response.getConflicts().get(0).getRetryable());
+        verify(identityJdbcRepository, times(1)).rollbackToSavepoint(any());
+        verify(identityJdbcRepository, times(1)).releaseSavepoint(any());
+    }
+
+    @Test
+    void processBatchSync_UncommittedChunkReportedAsRetryable() {
+        // Arrange
+        ReflectionTestUtils.setField(syncService, "chunkSize", 1);
+        SyncBatchRequest request = request(
+                operation("update", "did:key:existing"),
+                operation("update", "did:key:existing"));
+        lenient().when(identityJdbcRepository.markSynced(eq("did:key:existing"), any())).thenReturn(true);
+        // The first chunk commits; the second fails on both attempts
+        doNothing().doThrow(new TransactionSystemException("connection lost")).when(transactionManager).commit(any());
+
+        // Act
+        SyncBatchResponse response = syncService.processBatchSync(request);
+
+        // Assert
+        assertEquals(1, response.getSynced());
+        assertEquals(1, response.getConflicts().size());
+        assertTrue(response.getConflicts().get(0).getRetryable());
+        assertEquals("Not applied: connection lost", response.getConflicts().get(0).getReason());
+    }
+
+    @Test
+    void processBatchSync_ResentOperationsAnsweredFromRecordedOutcome() {
+        // Arrange
+        SyncBatchRequest request = request(
+                operation("create", "did:key:new", "op-1"),
+                operation("update", "did:key:missing", "op-2"),
+                operation("update", "did:key:existing", "op-3"));
+        when(operationDedupe.recorded(anyList())).thenReturn(Map.of(
+                0, SyncOperationDedupe.Outcome.APPLIED,
+                1, new SyncOperationDedupe.Outcome("DID not found: did:key:missing")));
+
+        // Act
+        SyncBatchResponse response = syncService.processBatchSync(request);
+
+        // Assert
+        assertEquals(2, response.getSynced());
+        assertEquals("DID not found: did:key:missing", response.getConflicts().get(0).getReason());
+        verify(userIdentityRepository, never()).saveAll(anyIterable());
+        verify(userIdentityRepository).findExistingDids(List.of("did:key:existing"));
+        verify(operationDedupe).record(Map.of("syncop:did:key:existing:op-3", SyncOperationDedupe.Outcome.APPLIED));
+    }
+
+    @Test
+    void processBatchSync_RetryableConflictsNotRecorded() {
+        // Arrange
+        SyncBatchRequest request = request(operation("update", "did:key:existing", "op-1"));
+        doThrow(new TransactionSystemException("connection lost")).when(transactionManager).commit(any());
+
+        // Act
+        SyncBatchResponse response = syncService.processBatchSync(request);
+
+        // Assert
+        assertTrue(response.getConflicts().get(0).getRetryable());
+        verify(operationDedupe).record(Map.of());
+    }
+
+    @Test
+    void replayRecorded_AllOperationsRecorded_SkipsDatabase() {
+        // Arrange
+        SyncBatchRequest request = request(
+                operation("create", "did:key:new", "op-1"),
+                operation("rename", "did:key:new", "op-2"));
+        when(operationDedupe.recorded(anyList())).thenReturn(Map.of(
+                0, SyncOperationDedupe.Outcome.APPLIED,
+                1, new SyncOperationDedupe.Outcome("Unknown operation: rename")));
+
+        // Act
+        Optional<SyncBatchResponse> response = syncService.replayRecorded(request.getOperations());
+
+        // Assert
+        assertTrue(response.isPresent());
+        assertEquals(1, response.get().getSynced());
+        assertEquals("Unknown operation: rename", response.get().getConflicts().get(0).getReason());
+        verifyNoInteractions(userIdentityRepository, transactionManager);
+    }
+
+    @Test
+    void replayRecorded_SomeOperationsNew_LeavesBatchToBeApplied() {
+        // Arrange
+        SyncBatchRequest request = request(
+                operation("create", "did:key:new", "op-1"),
+                operation("update", "did:key:new", "op-2"));
+        when(operationDedupe.recorded(anyList())).thenReturn(Map.of(0, SyncOperationDedupe.Outcome.APPLIED));
+
+        // Act & Assert
+        assertTrue(syncService.replayRecorded(request.getOperations()).isEmpty());
+    }
+
+    private static SyncBatchRequest request(SyncBatchRequest.SyncOperation... operations) {
+        SyncBatchRequest request = new SyncBatchRequest();
+        request.setOperations(new ArrayList<>(Arrays.asList(operations)));
+        return request;
+    }
+
+    private static SyncBatchRequest.SyncOperation operation(String type, String did) {
+        return operation(type, did, null);
+    }
+
+    private static SyncBatchRequest.SyncOperation operation(String type, String did, String opId) {
+        SyncBatchRequest.SyncOperation operation = new SyncBatchRequest.SyncOperation();
+        operation.setOpId(opId);
+        operation.setOperation(type);
+        operation.setData(new SyncBatchRequest.OperationData(did, "publicKeyBase58"));
+        operation.setTimestamp(System.currentTimeMillis());
+        return operation;
+    }
+}
@@ -0,0 +1,77 @@
+package com.digitalecosystem.identityservice.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TwilioSmsGatewayTest {
+
+    private TwilioSmsGateway gateway;
+
+    @BeforeEach
+    void setUp() {
+        gateway = new TwilioSmsGateway();
+        ReflectionTestUtils.setField(gateway, "fromPhoneNumber", "+15550199");
+        ReflectionTestUtils.setField(gateway, "maxConnections", 4);
+        ReflectionTestUtils.setField(gateway, "connectTimeoutMs", 2000);
+        ReflectionTestUtils.setField(gateway, "readTimeoutMs", 10000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateway.close();
+    }
+
+    @Test
+    void send_NotConfigured_LogsInsteadOfSending() {
+        // Arrange
+        configure("", "");
+
+        // Act
+        String messageId = gateway.send("+15550100", "Your OTP code is: 123456");
+
+        // Assert
+        assertTrue(messageId.startsWith("unsent-"));
+        assertNull(ReflectionTestUtils.getField(gateway, "restClient"));
+    }
+
+    @Test
+    void sendBatch_NotConfigured_FallsBackToOneByOne() {
+        // Arrange
+        configure("", "");
+
+        // Act
+        List<SmsGateway.Result> results = gateway.sendBatch(List.of(
+                new SmsGateway.Message("+15550100", "a"),
+                new SmsGateway.Message("+15550101", "b")));
+
+        // Assert
+        assertEquals(2, results.size());
+        assertEquals("+15550100", results.get(0).to());
+        assertEquals("+15550101", results.get(1).to());
+        assertTrue(results.stream().allMatch(SmsGateway.Result::isSuccess));
+        assertTrue(results.stream().allMatch(result -> result.messageId().startsWith("unsent-")));
+    }
+
+    @Test
+    void init_Configured_BuildsPooledClientOnce() {
+        // Act
+        configure("ACtest", "token");
+
+        // Assert
+        assertNotNull(ReflectionTestUtils.getField(gateway, "restClient"));
+        assertNotNull(ReflectionTestUtils.getField(gateway, "connectionManager"));
+        assertEquals("twilio", gateway.name());
+    }
+
+    private void configure(String accountSid, String authToken) {
+        ReflectionTestUtils.setField(gateway, "accountSid", accountSid);
+        ReflectionTestUtils.setField(gateway, "authToken", authToken);
+        gateway.init();
+    }
+}
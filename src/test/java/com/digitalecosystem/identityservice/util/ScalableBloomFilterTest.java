@@ -0,0 +1,62 @@
+package com.digitalecosystem.identityservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScalableBloomFilterTest {
+
+    private final HashUtil hashUtil = new HashUtil(new CryptoPrimitives());
+
+    @Test
+    void mightContain_NoFalseNegatives() {
+        // Arrange
+        ScalableBloomFilter filter = new ScalableBloomFilter(10_000, 0.01, 2);
+
+        // Act
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(hashUtil.sha256("user" + i + "@example.com"));
+        }
+
+        // Assert
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain(hashUtil.sha256("user" + i + "@example.com")));
+        }
+    }
+
+    @Test
+    void mightContain_FalsePositiveRateWithinTarget() {
+        // Arrange
+        ScalableBloomFilter filter = new ScalableBloomFilter(10_000, 0.01, 2);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(hashUtil.sha256("user" + i + "@example.com"));
+        }
+
+        // Act
+        int falsePositives = 0;
+        for (int i = 0; i < 20_000; i++) {
+            if (filter.mightContain(hashUtil.sha256("absent" + i + "@example.com"))) {
+                falsePositives++;
+            }
+        }
+
+        // Assert
+        assertTrue(falsePositives / 20_000.0 < 0.02, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void add_BeyondCapacity_AddsSlicesAndKeepsRate() {
+        // Arrange
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_000, 0.01, 2);
+
+        // Act
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(hashUtil.sha256("user" + i + "@example.com"));
+        }
+
+        // Assert
+        assertTrue(filter.sliceCount() > 1);
+        assertTrue(filter.expectedFalsePositiveRate() < 0.01);
+        assertTrue(filter.mightContain(hashUtil.sha256("user9999@example.com")));
+    }
+}
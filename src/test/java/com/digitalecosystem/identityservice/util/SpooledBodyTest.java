@@ -0,0 +1,55 @@
+package com.digitalecosystem.identityservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpooledBodyTest {
+
+    @Test
+    void smallBody_KeptInMemory() throws IOException {
+        // Arrange
+        byte[] body = "{\"operations\": []}".getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        try (SpooledBody spooled = new SpooledBody(new ByteArrayInputStream(body), 64)) {
+
+            // Assert
+            assertFalse(spooled.isSpooled());
+            assertArrayEquals(body, readAll(spooled));
+        }
+    }
+
+    @Test
+    void largeBody_SpooledToFileAndDeletedOnClose() throws IOException {
+        // Arrange
+        byte[] body = ("{\"operations\": [" + "{\"operation\": \"update\"},".repeat(100) + "{}]}")
+                .getBytes(StandardCharsets.UTF_8);
+        Path file;
+
+        // Act
+        try (SpooledBody spooled = new SpooledBody(new ByteArrayInputStream(body), 64)) {
+            file = spooled.file();
+
+            // Assert
+            assertTrue(spooled.isSpooled());
+            assertTrue(Files.exists(file));
+            assertArrayEquals(body, readAll(spooled));
+            assertArrayEquals(body, readAll(spooled));
+        }
+        assertFalse(Files.exists(file));
+    }
+
+    private static byte[] readAll(SpooledBody spooled) throws IOException {
+        try (InputStream input = spooled.open()) {
+            return input.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.digitalecosystem.identityservice.util;
+
+import com.digitalecosystem.identityservice.dto.SyncBatchRequest;
+import com.digitalecosystem.identityservice.exception.IdentityException;
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyncBatchReaderTest {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Test
+    void next_ReadsTypedOperationsAndSkipsUnknownFields() throws IOException {
+        // Arrange
+        String body = """
+                {"client": {"version": [1, 2]},
+                 "operations": [
+                   {"opId": "op-1", "operation": "create", "timestamp": 1700000000000,
+                    "data": {"did": "did:key:z6Mkexample", "publicKey": "publicKeyBase58",
+                             "profile": {"name": "Alice", "tags": ["a", "b"]}}},
+                   {"operation": "delete", "extra": [1, {"x": 2}], "data": {"did": "did:key:z6Mkother"}}
+                 ],
+                 "trailer": true}
+                """;
+
+        // Act
+        List<SyncBatchRequest.SyncOperation> operations = readAll(body);
+
+        // Assert
+        assertEquals(2, operations.size());
+        SyncBatchRequest.SyncOperation create = operations.get(0);
+        assertEquals("op-1", create.getOpId());
+        assertEquals("create", create.getOperation());
+        assertEquals(1700000000000L, create.getTimestamp());
+        assertEquals(new SyncBatchRequest.OperationData("did:key:z6Mkexample", "publicKeyBase58"), create.getData());
+        assertEquals("delete", operations.get(1).getOperation());
+        assertEquals("did:key:z6Mkother", operations.get(1).getData().getDid());
+        assertNull(operations.get(1).getOpId());
+    }
+
+    @Test
+    void next_WrongFieldTypeReadAsMissing() throws IOException {
+        // Act
+        List<SyncBatchRequest.SyncOperation> operations = readAll("""
+                {"operations": [{"operation": "create", "timestamp": "yesterday",
+                                 "data": {"did": {"nested": true}, "publicKey": 42}}]}
+                """);
+
+        // Assert
+        SyncBatchRequest.SyncOperation operation = operations.get(0);
+        assertNull(operation.getTimestamp());
+        assertNull(operation.getData().getDid());
+        assertNull(operation.getData().getPublicKey());
+    }
+
+    @Test
+    void next_NoOperations_EmptyBatch() throws IOException {
+        assertTrue(readAll("{\"operations\": null}").isEmpty());
+        assertTrue(readAll("{}").isEmpty());
+    }
+
+    @Test
+    void peek_ReadsAheadWithoutConsuming() throws IOException {
+        // Arrange
+        SyncBatchReader reader = reader("""
+                {"operations": [{"operation": "create"}, {"operation": "update"}, {"operation": "delete"}]}
+                """);
+
+        // Act
+        List<SyncBatchRequest.SyncOperation> head = reader.peek(2);
+
+        // Assert
+        assertEquals(2, head.size());
+        assertEquals("create", reader.next().getOperation());
+        assertEquals("update", reader.next().getOperation());
+        assertEquals("delete", reader.next().getOperation());
+        assertFalse(reader.hasNext());
+        assertEquals(3, reader.operationsRead());
+    }
+
+    @Test
+    void next_MalformedInput_RejectedWhenReached() throws IOException {
+        // Arrange
+        SyncBatchReader reader = reader("{\"operations\": [{\"operation\": \"create\"}, {\"operation\": ");
+
+        // Act
+        SyncBatchRequest.SyncOperation first = reader.next();
+
+        // Assert
+        assertEquals("create", first.getOperation());
+        assertThrows(IdentityException.class, reader::hasNext);
+    }
+
+    @Test
+    void constructor_NotAnObject_Rejected() {
+        assertThrows(IdentityException.class, () -> reader("[{\"operation\": \"create\"}]"));
+    }
+
+    private SyncBatchReader reader(String body) throws IOException {
+        return new SyncBatchReader(jsonFactory, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private List<SyncBatchRequest.SyncOperation> readAll(String body) throws IOException {
+        List<SyncBatchRequest.SyncOperation> operations = new ArrayList<>();
+        try (SyncBatchReader reader = reader(body)) {
+            reader.forEachRemaining(operations::add);
+        }
+        return operations;
+    }
+}